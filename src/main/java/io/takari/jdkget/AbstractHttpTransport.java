@@ -0,0 +1,143 @@
+package io.takari.jdkget;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+
+import io.takari.jdkget.JdkReleases.JdkBinary;
+import io.takari.jdkget.JdkReleases.JdkRelease;
+
+/**
+ * Base for transports downloading over http, with a pooled client shared by all downloads going through the transport
+ * and the settings that come with it.
+ */
+public abstract class AbstractHttpTransport implements ITransport, Closeable {
+
+  private int maxConnectionsPerHost;
+  private boolean resume = true;
+  protected Throttle throttle;
+  protected ImageValidator validator = new ImageValidator();
+
+  private CloseableHttpClient client;
+  private PoolingHttpClientConnectionManager connectionManager;
+
+  /**
+   * Connections per host when there's no explicit cap, enough for one download
+   */
+  protected abstract int defaultConnectionsPerHost();
+
+  /**
+   * Connections across all hosts given {@code perHost}
+   */
+  protected int totalConnections(int perHost) {
+    return Math.max(20, perHost * 2);
+  }
+
+  /**
+   * Adds transport specific settings to the client about to be created
+   */
+  protected void configure(HttpClientBuilder builder) {}
+
+  public int getMaxConnectionsPerHost() {
+    return maxConnectionsPerHost;
+  }
+
+  /**
+   * Cap on concurrent connections to any single host, shared by all downloads going through this transport. By default
+   * there's just enough for one download.
+   */
+  public void setMaxConnectionsPerHost(int maxConnectionsPerHost) {
+    if (maxConnectionsPerHost < 1) {
+      throw new IllegalArgumentException("Number of connections should be positive: " + maxConnectionsPerHost);
+    }
+    this.maxConnectionsPerHost = maxConnectionsPerHost;
+    applyPoolLimits();
+  }
+
+  protected synchronized void applyPoolLimits() {
+    if (connectionManager != null) {
+      int perHost = maxConnectionsPerHost > 0 ? maxConnectionsPerHost : defaultConnectionsPerHost();
+      connectionManager.setDefaultMaxPerRoute(perHost);
+      connectionManager.setMaxTotal(totalConnections(perHost));
+    }
+  }
+
+  public long getBandwidthLimit() {
+    return throttle != null ? throttle.getBytesPerSecond() : -1;
+  }
+
+  /**
+   * Cap on the combined download rate of this transport in bytes per second, -1 for no limit
+   */
+  public void setBandwidthLimit(long bytesPerSecond) {
+    this.throttle = bytesPerSecond > 0 ? new Throttle(bytesPerSecond) : null;
+  }
+
+  public boolean isResume() {
+    return resume;
+  }
+
+  /**
+   * Keep interrupted downloads in a {@code .part} file and continue them with range requests on the next attempt
+   */
+  public void setResume(boolean resume) {
+    this.resume = resume;
+  }
+
+  public boolean isParanoid() {
+    return validator.isParanoid();
+  }
+
+  /**
+   * Hash images on every validation instead of trusting validation stamps of unchanged files
+   */
+  public void setParanoid(boolean paranoid) {
+    this.validator = new ImageValidator(paranoid);
+  }
+
+  protected synchronized CloseableHttpClient client() {
+    if (client == null) {
+      connectionManager = new PoolingHttpClientConnectionManager();
+      applyPoolLimits();
+      HttpClientBuilder builder = HttpClientBuilder.create().setConnectionManager(connectionManager);
+      configure(builder);
+      client = builder.build();
+    }
+    return client;
+  }
+
+  /**
+   * Releases pooled connections; the transport can still be used afterwards, it would just open new ones
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    if (client != null) {
+      try {
+        client.close();
+      } finally {
+        client = null;
+        connectionManager = null;
+      }
+    }
+  }
+
+  protected static JdkBinary binary(JdkContext context) throws IOException {
+    JdkRelease rel = context.getReleases().select(context.getVersion());
+    return rel.getBinary(context.getArch());
+  }
+
+  @Override
+  public File getImageFile(JdkContext context, File parent) throws IOException {
+    return new File(parent, new File(binary(context).getPath()).getName());
+  }
+
+  @Override
+  public boolean validate(JdkContext context, File jdkImage) throws IOException, InterruptedException {
+    return validator.validate(binary(context), jdkImage, context.getOutput());
+  }
+
+}
@@ -0,0 +1,154 @@
+package io.takari.jdkget;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Runs a blocking {@link ITransport} on an executor. By default that's a virtual thread per operation where the JVM
+ * has them (Java 21 and later), so waiting on the network doesn't tie up platform threads, and a pool of daemon threads
+ * otherwise. Cancelling an operation interrupts it.
+ */
+public class AsyncTransport implements IAsyncTransport, Closeable {
+
+  private final ITransport transport;
+  private final Executor executor;
+  private final boolean ownExecutor;
+
+  public AsyncTransport(ITransport transport) {
+    this(transport, defaultExecutor(), true);
+  }
+
+  /**
+   * @param executor runs the operations, and stays up to the caller to shut down
+   */
+  public AsyncTransport(ITransport transport, Executor executor) {
+    this(transport, executor, false);
+  }
+
+  private AsyncTransport(ITransport transport, Executor executor, boolean ownExecutor) {
+    this.transport = transport;
+    this.executor = executor;
+    this.ownExecutor = ownExecutor;
+  }
+
+  /**
+   * A virtual thread per task if the JVM has them, a cached pool of daemon threads otherwise
+   */
+  public static ExecutorService defaultExecutor() {
+    try {
+      return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (ReflectiveOperationException e) {
+      // older jvm
+    }
+    return Executors.newCachedThreadPool(r -> {
+      Thread t = new Thread(r, "jdkget-async");
+      t.setDaemon(true);
+      return t;
+    });
+  }
+
+  public ITransport getTransport() {
+    return transport;
+  }
+
+  @Override
+  public CompletableFuture<Void> downloadJdk(JdkContext context, File jdkImage, IProgressListener progress) {
+    JdkContext ctx = withProgress(context, progress);
+    return submit(() -> {
+      transport.downloadJdk(ctx, jdkImage);
+      return null;
+    });
+  }
+
+  @Override
+  public CompletableFuture<Void> downloadJce(JdkContext context, File jceImage, IProgressListener progress) {
+    JdkContext ctx = withProgress(context, progress);
+    return submit(() -> {
+      transport.downloadJce(ctx, jceImage);
+      return null;
+    });
+  }
+
+  @Override
+  public CompletableFuture<Boolean> validate(JdkContext context, File jdkImage) {
+    return submit(() -> transport.validate(context, jdkImage));
+  }
+
+  @Override
+  public File getImageFile(JdkContext context, File parent) throws IOException {
+    return transport.getImageFile(context, parent);
+  }
+
+  private static JdkContext withProgress(JdkContext context, IProgressListener progress) {
+    if (progress == null) {
+      return context;
+    }
+    IOutput output = context.getOutput();
+    return new JdkContext(context.getReleases(), context.getVersion(), context.getArch(), new IOutput() {
+      @Override
+      public void info(String message) {
+        output.info(message);
+      }
+
+      @Override
+      public void error(String message) {
+        output.error(message);
+      }
+
+      @Override
+      public void error(String message, Throwable t) {
+        output.error(message, t);
+      }
+
+      @Override
+      public void printProgress(long time, long copiedBytes, long totalBytes) {
+        progress.progress(copiedBytes, totalBytes);
+        output.printProgress(time, copiedBytes, totalBytes);
+      }
+    }, context.getPhaseListener());
+  }
+
+  private <T> CompletableFuture<T> submit(Callable<T> call) {
+    CompletableFuture<T> result = new CompletableFuture<>();
+    FutureTask<T> task = new FutureTask<T>(call) {
+      @Override
+      protected void done() {
+        try {
+          result.complete(get());
+        } catch (ExecutionException e) {
+          result.completeExceptionally(e.getCause());
+        } catch (CancellationException | InterruptedException e) {
+          result.cancel(false);
+        }
+      }
+    };
+    // CompletableFuture can't interrupt anything by itself
+    result.whenComplete((r, t) -> {
+      if (result.isCancelled()) {
+        task.cancel(true);
+      }
+    });
+    executor.execute(task);
+    return result;
+  }
+
+  /**
+   * Shuts down the default executor, the transport itself is left alone
+   */
+  @Override
+  public void close() throws IOException {
+    if (ownExecutor) {
+      ((ExecutorService) executor).shutdownNow();
+    }
+  }
+
+}
@@ -0,0 +1,102 @@
+package io.takari.jdkget;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+
+import io.takari.jdkget.JdkReleases.JdkBinary;
+import io.takari.jdkget.JdkReleases.JdkRelease;
+
+/**
+ * Serves images out of an {@link ImageCache}, going to the wrapped transport only for binaries that aren't cached yet.
+ * Binaries without digests in the catalog can't be cached and are always downloaded.
+ */
+public class CachingTransport implements ITransport, Closeable {
+
+  private final ITransport transport;
+  private final ImageCache cache;
+
+  public CachingTransport(ITransport transport, ImageCache cache) {
+    this.transport = transport;
+    this.cache = cache;
+  }
+
+  public ITransport getTransport() {
+    return transport;
+  }
+
+  public ImageCache getCache() {
+    return cache;
+  }
+
+  private JdkBinary binary(JdkContext context) throws IOException {
+    JdkRelease rel = context.getReleases().select(context.getVersion());
+    return rel.getBinary(context.getArch());
+  }
+
+  @Override
+  public File getImageFile(JdkContext context, File parent) throws IOException {
+    return transport.getImageFile(context, parent);
+  }
+
+  @Override
+  public void downloadJdk(JdkContext context, File jdkImage) throws IOException, InterruptedException {
+    JdkBinary bin = binary(context);
+    File entry = cache.entry(bin);
+    if (entry == null) {
+      transport.downloadJdk(context, jdkImage);
+      return;
+    }
+
+    IOutput output = context.getOutput();
+    // one download per image, whoever else wants it waits for that one to land in the cache; held until our copy is
+    // made, so the entry can't be evicted under us
+    try (ProcessLock lock = cache.lock(bin, output)) {
+      if (cache.contains(bin, output)) {
+        output.info("Using cached " + entry);
+      } else {
+        fill(context, bin, cache.staging(bin));
+      }
+      cache.materialize(bin, jdkImage);
+    }
+  }
+
+  private void fill(JdkContext context, JdkBinary bin, File staged) throws IOException, InterruptedException {
+    transport.downloadJdk(context, staged);
+    if (!staged.isFile()) {
+      throw new IOException("Transport failed to download jdk image");
+    }
+    Util.checkInterrupt();
+    if (!transport.validate(context, staged)) {
+      FileUtils.deleteQuietly(staged);
+      throw new IOException("Transport downloaded invalid image");
+    }
+    cache.publish(staged, bin);
+    cache.evict(cache.entry(bin), context.getOutput());
+  }
+
+  @Override
+  public void downloadJce(JdkContext context, File jceImage) throws IOException, InterruptedException {
+    transport.downloadJce(context, jceImage);
+  }
+
+  @Override
+  public boolean validate(JdkContext context, File jdkImage) throws IOException, InterruptedException {
+    return transport.validate(context, jdkImage);
+  }
+
+  @Override
+  public boolean isModified(JdkContext context, HttpValidators validators) throws IOException, InterruptedException {
+    return transport.isModified(context, validators);
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (transport instanceof Closeable) {
+      ((Closeable) transport).close();
+    }
+  }
+
+}
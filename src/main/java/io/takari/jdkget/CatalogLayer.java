@@ -0,0 +1,107 @@
+package io.takari.jdkget;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Changes to put on top of a release list with {@link JdkReleases#overlay(CatalogLayer)}: releases to add, binaries to
+ * add to or replace in releases that are already there, releases to remove, and versions to pin a query to.
+ * <p>
+ * Delta documents are release lists that can also have {@code <remove version="8u91-b14"/>} and
+ * {@code <pin version="8" to="8u92-b14"/>} elements. Removals apply to the layers underneath, so a delta can replace a
+ * release by removing and adding it.
+ */
+public class CatalogLayer implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  private final JdkReleases releases;
+  private final Set<String> removed;
+  private final Map<String, String> pins;
+
+  private CatalogLayer(JdkReleases releases, Set<String> removed, Map<String, String> pins) {
+    this.releases = releases;
+    this.removed = removed;
+    this.pins = pins;
+  }
+
+  public static CatalogLayer read(InputStream in) throws IOException {
+    return new JdkReleasesParser().parseLayer(in);
+  }
+
+  /**
+   * Releases this layer adds, or adds binaries to
+   */
+  public JdkReleases getReleases() {
+    return releases;
+  }
+
+  boolean isRemoved(JdkVersion ver) {
+    return removed.contains(ver.shortBuild());
+  }
+
+  String pinned(JdkVersion ver) {
+    return pins.get(pinKey(ver));
+  }
+
+  private static String pinKey(JdkVersion v) {
+    return v.major + "." + v.minor + "." + v.security + (v.buildNumber != null ? v.buildNumber : "");
+  }
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  public static class Builder {
+    private final JdkReleases.Builder releases = JdkReleases.newBuilder();
+    private final Set<String> removed = new LinkedHashSet<>();
+    private final Map<String, String> pins = new HashMap<>();
+
+    public Builder addBinary(String version, Arch arch, String path) {
+      releases.addBinary(version, arch, path);
+      return this;
+    }
+
+    public Builder addBinary(String version, Arch arch, String path, String md5, String sha256, long size) {
+      releases.addBinary(version, arch, path, md5, sha256, size);
+      return this;
+    }
+
+    public Builder setPSU(String version) {
+      releases.setPSU(version);
+      return this;
+    }
+
+    public Builder addJCE(int major, String path) {
+      releases.addJCE(major, path);
+      return this;
+    }
+
+    public Builder remove(String version) {
+      removed.add(JdkVersion.parse(version).shortBuild());
+      return this;
+    }
+
+    /**
+     * Makes {@code version}, as asked for, select the release {@code to} instead of the latest one that matches
+     */
+    public Builder pin(String version, String to) {
+      pins.put(pinKey(JdkVersion.parse(version)), to);
+      return this;
+    }
+
+    JdkReleases.Builder releases() {
+      return releases;
+    }
+
+    public CatalogLayer build() {
+      return new CatalogLayer(releases.build(), Collections.unmodifiableSet(new LinkedHashSet<>(removed)), Collections.unmodifiableMap(new HashMap<>(pins)));
+    }
+  }
+
+}
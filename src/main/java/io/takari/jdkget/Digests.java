@@ -0,0 +1,121 @@
+package io.takari.jdkget;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import io.takari.jdkget.JdkReleases.JdkBinary;
+
+/**
+ * Computes all digests a {@link JdkBinary} declares in a single pass over its bytes.
+ */
+public class Digests {
+
+  private final MessageDigest sha256;
+  private final MessageDigest md5;
+  private long size;
+
+  private String sha256Hex;
+  private String md5Hex;
+
+  public Digests(boolean sha256, boolean md5) {
+    this.sha256 = sha256 ? digest("SHA-256") : null;
+    this.md5 = md5 ? digest("MD5") : null;
+  }
+
+  public static Digests of(JdkBinary bin) {
+    return new Digests(bin.getSha256() != null, bin.getMd5() != null);
+  }
+
+  private static MessageDigest digest(String algorithm) {
+    try {
+      return MessageDigest.getInstance(algorithm);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  public void update(byte[] b, int off, int len) {
+    if (sha256 != null) {
+      sha256.update(b, off, len);
+    }
+    if (md5 != null) {
+      md5.update(b, off, len);
+    }
+    size += len;
+  }
+
+  public void update(ByteBuffer bb) {
+    int len = bb.remaining();
+    if (sha256 != null) {
+      bb.mark();
+      sha256.update(bb);
+      bb.reset();
+    }
+    if (md5 != null) {
+      bb.mark();
+      md5.update(bb);
+      bb.reset();
+    }
+    bb.position(bb.position() + len);
+    size += len;
+  }
+
+  /**
+   * Passes everything written to {@code out} through the digests as well
+   */
+  public OutputStream tee(OutputStream out) {
+    return new FilterOutputStream(out) {
+      @Override
+      public void write(int b) throws IOException {
+        write(new byte[] {(byte) b}, 0, 1);
+      }
+
+      @Override
+      public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+        update(b, off, len);
+      }
+    };
+  }
+
+  /**
+   * Completes the digests, no more updates are possible afterwards
+   */
+  public Digests finish() {
+    if (sha256 != null && sha256Hex == null) {
+      sha256Hex = hex(sha256.digest());
+    }
+    if (md5 != null && md5Hex == null) {
+      md5Hex = hex(md5.digest());
+    }
+    return this;
+  }
+
+  public String getSha256() {
+    return sha256Hex;
+  }
+
+  public String getMd5() {
+    return md5Hex;
+  }
+
+  public long getSize() {
+    return size;
+  }
+
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  static String hex(byte[] bytes) {
+    char[] c = new char[bytes.length * 2];
+    for (int i = 0; i < bytes.length; i++) {
+      c[i * 2] = HEX[(bytes[i] >> 4) & 0xf];
+      c[i * 2 + 1] = HEX[bytes[i] & 0xf];
+    }
+    return new String(c);
+  }
+
+}
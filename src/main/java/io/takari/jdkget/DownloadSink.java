@@ -0,0 +1,155 @@
+package io.takari.jdkget;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Writes response bodies into a file channel through a large direct buffer, so the file sees a few big positional
+ * writes instead of one per read. Interrupts, progress and bookkeeping are handled whenever the buffer is flushed, not
+ * on every read. Buffers are pooled and reused across downloads.
+ */
+class DownloadSink {
+
+  static final int BUFFER_SIZE = 1024 * 1024;
+
+  // what a single read from the network asks for
+  private static final int READ_SIZE = 64 * 1024;
+
+  // enough for a few downloads with several segments each, more than that just get allocated
+  private static final int MAX_POOLED = 16;
+
+  private static final Queue<ByteBuffer> pool = new ConcurrentLinkedQueue<>();
+  private static final AtomicInteger pooled = new AtomicInteger();
+
+  interface Listener {
+    /**
+     * Called after {@code bytes} more bytes made it into the file, which now has everything up to {@code pos}
+     */
+    void flushed(long pos, int bytes) throws IOException;
+  }
+
+  private final FileChannel channel;
+  private final Throttle throttle;
+  private final Digests digests;
+
+  /**
+   * @param throttle bandwidth limit to obey, or {@code null}
+   * @param digests digests to feed with everything written, or {@code null}
+   */
+  DownloadSink(FileChannel channel, Throttle throttle, Digests digests) {
+    this.channel = channel;
+    this.throttle = throttle;
+    this.digests = digests;
+  }
+
+  /**
+   * Copies {@code in} into the file from {@code pos} up to {@code end} (exclusive, -1 for everything there is). Whatever
+   * was read is written out even if reading fails halfway, so a retry can pick up where this one left off.
+   *
+   * @return the position reached
+   */
+  public long transfer(InputStream in, long pos, long end, Listener listener) throws IOException, InterruptedException {
+    ByteBuffer buf = acquire();
+    byte[] chunk = new byte[READ_SIZE];
+    long[] flushedPos = {pos};
+    try {
+      long read = pos;
+      while (end == -1 || read < end) {
+        int want = Math.min(chunk.length, buf.remaining());
+        if (end != -1) {
+          want = (int) Math.min(want, end - read);
+        }
+        int l;
+        try {
+          l = in.read(chunk, 0, want);
+        } catch (IOException e) {
+          // keep what we got so far
+          try {
+            flush(buf, flushedPos, listener);
+          } catch (IOException fe) {
+            e.addSuppressed(fe);
+          }
+          throw e;
+        }
+        if (l == -1) {
+          break;
+        }
+        buf.put(chunk, 0, l);
+        if (digests != null) {
+          digests.update(chunk, 0, l);
+        }
+        read += l;
+        if (throttle != null) {
+          throttle.acquire(l);
+        }
+        if (!buf.hasRemaining()) {
+          flush(buf, flushedPos, listener);
+          Util.checkInterrupt();
+        }
+      }
+      flush(buf, flushedPos, listener);
+      return flushedPos[0];
+    } finally {
+      release(buf);
+    }
+  }
+
+  private void flush(ByteBuffer buf, long[] pos, Listener listener) throws IOException {
+    buf.flip();
+    int bytes = buf.remaining();
+    long p = pos[0];
+    while (buf.hasRemaining()) {
+      p += channel.write(buf, p);
+    }
+    buf.clear();
+    pos[0] = p;
+    if (bytes > 0 && listener != null) {
+      listener.flushed(p, bytes);
+    }
+  }
+
+  private static ByteBuffer acquire() {
+    ByteBuffer buf = pool.poll();
+    if (buf == null) {
+      return ByteBuffer.allocateDirect(BUFFER_SIZE);
+    }
+    pooled.decrementAndGet();
+    buf.clear();
+    return buf;
+  }
+
+  private static void release(ByteBuffer buf) {
+    if (pooled.incrementAndGet() <= MAX_POOLED) {
+      pool.offer(buf);
+    } else {
+      pooled.decrementAndGet();
+    }
+  }
+
+  /**
+   * Prints progress of a download of {@code total} bytes every now and then, looking at the clock only when something
+   * got flushed
+   */
+  static Listener progress(IOutput output, long total, Listener next) {
+    long start = System.currentTimeMillis();
+    long[] state = {0, 0}; // copied bytes, progress chunk
+    return (pos, bytes) -> {
+      state[0] += bytes;
+      long time = System.currentTimeMillis() - start;
+      long chunk = time / Util.PROGRESS_FREQ;
+      if (chunk > state[1]) {
+        state[1] = chunk;
+        output.printProgress(time, state[0], total);
+      }
+      if (next != null) {
+        next.flushed(pos, bytes);
+      }
+    };
+  }
+
+}
@@ -0,0 +1,297 @@
+package io.takari.jdkget;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Tracks which byte ranges of a download are still pending. The data goes into a {@code .part} file next to the target
+ * until the download completes. When persistent, the state goes into a {@code .part.state} sidecar, so an interrupted
+ * download can be continued with range requests instead of starting over.
+ */
+class DownloadState {
+
+  private static final String PART = ".part";
+  private static final String STATE = ".part.state";
+
+  // save state of a streamed download after this many bytes
+  private static final long COMMIT_BYTES = 8L * 1024L * 1024L;
+
+  static class Range {
+    final long start;
+    final long end;
+    volatile long pos;
+
+    Range(long start, long pos, long end) {
+      this.start = start;
+      this.pos = pos;
+      this.end = end;
+    }
+
+    boolean isComplete() {
+      return end != -1 && pos >= end;
+    }
+
+    @Override
+    public String toString() {
+      return start + "-" + pos + "-" + end;
+    }
+  }
+
+  private final File target;
+  private final File part;
+  private final File stateFile;
+
+  private String url;
+  private final String etag;
+  private final String lastModified;
+  private final long length;
+  private final List<Range> ranges;
+  private final AtomicLong uncommitted = new AtomicLong();
+
+  private DownloadState(File target, boolean persistent, String url, String etag, String lastModified, long length, List<Range> ranges) {
+    this.target = target;
+    this.part = new File(target.getPath() + PART);
+    this.stateFile = persistent ? new File(target.getPath() + STATE) : null;
+    this.url = url;
+    this.etag = etag;
+    this.lastModified = lastModified;
+    this.length = length;
+    this.ranges = Collections.unmodifiableList(ranges);
+  }
+
+  /**
+   * New download of {@code length} bytes split into {@code segments} ranges. Only persisted when requested and when the
+   * server gave us enough to recognize the same content later.
+   */
+  static DownloadState create(File target, boolean resume, String url, String etag, String lastModified, long length, int segments) {
+    List<Range> ranges = new ArrayList<>();
+    if (length <= 0) {
+      ranges.add(new Range(0, 0, -1));
+    } else {
+      long segmentSize = length / segments;
+      for (int i = 0; i < segments; i++) {
+        long start = i * segmentSize;
+        long end = i == segments - 1 ? length : start + segmentSize;
+        ranges.add(new Range(start, start, end));
+      }
+    }
+    boolean persistent = resume && length > 0 && (etag != null || lastModified != null);
+    return new DownloadState(target, persistent, url, etag, lastModified, length, ranges);
+  }
+
+  /**
+   * Previously persisted state for {@code target}, or {@code null} if there's nothing usable to resume
+   */
+  static DownloadState load(File target) {
+    File stateFile = new File(target.getPath() + STATE);
+    File part = new File(target.getPath() + PART);
+    if (!stateFile.isFile() || !part.isFile()) {
+      return null;
+    }
+
+    Properties props = new Properties();
+    try (InputStream in = new FileInputStream(stateFile)) {
+      props.load(in);
+
+      long length = Long.parseLong(props.getProperty("length"));
+      List<Range> ranges = new ArrayList<>();
+      for (String r : StringUtils.split(props.getProperty("ranges"), ',')) {
+        String[] p = StringUtils.split(r, '-');
+        ranges.add(new Range(Long.parseLong(p[0]), Long.parseLong(p[1]), Long.parseLong(p[2])));
+      }
+      if (ranges.isEmpty() || part.length() < ranges.get(ranges.size() - 1).pos) {
+        return null;
+      }
+      return new DownloadState(target, true, props.getProperty("url"), props.getProperty("etag"), props.getProperty("lastModified"), length, ranges);
+    } catch (IOException | RuntimeException e) {
+      return null;
+    }
+  }
+
+  public boolean isPersistent() {
+    return stateFile != null;
+  }
+
+  public File getPartFile() {
+    return part;
+  }
+
+  public String getUrl() {
+    return url;
+  }
+
+  public void setUrl(String url) {
+    this.url = url;
+  }
+
+  public String getEtag() {
+    return etag;
+  }
+
+  public String getLastModified() {
+    return lastModified;
+  }
+
+  public long getLength() {
+    return length;
+  }
+
+  public List<Range> getRanges() {
+    return ranges;
+  }
+
+  /**
+   * Whether a response with these validators describes the same content this state was created for
+   */
+  public boolean matches(String etag, String lastModified, long length) {
+    if (length != this.length) {
+      return false;
+    }
+    if (isStrong(this.etag) && isStrong(etag)) {
+      return this.etag.equals(etag);
+    }
+    return this.lastModified != null && this.lastModified.equals(lastModified);
+  }
+
+  /**
+   * Value for the {@code If-Range} header, so the server only honours our range if content hasn't changed
+   */
+  public String ifRange() {
+    return isStrong(etag) ? etag : lastModified;
+  }
+
+  private static boolean isStrong(String etag) {
+    return etag != null && !etag.startsWith("W/");
+  }
+
+  public long committed() {
+    long c = 0;
+    for (Range r : ranges) {
+      c += r.pos - r.start;
+    }
+    return c;
+  }
+
+  public long remaining() {
+    return length - committed();
+  }
+
+  public boolean isComplete() {
+    for (Range r : ranges) {
+      if (!r.isComplete()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  public Range firstPending() {
+    for (Range r : ranges) {
+      if (!r.isComplete()) {
+        return r;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Opens the part file for writing ranges at their positions. When the length is known the file is sized up front, so
+   * writes don't keep growing it and it doesn't end up fragmented; otherwise it's cut back to what the single range
+   * committed.
+   */
+  public FileChannel openChannel() throws IOException {
+    RandomAccessFile raf = new RandomAccessFile(part, "rw");
+    try {
+      if (length > 0) {
+        if (raf.length() != length) {
+          raf.setLength(length);
+        }
+      } else {
+        raf.setLength(firstPending().pos);
+      }
+      return raf.getChannel();
+    } catch (IOException e) {
+      raf.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Records {@code range} as written up to {@code pos}, saving the state every so often
+   */
+  public void advance(Range range, long pos) throws IOException {
+    long before = range.pos;
+    range.pos = pos;
+    if (uncommitted.addAndGet(pos - before) >= COMMIT_BYTES) {
+      uncommitted.set(0);
+      save();
+    }
+  }
+
+  public synchronized void save() throws IOException {
+    if (stateFile == null || isComplete()) {
+      return;
+    }
+
+    Properties props = new Properties();
+    if (url != null) {
+      props.setProperty("url", url);
+    }
+    if (etag != null) {
+      props.setProperty("etag", etag);
+    }
+    if (lastModified != null) {
+      props.setProperty("lastModified", lastModified);
+    }
+    props.setProperty("length", Long.toString(length));
+    props.setProperty("ranges", StringUtils.join(ranges, ','));
+
+    File tmp = new File(stateFile.getPath() + ".tmp");
+    try (OutputStream out = new FileOutputStream(tmp)) {
+      props.store(out, null);
+    }
+    move(tmp, stateFile);
+  }
+
+  /**
+   * Publishes a completed download under the target name
+   */
+  public void complete() throws IOException {
+    move(part, target);
+    discard();
+  }
+
+  public void discard() throws IOException {
+    if (stateFile != null) {
+      Files.deleteIfExists(stateFile.toPath());
+    }
+    if (part.exists() && !isComplete()) {
+      Files.delete(part.toPath());
+    }
+  }
+
+  static void move(File from, File to) throws IOException {
+    try {
+      Files.move(from.toPath(), to.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(from.toPath(), to.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+}
@@ -0,0 +1,314 @@
+package io.takari.jdkget;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+
+import com.google.common.base.Throwables;
+
+/**
+ * Races a second request against one that is too slow, keeping whichever wins. A request is hedged when it doesn't get
+ * a response within {@code firstByteTimeout}, and a body is hedged with a range request for the rest of it when its
+ * throughput stays under {@code minThroughput} for a whole {@code window}. Only GETs are ever duplicated.
+ */
+class Hedging {
+
+  interface Opener {
+    /**
+     * Response with the content starting at {@code pos}, or an exception if that's not what the server gave us
+     */
+    CloseableHttpResponse open(long pos) throws IOException, InterruptedException;
+  }
+
+  // don't keep switching back and forth on a link that's just slow
+  private static final int MAX_HEDGES = 3;
+
+  private final long firstByteTimeout;
+  private final long minThroughput;
+  private final long window;
+
+  private final ExecutorService executor;
+  private final ScheduledExecutorService scheduler;
+
+  /**
+   * @param firstByteTimeout milliseconds to wait for a response before hedging, 0 to never hedge slow responses
+   * @param minThroughput bytes per second a body should be coming at, 0 to never hedge slow bodies
+   * @param window milliseconds over which body throughput is measured
+   */
+  Hedging(long firstByteTimeout, long minThroughput, long window) {
+    this.firstByteTimeout = firstByteTimeout;
+    this.minThroughput = minThroughput;
+    this.window = window;
+    ThreadFactory daemons = r -> {
+      Thread t = new Thread(r, "jdkget-hedging");
+      t.setDaemon(true);
+      return t;
+    };
+    this.executor = Executors.newCachedThreadPool(daemons);
+    this.scheduler = Executors.newSingleThreadScheduledExecutor(daemons);
+  }
+
+  public void shutdown() {
+    scheduler.shutdownNow();
+    executor.shutdownNow();
+  }
+
+  public CloseableHttpResponse execute(CloseableHttpClient client, HttpGet req, IOutput output) throws IOException, InterruptedException {
+    if (firstByteTimeout <= 0) {
+      return client.execute(req);
+    }
+
+    CompletionService<CloseableHttpResponse> completion = new ExecutorCompletionService<>(executor);
+    Future<CloseableHttpResponse> first = completion.submit(() -> client.execute(req));
+    Future<CloseableHttpResponse> second = null;
+    HttpGet hedge = null;
+    try {
+      Future<CloseableHttpResponse> done = completion.poll(firstByteTimeout, TimeUnit.MILLISECONDS);
+      if (done == null) {
+        output.info("No response in " + firstByteTimeout + "ms, hedging with a second request");
+        hedge = new HttpGet(req.getURI());
+        hedge.setHeaders(req.getAllHeaders());
+        HttpGet h = hedge;
+        second = completion.submit(() -> client.execute(h));
+        done = completion.take();
+      }
+
+      ExecutionException failure = null;
+      for (int pending = second != null ? 2 : 1; pending > 0; pending--) {
+        if (done == null) {
+          done = completion.take();
+        }
+        try {
+          CloseableHttpResponse res = done.get();
+          if (second != null) {
+            output.info(done == first ? "Original request won" : "Hedged request won");
+            // the loser goes away, taking its connection with it
+            Future<CloseableHttpResponse> loser = done == first ? second : first;
+            (done == first ? hedge : req).abort();
+            discard(loser);
+          }
+          return res;
+        } catch (ExecutionException e) {
+          failure = e;
+          done = null;
+        }
+      }
+      Throwables.propagateIfPossible(failure.getCause(), IOException.class);
+      throw Throwables.propagate(failure.getCause());
+    } catch (InterruptedException e) {
+      req.abort();
+      discard(first);
+      if (hedge != null) {
+        hedge.abort();
+        discard(second);
+      }
+      throw e;
+    }
+  }
+
+  private void discard(Future<CloseableHttpResponse> f) {
+    executor.submit(() -> {
+      try {
+        f.get().close();
+      } catch (Exception e) {
+        // aborted, nothing to clean up
+      }
+    });
+  }
+
+  /**
+   * Watches the throughput of {@code in}, which is the body of {@code res} from position {@code pos} on. When it's too
+   * slow, a second response is opened from wherever reading got to and used instead, if it turns out to be faster.
+   */
+  public InputStream monitor(CloseableHttpResponse res, InputStream in, long pos, Opener opener, IOutput output) {
+    if (minThroughput <= 0) {
+      return in;
+    }
+    return new HedgedStream(res, in, pos, opener, output);
+  }
+
+  private static class Body {
+    final CloseableHttpResponse response;
+    final InputStream in;
+    long pos;
+
+    Body(CloseableHttpResponse response, InputStream in, long pos) {
+      this.response = response;
+      this.in = in;
+      this.pos = pos;
+    }
+  }
+
+  private class HedgedStream extends InputStream {
+    private final Opener opener;
+    private final IOutput output;
+    private final ScheduledFuture<?> watchdog;
+
+    private volatile Body current;
+    // next position handed out to the reader
+    private volatile long pos;
+
+    private long windowStart;
+    private long windowPos;
+    private int hedges;
+    private boolean hedging;
+    private boolean closed;
+
+    HedgedStream(CloseableHttpResponse res, InputStream in, long pos, Opener opener, IOutput output) {
+      this.current = new Body(res, in, pos);
+      this.pos = pos;
+      this.opener = opener;
+      this.output = output;
+      this.windowStart = System.nanoTime();
+      this.windowPos = pos;
+      long period = Math.max(100L, window / 4);
+      this.watchdog = scheduler.scheduleWithFixedDelay(this::check, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public int read() throws IOException {
+      byte[] b = new byte[1];
+      int l = read(b, 0, 1);
+      return l == -1 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      while (true) {
+        Body body = current;
+        try {
+          // a hedge starts where reading was when it was sent, catch up with what we've got since
+          while (body.pos < pos) {
+            long skipped = body.in.skip(pos - body.pos);
+            if (skipped <= 0) {
+              if (body.in.read() == -1) {
+                throw new IOException("Premature end of hedged response at " + body.pos);
+              }
+              skipped = 1;
+            }
+            body.pos += skipped;
+          }
+
+          int l = body.in.read(b, off, len);
+          if (l == -1) {
+            if (body != current) {
+              continue;
+            }
+            return -1;
+          }
+          body.pos += l;
+          pos = body.pos;
+          return l;
+        } catch (IOException e) {
+          if (body != current) {
+            // switched over to the hedge, which is why this one got closed
+            continue;
+          }
+          throw e;
+        }
+      }
+    }
+
+    private void check() {
+      long from;
+      long rate;
+      synchronized (this) {
+        long now = System.nanoTime();
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(now - windowStart);
+        if (closed || hedging || hedges >= MAX_HEDGES || elapsed < window) {
+          return;
+        }
+        rate = (pos - windowPos) * 1000L / elapsed;
+        windowStart = now;
+        windowPos = pos;
+        if (rate >= minThroughput) {
+          return;
+        }
+        hedging = true;
+        hedges++;
+        from = pos;
+      }
+
+      output.info("Download slowed to " + FileUtils.byteCountToDisplaySize(rate) + "/s, hedging with a second request from " + from);
+      executor.submit(() -> hedge(from));
+    }
+
+    private void hedge(long from) {
+      long start = System.nanoTime();
+      CloseableHttpResponse res;
+      try {
+        res = opener.open(from);
+      } catch (Exception e) {
+        output.error("Hedged request failed: " + e);
+        synchronized (this) {
+          hedging = false;
+        }
+        return;
+      }
+
+      Body old = null;
+      synchronized (this) {
+        long elapsed = Math.max(1L, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        long rate = (pos - from) * 1000L / elapsed;
+        if (!closed && rate < minThroughput) {
+          old = current;
+          try {
+            current = new Body(res, res.getEntity().getContent(), from);
+          } catch (IOException e) {
+            output.error("Hedged request failed: " + e);
+            old = null;
+          }
+        }
+        hedging = false;
+        windowStart = System.nanoTime();
+        windowPos = pos;
+      }
+
+      if (old != null) {
+        output.info("Hedged request won, switching over to it");
+        closeQuietly(old.response);
+      } else {
+        output.info("Keeping the original request, dropping the hedged one");
+        closeQuietly(res);
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      Body body;
+      synchronized (this) {
+        closed = true;
+        body = current;
+      }
+      watchdog.cancel(false);
+      try {
+        body.in.close();
+      } finally {
+        body.response.close();
+      }
+    }
+  }
+
+  private static void closeQuietly(CloseableHttpResponse res) {
+    try {
+      res.close();
+    } catch (IOException e) {
+      // dropping it anyway
+    }
+  }
+
+}
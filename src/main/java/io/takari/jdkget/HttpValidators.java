@@ -0,0 +1,60 @@
+package io.takari.jdkget;
+
+import org.apache.http.Header;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpMessage;
+
+/**
+ * ETag and Last-Modified a server sent along with a binary, which tell it what version of the binary we have when
+ * asking whether it changed since
+ */
+public class HttpValidators {
+
+  private final String etag;
+  private final String lastModified;
+
+  public HttpValidators(String etag, String lastModified) {
+    this.etag = etag;
+    this.lastModified = lastModified;
+  }
+
+  /**
+   * Validators of a response, or {@code null} if the server didn't send any
+   */
+  public static HttpValidators of(HttpMessage res) {
+    String etag = headerValue(res, HttpHeaders.ETAG);
+    String lastModified = headerValue(res, HttpHeaders.LAST_MODIFIED);
+    return etag != null || lastModified != null ? new HttpValidators(etag, lastModified) : null;
+  }
+
+  static String headerValue(HttpMessage res, String name) {
+    Header h = res.getFirstHeader(name);
+    return h == null ? null : h.getValue();
+  }
+
+  public String getEtag() {
+    return etag;
+  }
+
+  public String getLastModified() {
+    return lastModified;
+  }
+
+  /**
+   * Makes {@code req} conditional, for the server to respond with a 304 if its version is still the same
+   */
+  public void applyTo(HttpMessage req) {
+    if (etag != null) {
+      req.setHeader(HttpHeaders.IF_NONE_MATCH, etag);
+    }
+    if (lastModified != null) {
+      req.setHeader(HttpHeaders.IF_MODIFIED_SINCE, lastModified);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return etag != null ? etag : lastModified;
+  }
+
+}
@@ -0,0 +1,25 @@
+package io.takari.jdkget;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking counterpart of {@link ITransport}, for scheduling many downloads without a thread waiting on each of
+ * them. Cancelling a returned future stops the operation. Blocking transports can be used through
+ * {@link AsyncTransport}.
+ */
+public interface IAsyncTransport {
+
+  /**
+   * @param progress told about progress every now and then, or {@code null}
+   */
+  CompletableFuture<Void> downloadJdk(JdkContext context, File jdkImage, IProgressListener progress);
+
+  CompletableFuture<Void> downloadJce(JdkContext context, File jceImage, IProgressListener progress);
+
+  CompletableFuture<Boolean> validate(JdkContext context, File jdkImage);
+
+  File getImageFile(JdkContext context, File parent) throws IOException;
+
+}
@@ -11,7 +11,7 @@ public interface IOutput {
   default void printProgress(long time, long copiedBytes, long totalBytes) {
 
     // spd
-    long sec = time / 1000L;
+    double sec = Math.max(time, 1L) / 1000d;
     double spd = (((double) copiedBytes) / sec) / 1024; // kb/s
     String spdUnit = "kB/s";
     if (spd > 1024) {
@@ -45,9 +45,10 @@ public interface IOutput {
       }
 
       double pct = ((double) copiedBytes * 100) / totalBytes;
-      long eta = ((time * (totalBytes - copiedBytes)) / copiedBytes);
+      // nothing arrived yet, e.g. all segments are still connecting
+      String eta = copiedBytes > 0 ? Util.timeToStr((time * (totalBytes - copiedBytes)) / copiedBytes) : "?";
 
-      info(String.format("Downloading %,.2f %s of %,.2f %s (%.2f%%) @ %,.2f %s ETA: %s", copied, copiedUnit, total, totalUnit, pct, spd, spdUnit, Util.timeToStr(eta)));
+      info(String.format("Downloading %,.2f %s of %,.2f %s (%.2f%%) @ %,.2f %s ETA: %s", copied, copiedUnit, total, totalUnit, pct, spd, spdUnit, eta));
     } else {
       info(String.format("Downloading %,.2f %s @ %,.2f %s", copied, copiedUnit, spd, spdUnit));
     }
@@ -0,0 +1,11 @@
+package io.takari.jdkget;
+
+/**
+ * Told about every phase of an install as it completes, for finding out where the time goes
+ */
+@FunctionalInterface
+public interface IPhaseListener {
+
+  void phaseCompleted(PhaseEvent event);
+
+}
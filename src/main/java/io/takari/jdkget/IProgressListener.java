@@ -0,0 +1,11 @@
+package io.takari.jdkget;
+
+@FunctionalInterface
+public interface IProgressListener {
+
+  /**
+   * @param totalBytes size of the whole thing, or -1 if unknown
+   */
+  void progress(long copiedBytes, long totalBytes);
+
+}
@@ -15,4 +15,20 @@ public interface ITransport {
 
   File getImageFile(JdkContext context, File parent) throws IOException;
 
+  /**
+   * Validators the server sent along with the image last downloaded into {@code jdkImage}, or {@code null} if there
+   * were none or the transport doesn't keep track of them
+   */
+  default HttpValidators getValidators(File jdkImage) {
+    return null;
+  }
+
+  /**
+   * Whether the remote image changed since it was served with {@code validators}, asking the server with a conditional
+   * request. Transports that can't tell assume it did.
+   */
+  default boolean isModified(JdkContext context, HttpValidators validators) throws IOException, InterruptedException {
+    return true;
+  }
+
 }
@@ -0,0 +1,217 @@
+package io.takari.jdkget;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.takari.jdkget.JdkReleases.JdkBinary;
+
+/**
+ * Content-addressed store of validated images, shared by any number of installs. Images are keyed by their catalog
+ * digest, as {@code sha256/<digest>} or {@code md5/<digest>} for binaries only having that, and are published with an
+ * atomic rename, so a cache entry is always complete and valid. Once the cache grows over its maximum size the least
+ * recently used entries are evicted.
+ */
+public class ImageCache {
+
+  public static final long DEFAULT_MAX_SIZE = 10L * 1024L * 1024L * 1024L;
+
+  private static final String[] ALGORITHMS = {"sha256", "md5"};
+
+  private final File root;
+  private final long maxSize;
+  private final ImageValidator validator = new ImageValidator();
+
+  public ImageCache() {
+    this(defaultDirectory());
+  }
+
+  public ImageCache(File root) {
+    this(root, DEFAULT_MAX_SIZE);
+  }
+
+  public ImageCache(File root, long maxSize) {
+    this.root = root.getAbsoluteFile();
+    this.maxSize = maxSize;
+  }
+
+  public static File defaultDirectory() {
+    return new File(System.getProperty("user.home"), ".jdkget/cache");
+  }
+
+  public File getRoot() {
+    return root;
+  }
+
+  public long getMaxSize() {
+    return maxSize;
+  }
+
+  /**
+   * Location of the cache entry for {@code bin}, or {@code null} when the catalog has no digest to address it by
+   */
+  public File entry(JdkBinary bin) {
+    if (bin.getSha256() != null) {
+      return new File(root, "sha256/" + bin.getSha256());
+    }
+    if (bin.getMd5() != null) {
+      return new File(root, "md5/" + bin.getMd5());
+    }
+    return null;
+  }
+
+  /**
+   * Where to download {@code bin} before publishing it, on the same file system as the entry so it can be renamed
+   * into place. It's always the same location, so an interrupted download can be resumed.
+   */
+  File staging(JdkBinary bin) {
+    return staging(entry(bin));
+  }
+
+  private File staging(File entry) {
+    return new File(root, "tmp/" + entry.getParentFile().getName() + "-" + entry.getName());
+  }
+
+  /**
+   * Takes the lock of the entry for {@code bin}, held while filling the entry or making copies of it, so it isn't
+   * evicted meanwhile
+   */
+  ProcessLock lock(JdkBinary bin, IOutput output) throws IOException, InterruptedException {
+    return ProcessLock.acquire(lockFile(entry(bin)), output);
+  }
+
+  private File lockFile(File entry) {
+    return new File(staging(entry).getPath() + ".lock");
+  }
+
+  /**
+   * Whether there's a valid entry for {@code bin}, dropping it if it turns out to be corrupt
+   */
+  public boolean contains(JdkBinary bin, IOutput output) throws IOException, InterruptedException {
+    File entry = entry(bin);
+    if (entry == null || !entry.isFile()) {
+      return false;
+    }
+    if (validator.validate(bin, entry, output)) {
+      return true;
+    }
+    output.info("Dropping invalid cache entry " + entry);
+    remove(entry);
+    return false;
+  }
+
+  /**
+   * Moves a validated image into the cache
+   */
+  void publish(File staged, JdkBinary bin) throws IOException {
+    File entry = entry(bin);
+    Files.createDirectories(entry.getParentFile().toPath());
+    DownloadState.move(staged, entry);
+    ValidationStamp.delete(staged);
+    // the digests were just checked, only the path changed
+    ValidationStamp.write(entry, bin);
+  }
+
+  /**
+   * Puts a copy of the valid entry for {@code bin} at {@code target}, as a hard link when possible
+   */
+  public void materialize(JdkBinary bin, File target) throws IOException, InterruptedException {
+    File entry = entry(bin);
+    touch(entry);
+    // setting times may lose some precision of the modification time, which is part of the stamp
+    ValidationStamp.write(entry, bin);
+
+    Util.linkOrCopy(entry, target);
+    ValidationStamp.write(target, bin);
+  }
+
+  /**
+   * Records a use of {@code entry}. Access time is set explicitly instead of touching the modification time, which would
+   * invalidate its validation stamp.
+   */
+  private static void touch(File entry) {
+    try {
+      Files.getFileAttributeView(entry.toPath(), BasicFileAttributeView.class).setTimes(null, FileTime.fromMillis(System.currentTimeMillis()), null);
+    } catch (IOException e) {
+      // just makes it a likelier candidate for eviction
+    }
+  }
+
+  /**
+   * Removes least recently used entries until the cache fits into its maximum size, never removing {@code keep} or
+   * entries somebody holds the lock of
+   */
+  public void evict(File keep, IOutput output) {
+    List<File> entries = new ArrayList<>();
+    List<BasicFileAttributes> attrs = new ArrayList<>();
+    long total = 0;
+    for (String algorithm : ALGORITHMS) {
+      File[] files = new File(root, algorithm).listFiles();
+      if (files == null) {
+        continue;
+      }
+      for (File f : files) {
+        if (f.getName().indexOf('.') != -1) {
+          // validation stamps and such
+          continue;
+        }
+        try {
+          BasicFileAttributes a = Files.readAttributes(f.toPath(), BasicFileAttributes.class);
+          entries.add(f);
+          attrs.add(a);
+          total += a.size();
+        } catch (IOException e) {
+          // removed meanwhile
+        }
+      }
+    }
+    if (total <= maxSize) {
+      return;
+    }
+
+    List<Integer> order = new ArrayList<>();
+    for (int i = 0; i < entries.size(); i++) {
+      order.add(i);
+    }
+    order.sort((a, b) -> attrs.get(a).lastAccessTime().compareTo(attrs.get(b).lastAccessTime()));
+
+    for (int i : order) {
+      if (total <= maxSize) {
+        break;
+      }
+      File f = entries.get(i);
+      if (keep != null && f.getAbsoluteFile().equals(keep.getAbsoluteFile())) {
+        continue;
+      }
+      try (ProcessLock lock = ProcessLock.tryAcquire(lockFile(f))) {
+        if (lock == null) {
+          output.info("Not evicting " + f + " from cache, it's in use");
+          continue;
+        }
+        output.info("Evicting " + f + " from cache");
+        if (remove(f)) {
+          total -= attrs.get(i).size();
+        }
+      } catch (IOException e) {
+        output.error("Cannot evict " + f + " from cache: " + e);
+      }
+    }
+  }
+
+  private static boolean remove(File entry) {
+    ValidationStamp.delete(entry);
+    try {
+      Files.deleteIfExists(entry.toPath());
+      return true;
+    } catch (IOException e) {
+      // still in use somewhere
+      return false;
+    }
+  }
+
+}
@@ -0,0 +1,170 @@
+package io.takari.jdkget;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.google.common.base.Throwables;
+
+import io.takari.jdkget.JdkReleases.JdkBinary;
+
+/**
+ * Checks images against the size and digests declared in the catalog, reading each file at most once no matter how
+ * many digests there are to verify. Successfully validated images get a {@link ValidationStamp} so they aren't hashed
+ * again until they change, unless running in paranoid mode.
+ */
+public class ImageValidator {
+
+  private static final int BUFFER_SIZE = 1024 * 1024;
+
+  private static final ThreadLocal<ByteBuffer> buffers = new ThreadLocal<ByteBuffer>() {
+    @Override
+    protected ByteBuffer initialValue() {
+      return ByteBuffer.allocateDirect(BUFFER_SIZE);
+    }
+  };
+
+  private final boolean paranoid;
+  private final boolean stamps;
+
+  public ImageValidator() {
+    this(false);
+  }
+
+  /**
+   * @param paranoid always hash the images, ignoring validation stamps
+   */
+  public ImageValidator(boolean paranoid) {
+    this(paranoid, true);
+  }
+
+  /**
+   * @param stamps consult and leave validation stamps; without them images are always hashed and stamps are left alone,
+   *          e.g. in a mirror that keeps track of what it verified in its {@link MirrorManifest}
+   */
+  public ImageValidator(boolean paranoid, boolean stamps) {
+    this.paranoid = paranoid;
+    this.stamps = stamps;
+  }
+
+  public boolean isParanoid() {
+    return paranoid;
+  }
+
+  public boolean validate(JdkBinary bin, File file, IOutput output) throws IOException, InterruptedException {
+    return validate(bin, file, null, output);
+  }
+
+  /**
+   * @param known digests already computed for this file, e.g. while it was downloaded, or {@code null}
+   */
+  public boolean validate(JdkBinary bin, File file, Digests known, IOutput output) throws IOException, InterruptedException {
+    // cheapest check goes first, no point hashing a file of the wrong size
+    long length = file.length();
+    if (bin.getSize() != -1 && bin.getSize() != length) {
+      output.error("File size `" + length + "` differs from `" + bin.getSize() + "`");
+      if (stamps) {
+        ValidationStamp.delete(file);
+      }
+      return false;
+    }
+
+    if (stamps && !paranoid && ValidationStamp.isValid(file, bin)) {
+      return true;
+    }
+    // metadata as of before hashing, so a change while we're at it doesn't end up stamped as valid
+    ValidationStamp before = stamps ? ValidationStamp.of(file, bin) : null;
+
+    boolean needSha256 = bin.getSha256() != null && (known == null || known.getSha256() == null);
+    boolean needMd5 = bin.getMd5() != null && (known == null || known.getMd5() == null);
+    Digests computed = null;
+    if (needSha256 || needMd5) {
+      computed = digest(file, new Digests(needSha256, needMd5));
+    }
+
+    boolean valid = true;
+    if (bin.getSha256() != null) {
+      String fileHash = needSha256 ? computed.getSha256() : known.getSha256();
+      if (!bin.getSha256().equals(fileHash)) {
+        valid = false;
+        output.error("File sha256 `" + fileHash + "` differs from `" + bin.getSha256() + "`");
+      }
+    }
+    if (bin.getMd5() != null) {
+      String fileHash = needMd5 ? computed.getMd5() : known.getMd5();
+      if (!bin.getMd5().equals(fileHash)) {
+        valid = false;
+        output.error("File md5 `" + fileHash + "` differs from `" + bin.getMd5() + "`");
+      }
+    }
+
+    if (!stamps) {
+      return valid;
+    }
+    if (valid) {
+      ValidationStamp.write(file, bin, before);
+    } else {
+      ValidationStamp.delete(file);
+    }
+    return valid;
+  }
+
+  /**
+   * Feeds the whole file through {@code digests} in a single sequential read
+   */
+  public static Digests digest(File file, Digests digests) throws IOException, InterruptedException {
+    ByteBuffer buf = buffers.get();
+    try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      buf.clear();
+      while (ch.read(buf) != -1) {
+        Util.checkInterrupt();
+        buf.flip();
+        digests.update(buf);
+        buf.clear();
+      }
+    }
+    return digests.finish();
+  }
+
+  /**
+   * Validates a number of images concurrently
+   *
+   * @return validation result for each of the files, in the same order
+   */
+  public Map<File, Boolean> validateAll(Map<File, JdkBinary> images, int parallelism, IOutput output) throws IOException, InterruptedException {
+    ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, images.size())));
+    try {
+      List<Future<Boolean>> futures = new ArrayList<>();
+      for (Map.Entry<File, JdkBinary> e : images.entrySet()) {
+        File file = e.getKey();
+        JdkBinary bin = e.getValue();
+        futures.add(executor.submit(() -> file.isFile() && validate(bin, file, new PrefixedOutput(output, file.getName()))));
+      }
+
+      Map<File, Boolean> results = new LinkedHashMap<>();
+      int i = 0;
+      for (File file : images.keySet()) {
+        try {
+          results.put(file, futures.get(i++).get());
+        } catch (ExecutionException e) {
+          Throwables.propagateIfPossible(e.getCause(), IOException.class, InterruptedException.class);
+          throw Throwables.propagate(e.getCause());
+        }
+      }
+      return results;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+}
@@ -0,0 +1,304 @@
+package io.takari.jdkget;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Installs several jdks at once. Downloads and extractions are limited separately, so while one jdk gets extracted
+ * the next ones are already downloading. Images and jce policies needed by more than one target are downloaded once.
+ */
+public class JdkBatch {
+
+  public static class Target {
+    private final String version;
+    private final Arch arch;
+    private final File outputDirectory;
+    private final boolean unrestrictedJCE;
+
+    public Target(String version, Arch arch, File outputDirectory) {
+      this(version, arch, outputDirectory, false);
+    }
+
+    public Target(String version, Arch arch, File outputDirectory, boolean unrestrictedJCE) {
+      this.version = version;
+      this.arch = arch;
+      this.outputDirectory = outputDirectory;
+      this.unrestrictedJCE = unrestrictedJCE;
+    }
+
+    public String getVersion() {
+      return version;
+    }
+
+    public Arch getArch() {
+      return arch;
+    }
+
+    public File getOutputDirectory() {
+      return outputDirectory;
+    }
+
+    public boolean isUnrestrictedJCE() {
+      return unrestrictedJCE;
+    }
+
+    @Override
+    public String toString() {
+      return (version != null ? version : "latest") + " " + (arch != null ? arch.name() : "autodetected");
+    }
+  }
+
+  public static class Result {
+    private final Target target;
+    private final Throwable error;
+    private final Duration downloadTime;
+    private final Duration extractTime;
+    private final Duration totalTime;
+
+    Result(Target target, Throwable error, long downloadTime, long extractTime, long totalTime) {
+      this.target = target;
+      this.error = error;
+      this.downloadTime = Duration.ofNanos(downloadTime);
+      this.extractTime = Duration.ofNanos(extractTime);
+      this.totalTime = Duration.ofNanos(totalTime);
+    }
+
+    public Target getTarget() {
+      return target;
+    }
+
+    public boolean isSuccess() {
+      return error == null;
+    }
+
+    public Throwable getError() {
+      return error;
+    }
+
+    /**
+     * Time spent downloading, zero if the image was already there
+     */
+    public Duration getDownloadTime() {
+      return downloadTime;
+    }
+
+    public Duration getExtractTime() {
+      return extractTime;
+    }
+
+    /**
+     * Time from start to finish, including waiting for other targets
+     */
+    public Duration getTotalTime() {
+      return totalTime;
+    }
+
+    @Override
+    public String toString() {
+      return target + ": " + (error == null ? "ok" : error.toString()) + " (download " + downloadTime.toMillis() + "ms, extract "
+          + extractTime.toMillis() + "ms, total " + totalTime.toMillis() + "ms)";
+    }
+  }
+
+  private final List<Target> targets;
+  private final JdkReleases releases;
+  private final ITransport transport;
+  private final IOutput output;
+  private final int retries;
+  private final int downloads;
+  private final int extractions;
+  private final ImageCache cache;
+  private final File workDirectory;
+  private final IPhaseListener phaseListener;
+
+  JdkBatch(Builder b) {
+    this.targets = new ArrayList<>(b.targets);
+    this.releases = b.releases;
+    this.transport = b.transport;
+    this.output = b.output != null ? b.output : StdOutput.INSTANCE;
+    this.retries = b.retries;
+    this.downloads = b.downloads;
+    this.extractions = b.extractions;
+    this.cache = b.cache;
+    this.workDirectory = b.workDirectory;
+    this.phaseListener = b.phaseListener;
+  }
+
+  public List<Target> getTargets() {
+    return targets;
+  }
+
+  /**
+   * Installs all targets, one failing doesn't stop the others
+   *
+   * @return results in the order of the targets
+   */
+  public List<Result> get() throws IOException, InterruptedException {
+    JdkReleases rels = releases != null ? releases : JdkReleases.get(output);
+    ITransport t = transport != null ? transport : new OracleWebsiteTransport();
+    Files.createDirectories(workDirectory.toPath());
+    File shared = Files.createTempDirectory(workDirectory.toPath(), "jdkget-batch").toFile();
+    ITransport sharing = new SharedDownloadTransport(t, shared);
+
+    // fair, for targets to get their turn in order
+    Semaphore downloadPermits = new Semaphore(downloads, true);
+    Semaphore extractPermits = new Semaphore(extractions, true);
+    // a target waiting to be extracted holds on to its thread, which keeps downloads from running too far ahead
+    ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(targets.size(), downloads + extractions)));
+    try {
+      List<Future<Result>> futures = new ArrayList<>();
+      for (Target target : targets) {
+        futures.add(executor.submit(() -> install(target, rels, sharing, downloadPermits, extractPermits)));
+      }
+
+      List<Result> results = new ArrayList<>();
+      for (Future<Result> f : futures) {
+        try {
+          results.add(f.get());
+        } catch (ExecutionException e) {
+          throw new IllegalStateException(e.getCause());
+        }
+      }
+      return results;
+    } finally {
+      executor.shutdownNow();
+      if (transport == null && t instanceof Closeable) {
+        ((Closeable) t).close();
+      }
+      FileUtils.deleteQuietly(shared);
+    }
+  }
+
+  private Result install(Target target, JdkReleases rels, ITransport t, Semaphore downloadPermits, Semaphore extractPermits) {
+    long start = System.nanoTime();
+    JdkGetter getter = null;
+    Throwable error = null;
+    try {
+      JdkGetter.Builder b = JdkGetter.builder() //
+          .releases(rels) //
+          .version(target.getVersion()) //
+          .arch(target.getArch()) //
+          .outputDirectory(target.getOutputDirectory()) //
+          .retries(retries) //
+          .transport(t) //
+          .output(new PrefixedOutput(output, target.toString())) //
+          .phaseListener(phaseListener);
+      if (target.isUnrestrictedJCE()) {
+        b.unrestrictedJCE();
+      }
+      if (cache != null) {
+        b.cache(cache);
+      }
+      getter = b.build();
+      getter.limit(downloadPermits, extractPermits);
+      getter.get();
+    } catch (Throwable e) {
+      output.error("Failed to install jdk " + target, e);
+      error = e;
+    }
+    long total = System.nanoTime() - start;
+    return getter != null ? new Result(target, error, getter.getDownloadTime(), getter.getExtractTime(), total) : new Result(target, error, 0, 0, total);
+  }
+
+  public static class Builder {
+    private final List<Target> targets = new ArrayList<>();
+    private JdkReleases releases;
+    private ITransport transport;
+    private IOutput output;
+    private int retries = 0;
+    private int downloads = 2;
+    private int extractions = Runtime.getRuntime().availableProcessors();
+    private ImageCache cache;
+    private File workDirectory = new File(System.getProperty("java.io.tmpdir"));
+    private IPhaseListener phaseListener;
+
+    public JdkBatch build() {
+      return new JdkBatch(this);
+    }
+
+    public Builder target(Target target) {
+      targets.add(target);
+      return this;
+    }
+
+    public Builder target(String version, Arch arch, File outputDirectory) {
+      return target(new Target(version, arch, outputDirectory));
+    }
+
+    public Builder targets(List<Target> targets) {
+      this.targets.addAll(targets);
+      return this;
+    }
+
+    public Builder releases(JdkReleases releases) {
+      this.releases = releases;
+      return this;
+    }
+
+    /**
+     * Transport shared by all targets, closing it is up to the caller
+     */
+    public Builder transport(ITransport transport) {
+      this.transport = transport;
+      return this;
+    }
+
+    public Builder output(IOutput output) {
+      this.output = output;
+      return this;
+    }
+
+    public Builder retries(int retries) {
+      this.retries = retries;
+      return this;
+    }
+
+    /**
+     * Maximum number of targets downloading at the same time (default 2)
+     */
+    public Builder downloads(int downloads) {
+      this.downloads = downloads;
+      return this;
+    }
+
+    /**
+     * Maximum number of targets being extracted at the same time (default number of processors)
+     */
+    public Builder extractions(int extractions) {
+      this.extractions = extractions;
+      return this;
+    }
+
+    public Builder cache(ImageCache cache) {
+      this.cache = cache;
+      return this;
+    }
+
+    /**
+     * Where to keep downloads shared by several targets while the batch runs (default the temp directory). On the same
+     * file system as the output directories they can be linked instead of copied.
+     */
+    public Builder workDirectory(File workDirectory) {
+      this.workDirectory = workDirectory;
+      return this;
+    }
+
+    public Builder phaseListener(IPhaseListener phaseListener) {
+      this.phaseListener = phaseListener;
+      return this;
+    }
+  }
+
+}
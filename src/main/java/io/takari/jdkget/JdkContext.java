@@ -1,16 +1,24 @@
 package io.takari.jdkget;
 
+import io.takari.jdkget.PhaseEvent.Phase;
+
 public class JdkContext {
   private JdkReleases releases;
   private JdkVersion version;
   private Arch arch;
   private IOutput output;
+  private IPhaseListener phaseListener;
 
   public JdkContext(JdkReleases releases, JdkVersion version, Arch arch, IOutput output) {
+    this(releases, version, arch, output, null);
+  }
+
+  public JdkContext(JdkReleases releases, JdkVersion version, Arch arch, IOutput output, IPhaseListener phaseListener) {
     this.releases = releases;
     this.version = version;
     this.arch = arch;
     this.output = output;
+    this.phaseListener = phaseListener;
   }
 
   public JdkReleases getReleases() {
@@ -29,4 +37,22 @@ public class JdkContext {
     return output;
   }
 
+  /**
+   * @return the listener, or {@code null} if nobody is listening
+   */
+  public IPhaseListener getPhaseListener() {
+    return phaseListener;
+  }
+
+  /**
+   * Starts timing a phase of installing this jdk, to be closed when it's done
+   */
+  public PhaseTimer phase(Phase phase) {
+    return phase(phase, null);
+  }
+
+  public PhaseTimer phase(Phase phase, String stage) {
+    return new PhaseTimer(phaseListener, phase, stage, version, arch);
+  }
+
 }
@@ -1,12 +1,23 @@
 package io.takari.jdkget;
 
+import java.io.Closeable;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URI;
 import java.nio.charset.Charset;
-import java.util.Collection;
-import java.util.Collections;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
 
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.HelpFormatter;
@@ -14,11 +25,13 @@ import org.apache.commons.cli.Options;
 import org.apache.commons.cli.PosixParser;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
 
+import com.google.common.base.Objects;
 import com.google.common.base.Throwables;
 
-import io.takari.jdkget.JdkReleases.JdkBinary;
 import io.takari.jdkget.JdkReleases.JdkRelease;
+import io.takari.jdkget.PhaseEvent.Phase;
 import io.takari.jdkget.extract.BinJDKExtractor;
 import io.takari.jdkget.extract.OsxJDKExtractor;
 import io.takari.jdkget.extract.TZJDKExtractor;
@@ -27,6 +40,11 @@ import io.takari.jdkget.extract.WindowsJDKExtractor;
 
 public class JdkGetter {
 
+  /**
+   * Installs currently running in this JVM, for other threads wanting the same one to wait for instead of repeating
+   */
+  private static final ConcurrentMap<InstallKey, CompletableFuture<Void>> inFlight = new ConcurrentHashMap<>();
+
   private JdkReleases releases;
   private final JdkVersion jdkVersion;
   private final boolean unrestrictedJCE;
@@ -35,7 +53,14 @@ public class JdkGetter {
   private final File inProcessDirectory;
   private final int retries;
   private ITransport transport;
+  private boolean ownTransport;
   private IOutput output;
+  private IPhaseListener phaseListener;
+  private Semaphore downloadPermits;
+  private Semaphore extractPermits;
+  // nanoseconds the last install spent downloading and extracting
+  private long downloadTime;
+  private long extractTime;
 
   public JdkGetter(JdkReleases releases, String version, Arch arch, File outputDirectory, int retries, ITransport transport, IOutput output) {
     this(releases, version, false, arch, outputDirectory, retries, transport, output);
@@ -66,6 +91,7 @@ public class JdkGetter {
       this.transport = transport;
     } else {
       this.transport = new OracleWebsiteTransport();
+      this.ownTransport = true;
     }
     this.outputDirectory = outputDirectory.getAbsoluteFile();
     this.inProcessDirectory = new File(outputDirectory.getPath() + ".in-process");
@@ -78,6 +104,25 @@ public class JdkGetter {
     return releases;
   }
 
+  private JdkRelease select(JdkVersion version) throws IOException {
+    boolean own = releases == null;
+    JdkReleases rels = getReleases();
+    try {
+      return rels.select(version);
+    } catch (IllegalStateException e) {
+      if (!own) {
+        throw e;
+      }
+      // may be newer than the release list we had at hand
+      JdkReleases fresh = JdkReleases.refresh(output);
+      if (fresh == rels) {
+        throw e;
+      }
+      releases = fresh;
+      return fresh.select(version);
+    }
+  }
+
   public Arch getArch() {
     return arch;
   }
@@ -86,21 +131,159 @@ public class JdkGetter {
     return jdkVersion;
   }
 
+  void useCache(ImageCache cache) {
+    transport = new CachingTransport(transport, cache);
+  }
+
+  /**
+   * Tunes the transport created for this getter; one passed in by the caller is theirs to configure
+   */
+  void configureTransport(int segments, boolean paranoid) {
+    if (ownTransport && transport instanceof OracleWebsiteTransport) {
+      OracleWebsiteTransport ot = (OracleWebsiteTransport) transport;
+      if (segments > 0) {
+        ot.setSegments(segments);
+      }
+      if (paranoid) {
+        ot.setParanoid(true);
+      }
+    }
+  }
+
+  void listen(IPhaseListener phaseListener) {
+    this.phaseListener = phaseListener;
+  }
+
+  /**
+   * Shares limits on concurrent downloads and extractions with other installs
+   */
+  void limit(Semaphore downloadPermits, Semaphore extractPermits) {
+    this.downloadPermits = downloadPermits;
+    this.extractPermits = extractPermits;
+  }
+
+  long getDownloadTime() {
+    return downloadTime;
+  }
+
+  long getExtractTime() {
+    return extractTime;
+  }
+
   public void get() throws IOException, InterruptedException {
-    if (!inProcessDirectory.exists()) {
-      inProcessDirectory.mkdirs();
+    try {
+      install();
+    } finally {
+      if (ownTransport && transport instanceof Closeable) {
+        ((Closeable) transport).close();
+      }
     }
+  }
 
+  private void install() throws IOException, InterruptedException {
     JdkVersion theVersion;
-    if (jdkVersion != null) {
-      theVersion = getReleases().select(jdkVersion).getVersion();
-    } else {
-      theVersion = getReleases().latest().getVersion();
+    try (PhaseTimer t = new PhaseTimer(phaseListener, Phase.RESOLVE, null, jdkVersion, arch)) {
+      if (jdkVersion != null) {
+        theVersion = select(jdkVersion).getVersion();
+      } else {
+        theVersion = getReleases().latest().getVersion();
+      }
+      t.succeeded();
     }
 
     output.info("Getting jdk " + theVersion.shortBuild() + " for " + arch.toString().toLowerCase().replace("_", ""));
 
-    JdkContext context = new JdkContext(getReleases(), theVersion, arch, output);
+    InstallKey key = new InstallKey(theVersion, arch, outputDirectory, unrestrictedJCE);
+    while (true) {
+      CompletableFuture<Void> mine = new CompletableFuture<>();
+      CompletableFuture<Void> theirs = inFlight.putIfAbsent(key, mine);
+      if (theirs == null) {
+        try {
+          install(theVersion);
+        } catch (Throwable t) {
+          inFlight.remove(key, mine);
+          mine.completeExceptionally(t);
+          throw t;
+        }
+        inFlight.remove(key, mine);
+        mine.complete(null);
+        return;
+      }
+
+      output.info("Waiting for jdk " + theVersion.shortBuild() + " being installed by another thread");
+      try {
+        theirs.get();
+        return;
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof InterruptedException) {
+          // it's the other thread that got interrupted, not us, so take over
+          continue;
+        }
+        Throwables.propagateIfPossible(cause, IOException.class);
+        throw Throwables.propagate(cause);
+      }
+    }
+  }
+
+  private void install(JdkVersion theVersion) throws IOException, InterruptedException {
+    // whoever gets the lock first does the work, everyone else waits and then finds it done
+    try (ProcessLock lock = ProcessLock.acquire(getLockFile(), output)) {
+      Properties installed = lock.read();
+      if (isInstalled(installed, theVersion)) {
+        output.info("Jdk " + theVersion.shortBuild() + " is already installed in " + outputDirectory);
+        return;
+      }
+
+      // replace what a previous install of ours left, even if it died half-way through replacing it
+      String installing = installed.getProperty("installing");
+      boolean ours = installing != null ? Boolean.parseBoolean(installing) : !installed.isEmpty();
+      Properties marker = new Properties();
+      marker.setProperty("installing", Boolean.toString(ours));
+      lock.write(marker);
+      String home = extract(theVersion, ours);
+
+      Properties props = new Properties();
+      props.setProperty("version", theVersion.longBuild());
+      props.setProperty("home", home);
+      props.setProperty("arch", arch.name());
+      props.setProperty("unrestrictedJCE", Boolean.toString(unrestrictedJCE));
+      lock.write(props);
+    }
+  }
+
+  /**
+   * Lock file serializing installs into the output directory, also recording which jdk it holds once installed
+   */
+  File getLockFile() {
+    return new File(outputDirectory.getPath() + ".lock");
+  }
+
+  private boolean isInstalled(Properties installed, JdkVersion theVersion) {
+    return outputDirectory.isDirectory() //
+        && theVersion.longBuild().equals(installed.getProperty("version")) //
+        && arch.name().equals(installed.getProperty("arch")) //
+        && (!unrestrictedJCE || Boolean.parseBoolean(installed.getProperty("unrestrictedJCE"))) //
+        && isIntact(new File(outputDirectory, installed.getProperty("home", "")));
+  }
+
+  /**
+   * Whether the jdk is still all there, it may have been partly deleted or overwritten since it was installed
+   */
+  private boolean isIntact(File jdkHome) {
+    return new File(jdkHome, "lib").isDirectory() //
+        && new File(jdkHome, arch.isWindows() ? "bin/java.exe" : "bin/java").isFile();
+  }
+
+  /**
+   * @return path of the jdk home relative to the output directory
+   */
+  private String extract(JdkVersion theVersion, boolean replace) throws IOException, InterruptedException {
+    if (!inProcessDirectory.exists()) {
+      inProcessDirectory.mkdirs();
+    }
+
+    JdkContext context = new JdkContext(getReleases(), theVersion, arch, output, phaseListener);
 
     File jdkImage = transport.getImageFile(context, inProcessDirectory);
     File jceImage = null;
@@ -114,6 +297,38 @@ public class JdkGetter {
       }
     }
 
+    // downloads and extraction are limited separately when part of a batch, so one can overlap the other
+    acquire(downloadPermits);
+    long start = System.nanoTime();
+    try {
+      download(context, jdkImage);
+      if (jceImage != null) {
+        try (PhaseTimer t = context.phase(Phase.DOWNLOAD, "jce")) {
+          transport.downloadJce(context, jceImage);
+          t.bytes(jceImage.length()).succeeded();
+        }
+      }
+    } finally {
+      downloadTime = System.nanoTime() - start;
+      release(downloadPermits);
+    }
+
+    String home;
+    acquire(extractPermits);
+    start = System.nanoTime();
+    try {
+      home = unpack(context, jdkImage, jceImage, jceFix, replace);
+    } finally {
+      extractTime = System.nanoTime() - start;
+      release(extractPermits);
+    }
+
+    FileUtils.deleteDirectory(inProcessDirectory);
+    return home;
+  }
+
+  private void download(JdkContext context, File jdkImage) throws IOException, InterruptedException {
+    JdkVersion theVersion = context.getVersion();
     boolean valid = false;
     int retr = retries;
 
@@ -121,7 +336,7 @@ public class JdkGetter {
       boolean dontRetry = retr <= 0;
       try {
         if (jdkImage.exists()) {
-          if (transport.validate(context, jdkImage)) {
+          if (validate(context, jdkImage)) {
             output.info("We already have a valid copy of " + jdkImage);
           } else {
             output.info("Found existing invalid image");
@@ -130,7 +345,10 @@ public class JdkGetter {
         }
 
         if (!jdkImage.exists()) {
-          transport.downloadJdk(context, jdkImage);
+          try (PhaseTimer t = context.phase(Phase.DOWNLOAD)) {
+            transport.downloadJdk(context, jdkImage);
+            t.bytes(jdkImage.length()).succeeded();
+          }
         }
 
         if (!jdkImage.exists()) {
@@ -141,7 +359,7 @@ public class JdkGetter {
         output.info("Validating downloaded image");
 
         Util.checkInterrupt();
-        valid = transport.validate(context, jdkImage);
+        valid = validate(context, jdkImage);
       } catch (InterruptedException e) {
         throw e;
       } catch (Exception e) {
@@ -161,14 +379,33 @@ public class JdkGetter {
     if (!valid) {
       throw new IOException("Transport downloaded invalid image");
     }
+  }
+
+  private boolean validate(JdkContext context, File jdkImage) throws IOException, InterruptedException {
+    try (PhaseTimer t = context.phase(Phase.VALIDATE)) {
+      boolean valid = transport.validate(context, jdkImage);
+      t.bytes(jdkImage.length()).succeeded();
+      return valid;
+    }
+  }
+
+  private String unpack(JdkContext context, File jdkImage, File jceImage, boolean jceFix, boolean replace) throws IOException, InterruptedException {
+    // extract next to the output directory, so it can be published with a rename once complete
+    File staging = new File(inProcessDirectory, "jdk.staging");
+    if (staging.exists()) {
+      FileUtils.forceDelete(staging);
+    }
 
     IJdkExtractor extractor = getExtractor(jdkImage);
     output.info("Using extractor " + extractor.getClass().getSimpleName());
-    if (!extractor.extractJdk(context, jdkImage, outputDirectory, inProcessDirectory)) {
-      throw new IOException("Failed to extract JDK from " + jdkImage);
+    try (PhaseTimer t = context.phase(Phase.EXTRACT)) {
+      if (!extractor.extractJdk(context, jdkImage, staging, inProcessDirectory)) {
+        throw new IOException("Failed to extract JDK from " + jdkImage);
+      }
+      t.bytes(jdkImage.length()).succeeded();
     }
 
-    File jdkHome = outputDirectory;
+    File jdkHome = staging;
     boolean libFound = new File(jdkHome, "lib").isDirectory();
     if (!libFound) {
       File osxHome = new File(jdkHome, "Contents/Home");
@@ -181,21 +418,69 @@ public class JdkGetter {
       throw new IOException("Cannot detect jdk installation");
     }
 
-    if (jceImage != null) {
-      transport.downloadJce(context, jceImage);
-      new JCEExtractor().extractJCE(context, jceImage, jdkHome, inProcessDirectory);
-    }
-    if (jceFix) {
-      new JCEExtractor().fixJce(context, jdkHome);
+    if (jceImage != null || jceFix) {
+      try (PhaseTimer t = context.phase(Phase.JCE)) {
+        if (jceImage != null) {
+          new JCEExtractor().extractJCE(context, jceImage, jdkHome, inProcessDirectory);
+        } else {
+          new JCEExtractor().fixJce(context, jdkHome);
+        }
+        t.succeeded();
+      }
     }
 
+    publish(staging, replace);
+    String home = staging.toPath().relativize(jdkHome.toPath()).toString();
+    jdkHome = new File(outputDirectory, home);
+
     // rebuild jsa cache (https://docs.oracle.com/javase/9/vm/class-data-sharing.htm)
     // but only if we're running on a compatible system (usually we do)
     if (arch == Arch.autodetect()) {
-      rebuildJsa(jdkHome);
+      try (PhaseTimer t = context.phase(Phase.JSA)) {
+        rebuildJsa(jdkHome);
+        t.succeeded();
+      }
     }
+    return home;
+  }
 
-    FileUtils.deleteDirectory(inProcessDirectory);
+  private static void acquire(Semaphore permits) throws InterruptedException {
+    if (permits != null) {
+      permits.acquire();
+    }
+  }
+
+  private static void release(Semaphore permits) {
+    if (permits != null) {
+      permits.release();
+    }
+  }
+
+  private void publish(File staging, boolean replace) throws IOException {
+    String[] existing = outputDirectory.list();
+    if (existing == null) {
+      DownloadState.move(staging, outputDirectory);
+    } else if (replace || existing.length == 0) {
+      // a previous install of ours, swap it out
+      File old = new File(inProcessDirectory, "jdk.old");
+      if (old.exists()) {
+        FileUtils.forceDelete(old);
+      }
+      DownloadState.move(outputDirectory, old);
+      DownloadState.move(staging, outputDirectory);
+      FileUtils.deleteDirectory(old);
+    } else {
+      // not just ours to replace, add the jdk to whatever else is there
+      output.info("Output directory has other content, merging jdk into it");
+      for (File f : staging.listFiles()) {
+        File target = new File(outputDirectory, f.getName());
+        if (target.exists()) {
+          FileUtils.forceDelete(target);
+        }
+        DownloadState.move(f, target);
+      }
+      FileUtils.deleteDirectory(staging);
+    }
   }
 
   private void rebuildJsa(File jdkHome) throws IOException, InterruptedException {
@@ -222,6 +507,35 @@ public class JdkGetter {
     }
   }
 
+  private static class InstallKey {
+    // JdkVersion equality ignores the build number, two builds of the same version are different installs
+    final String version;
+    final Arch arch;
+    final File outputDirectory;
+    final boolean unrestrictedJCE;
+
+    InstallKey(JdkVersion version, Arch arch, File outputDirectory, boolean unrestrictedJCE) {
+      this.version = version.longBuild();
+      this.arch = arch;
+      this.outputDirectory = outputDirectory;
+      this.unrestrictedJCE = unrestrictedJCE;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof InstallKey)) {
+        return false;
+      }
+      InstallKey that = (InstallKey) obj;
+      return version.equals(that.version) && arch == that.arch && outputDirectory.equals(that.outputDirectory) && unrestrictedJCE == that.unrestrictedJCE;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(version, arch, outputDirectory, unrestrictedJCE);
+    }
+  }
+
   private static IJdkExtractor getExtractor(File jdkImage) {
     String name = jdkImage.getName().toLowerCase();
     if (name.endsWith(".tar.gz")) {
@@ -246,6 +560,13 @@ public class JdkGetter {
     return new Builder();
   }
 
+  /**
+   * For installing several jdks at once
+   */
+  public static JdkBatch.Builder batch() {
+    return new JdkBatch.Builder();
+  }
+
   public static class Builder {
     private JdkReleases releases;
     private JdkVersion jdkVersion;
@@ -256,12 +577,27 @@ public class JdkGetter {
     private int retries = 0;
     private ITransport transport;
     private IOutput output;
+    private int segments;
+    private boolean paranoid;
+    private ImageCache cache;
+    private IPhaseListener phaseListener;
 
     public JdkGetter build() {
+      if (transport != null && (segments > 0 || paranoid)) {
+        throw new IllegalStateException("Segments and paranoid only apply to the default transport, configure " + transport.getClass().getSimpleName() + " directly");
+      }
+      JdkGetter getter;
       if (jdkVersion != null) {
-        return new JdkGetter(releases, jdkVersion, unrestrictedJCE, arch, outputDirectory, retries, transport, output);
+        getter = new JdkGetter(releases, jdkVersion, unrestrictedJCE, arch, outputDirectory, retries, transport, output);
+      } else {
+        getter = new JdkGetter(releases, version, unrestrictedJCE, arch, outputDirectory, retries, transport, output);
+      }
+      getter.configureTransport(segments, paranoid);
+      getter.listen(phaseListener);
+      if (cache != null) {
+        getter.useCache(cache);
       }
-      return new JdkGetter(releases, version, unrestrictedJCE, arch, outputDirectory, retries, transport, output);
+      return getter;
     }
 
     public Builder releases(JdkReleases releases) {
@@ -308,6 +644,43 @@ public class JdkGetter {
       this.output = output;
       return this;
     }
+
+    /**
+     * Number of connections to download each binary with; only applies to the default transport, not one set with {@link #transport(ITransport)}
+     */
+    public Builder segments(int segments) {
+      this.segments = segments;
+      return this;
+    }
+
+    /**
+     * Always hash existing images instead of trusting their validation stamps; only applies to the default transport, not one set with
+     * {@link #transport(ITransport)}
+     */
+    public Builder paranoid() {
+      this.paranoid = true;
+      return this;
+    }
+
+    /**
+     * Serve images from a cache shared with other installs, only downloading what isn't cached yet
+     */
+    public Builder cache(ImageCache cache) {
+      this.cache = cache;
+      return this;
+    }
+
+    public Builder cache() {
+      return cache(new ImageCache());
+    }
+
+    /**
+     * Report how long each phase of the install takes
+     */
+    public Builder phaseListener(IPhaseListener phaseListener) {
+      this.phaseListener = phaseListener;
+      return this;
+    }
   }
 
   private static final Options cliOptions = new Options();
@@ -316,13 +689,26 @@ public class JdkGetter {
     cliOptions.addOption("v", true, "JDK Version");
     cliOptions.addOption("a", true, "Architecture");
     cliOptions.addOption("l", false, "List versions");
-    cliOptions.addOption("u", true, "Alternate url to oracle.com/otn-pub");
+    cliOptions.addOption("u", true, "Alternate url to oracle.com/otn-pub; several comma separated mirror urls to download from all of them at once; a mirror directory or file: url to install from it directly");
     cliOptions.addOption("jce", false, "Also install unlimited jce policy");
     cliOptions.addOption("otnUser", true, "OTN username");
     cliOptions.addOption("otnPassword", true, "OTN password");
+    cliOptions.addOption("segments", true, "Number of parallel connections to download each binary with (default 1)");
+    cliOptions.addOption("noResume", false, "Always restart interrupted downloads from scratch instead of resuming them");
+    cliOptions.addOption("paranoid", false, "Always hash existing images instead of trusting their validation stamps");
+    cliOptions.addOption("retries", true, "Number of times to retry a failed download (default 0, or 3 with -mirror)");
+    cliOptions.addOption("maxPerHost", true, "Maximum number of concurrent connections to a single host");
+    cliOptions.addOption("bandwidth", true, "Limit total download rate, in bytes per second with an optional k, M or G suffix");
+    cliOptions.addOption("hedgeAfter", true, "Send a second request when there's no response after this many milliseconds");
+    cliOptions.addOption("hedgeBelow", true, "Request the rest of a download again when it keeps coming in slower than this many bytes per second (k, M or G suffix allowed)");
+    cliOptions.addOption("cache", true, "Keep downloaded images in this directory and reuse them for other installs (e.g. ~/.jdkget/cache)");
+    cliOptions.addOption("cacheSize", true, "Maximum size of the image cache, with an optional k, M or G suffix (default 10G)");
     cliOptions.addOption("mirror", false, "Mirror remote storage by only downloading binaries; can be used with -v, -vf, -vt and -a, otherwise will download everything");
     cliOptions.addOption("vf", true, "When used with -mirror, specifies version range 'from'");
     cliOptions.addOption("vt", true, "When used with -mirror, specifies version range 'to'");
+    cliOptions.addOption("threads", true, "When used with -mirror, number of binaries to download concurrently (default 4)");
+    cliOptions.addOption("report", true, "When used with -mirror, write a JSON report of what changed in the mirror to this file");
+    cliOptions.addOption("timings", true, "Append timings of every phase of the install to this file, as JSON lines");
     cliOptions.addOption("?", "help", false, "Help");
   }
 
@@ -332,7 +718,7 @@ public class JdkGetter {
 
     if (cli.hasOption("l")) {
       System.out.println("Available JDK versions:");
-      for (JdkRelease r : JdkReleases.get().getReleases()) {
+      for (JdkRelease r : JdkReleases.getFresh(StdOutput.INSTANCE).getReleases()) {
         JdkVersion v = r.getVersion();
         System.out.println("  " + v.longBuild() + " / " + v.shortBuild() + (r.isPsu() ? " PSU" : ""));
       }
@@ -344,10 +730,19 @@ public class JdkGetter {
     String u = cli.getOptionValue("u");
     String otnu = cli.getOptionValue("otnUser");
     String otnp = cli.getOptionValue("otnPassword");
+    String segments = cli.getOptionValue("segments");
+    String retries = cli.getOptionValue("retries");
+    String maxPerHost = cli.getOptionValue("maxPerHost");
+    String bandwidth = cli.getOptionValue("bandwidth");
+    String hedgeAfter = cli.getOptionValue("hedgeAfter");
+    String hedgeBelow = cli.getOptionValue("hedgeBelow");
+    String cache = cli.getOptionValue("cache");
+    String cacheSize = cli.getOptionValue("cacheSize");
 
     boolean mirror = cli.hasOption("mirror");
     String vf = cli.getOptionValue("vf");
     String vt = cli.getOptionValue("vt");
+    String threads = cli.getOptionValue("threads");
     String v = cli.getOptionValue("v");// "1.8.0_92-b14";
     String a = cli.getOptionValue("a");
 
@@ -370,17 +765,101 @@ public class JdkGetter {
       arch = parseArch(a);
     }
 
-    ITransport transport = null;
-    if (u != null) {
-      transport = new OracleWebsiteTransport(u, otnu, otnp);
+    int mirrorThreads = threads != null ? Integer.parseInt(threads) : 4;
+    boolean paranoid = cli.hasOption("paranoid");
+
+    ITransport transport;
+    File localMirror = u != null ? localMirror(u) : null;
+    if (localMirror != null) {
+      LocalMirrorTransport lt = new LocalMirrorTransport(localMirror);
+      lt.setParanoid(paranoid);
+      transport = lt;
+    } else if (u != null && u.contains(",")) {
+      MultiSourceTransport mt = new MultiSourceTransport(Arrays.asList(StringUtils.split(u, ',')));
+      if (segments != null) {
+        mt.setConnectionsPerSource(Integer.parseInt(segments));
+      }
+      if (maxPerHost != null) {
+        mt.setMaxConnectionsPerHost(Integer.parseInt(maxPerHost));
+      } else if (mirror) {
+        mt.setMaxConnectionsPerHost(mirrorThreads * mt.getConnectionsPerSource());
+      }
+      if (bandwidth != null) {
+        mt.setBandwidthLimit(Util.parseSize(bandwidth));
+      }
+      if (cli.hasOption("noResume")) {
+        mt.setResume(false);
+      }
+      mt.setParanoid(paranoid);
+      transport = mt;
     } else {
-      transport = new OracleWebsiteTransport(OracleWebsiteTransport.ORACLE_WEBSITE, otnu, otnp);
+      OracleWebsiteTransport ot;
+      if (u != null) {
+        ot = new OracleWebsiteTransport(u, otnu, otnp);
+      } else {
+        ot = new OracleWebsiteTransport(OracleWebsiteTransport.ORACLE_WEBSITE, otnu, otnp);
+      }
+      if (segments != null) {
+        ot.setSegments(Integer.parseInt(segments));
+      }
+      if (maxPerHost != null) {
+        ot.setMaxConnectionsPerHost(Integer.parseInt(maxPerHost));
+      } else if (mirror) {
+        // enough for every worker to use all its segments
+        ot.setMaxConnectionsPerHost(mirrorThreads * ot.getSegments());
+      }
+      if (bandwidth != null) {
+        ot.setBandwidthLimit(Util.parseSize(bandwidth));
+      }
+      if (hedgeAfter != null) {
+        ot.setHedgeAfter(Long.parseLong(hedgeAfter));
+      }
+      if (hedgeBelow != null) {
+        ot.setHedgeBelow(Util.parseSize(hedgeBelow));
+      }
+      if (cli.hasOption("noResume")) {
+        ot.setResume(false);
+      }
+      ot.setParanoid(paranoid);
+      transport = ot;
     }
 
-    if (mirror) {
-      mirrorRemote(transport, v != null ? v : vf, v != null ? v : vt, arch, outDir);
-      return;
+    try {
+      if (mirror) {
+        mirrorRemote(transport, v != null ? v : vf, v != null ? v : vt, arch, outDir, mirrorThreads, retries != null ? Integer.parseInt(retries) : 3, paranoid, cli.getOptionValue("report"));
+        return;
+      }
+
+      ImageCache imageCache = null;
+      if (cache != null) {
+        imageCache = new ImageCache(new File(cache), cacheSize != null ? Util.parseSize(cacheSize) : ImageCache.DEFAULT_MAX_SIZE);
+      }
+      String timings = cli.getOptionValue("timings");
+      try (JsonLinesPhaseListener phaseListener = timings != null ? new JsonLinesPhaseListener(new File(timings)) : null) {
+        getJdk(transport, outDir, arch, v, jce, retries != null ? Integer.parseInt(retries) : 0, imageCache, phaseListener);
+      }
+    } finally {
+      if (transport instanceof Closeable) {
+        ((Closeable) transport).close();
+      }
+    }
+  }
+
+  /**
+   * Mirror root on the file system {@code u} points to, if it's a {@code file:} url or an existing directory
+   */
+  static File localMirror(String u) {
+    if (u.startsWith("file:")) {
+      return new File(URI.create(u));
     }
+    if (!u.contains("://") && !u.contains(",") && new File(u).isDirectory()) {
+      return new File(u);
+    }
+    return null;
+  }
+
+  private static void getJdk(ITransport transport, File outDir, Arch arch, String v, boolean jce, int retries, ImageCache cache, IPhaseListener phaseListener)
+      throws IOException, InterruptedException {
 
     if (v == null) {
       System.err.println("No version specified");
@@ -397,55 +876,41 @@ public class JdkGetter {
         .version(v) //
         .outputDirectory(outDir) //
         .arch(arch) //
-        .transport(transport);
+        .retries(retries) //
+        .transport(transport) //
+        .phaseListener(phaseListener);
 
     if (jce) {
       b = b.unrestrictedJCE();
     }
+    if (cache != null) {
+      b = b.cache(cache);
+    }
 
     b.build().get();
   }
 
-  private static void mirrorRemote(ITransport transport, String vfrom, String vto, Arch arch, File outDir) throws IOException, InterruptedException {
-    JdkReleases rels = JdkReleases.get();
+  private static void mirrorRemote(ITransport transport, String vfrom, String vto, Arch arch, File outDir, int threads, int retries, boolean paranoid, String report)
+      throws IOException, InterruptedException {
+    // mirrors what's out there right now, and the JVM won't stay around for a refresh in the background
+    JdkReleases rels = JdkReleases.refresh(StdOutput.INSTANCE);
     JdkVersion vf = vfrom != null ? JdkVersion.parse(vfrom) : null;
     JdkVersion vt = vto != null ? rels.select(JdkVersion.parse(vto)).getVersion() : null;
 
-    for (JdkRelease rel : rels.getReleases()) {
-      JdkVersion v = rel.getVersion();
-      if (vt != null && vt.compareTo(v) < 0) {
-        continue;
-      }
-      if (vf != null && v.compareTo(vf) < 0) {
-        break;
-      }
-
-      Collection<Arch> arches = rel.getArchs();
-      if (arch != null) {
-        if (!arches.contains(arch)) {
-          continue;
-        }
-        arches = Collections.singleton(arch);
-      }
-      for (Arch a : arches) {
-        JdkBinary bin = rel.getBinary(a);
-        File out = new File(outDir, bin.getPath()).getAbsoluteFile();
-        FileUtils.forceMkdir(out.getParentFile());
-
-        System.out.println("\n** Downloading " + v.shortBuild() + " for " + a.name() + " to " + out);
-        JdkContext ctx = new JdkContext(rels, v, a, StdOutput.INSTANCE);
-        if (out.exists()) {
-          if (transport.validate(ctx, out)) {
-            System.out.println("Valid file already exists");
-            continue;
-          } else {
-            System.out.println("Existing file failed validation, deleting");
-            FileUtils.forceDelete(out);
-          }
-        }
-        transport.downloadJdk(ctx, out);
+    JdkMirror mirror = new JdkMirror(transport, StdOutput.INSTANCE);
+    mirror.setThreads(threads);
+    mirror.setRetries(retries);
+    mirror.setParanoid(paranoid);
+    mirror.setManifest(MirrorManifest.load(outDir));
+    JdkMirror.Summary summary = mirror.mirror(mirror.targets(rels, vf, vt, arch, outDir));
+    if (report != null) {
+      try (Writer w = new OutputStreamWriter(new FileOutputStream(report), StandardCharsets.UTF_8)) {
+        summary.writeJson(w);
       }
     }
+    if (!summary.getFailed().isEmpty()) {
+      throw new IOException("Failed to mirror " + summary.getFailed().size() + " binaries");
+    }
   }
 
   private static Arch parseArch(String a) {
@@ -479,7 +944,7 @@ public class JdkGetter {
     System.out.println("  Download and extract:");
     System.out.println("    jdkget-" + ver + ".jar -o <outputDir> -v <jdkVersion> [-a <arch>]");
     System.out.println("  Mirror remote:");
-    System.out.println("    jdkget-" + ver + ".jar -mirror -o <outputDir> [-v <jdkVersion>] [-vf <fromVersion>] [-vt <toVersion>] [-a <arch>]");
+    System.out.println("    jdkget-" + ver + ".jar -mirror -o <outputDir> [-v <jdkVersion>] [-vf <fromVersion>] [-vt <toVersion>] [-a <arch>] [-threads <n>] [-bandwidth <rate>]");
   }
 
 
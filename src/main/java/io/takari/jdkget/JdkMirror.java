@@ -0,0 +1,528 @@
+package io.takari.jdkget;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+
+import io.takari.jdkget.JdkReleases.JdkBinary;
+import io.takari.jdkget.JdkReleases.JdkRelease;
+
+/**
+ * Downloads a list of binaries into a mirror directory on a bounded pool of workers. Each binary is retried on its own
+ * with exponential backoff, so one flaky download doesn't hold up or fail the others. Connection and bandwidth limits
+ * are up to the transport, which is shared by all workers.
+ */
+public class JdkMirror {
+
+  private static final long SUMMARY_FREQ = 10000L;
+  private static final long MAX_BACKOFF = 60000L;
+
+  public static class Target {
+    private final JdkContext context;
+    private final JdkBinary binary;
+    private final File file;
+
+    public Target(JdkContext context, JdkBinary binary, File file) {
+      this.context = context;
+      this.binary = binary;
+      this.file = file.getAbsoluteFile();
+    }
+
+    public JdkContext getContext() {
+      return context;
+    }
+
+    public JdkBinary getBinary() {
+      return binary;
+    }
+
+    public File getFile() {
+      return file;
+    }
+
+    @Override
+    public String toString() {
+      return context.getVersion().shortBuild() + " " + context.getArch().name();
+    }
+  }
+
+  public static class Summary {
+    private final List<Target> valid = new ArrayList<>();
+    private final List<Target> downloaded = new ArrayList<>();
+    private final Map<Target, Exception> failed = new LinkedHashMap<>();
+    private final List<Target> added = new ArrayList<>();
+    private final Map<Target, MirrorManifest.Entry> changed = new LinkedHashMap<>();
+    private final List<Target> repaired = new ArrayList<>();
+    private final List<MirrorManifest.Entry> removed = new ArrayList<>();
+    private long downloadedBytes;
+    private long time;
+
+    public List<Target> getValid() {
+      return valid;
+    }
+
+    public List<Target> getDownloaded() {
+      return downloaded;
+    }
+
+    /**
+     * Downloaded binaries the mirror didn't have before
+     */
+    public List<Target> getAdded() {
+      return added;
+    }
+
+    /**
+     * Downloaded binaries that changed remotely, with what the manifest had for them before
+     */
+    public Map<Target, MirrorManifest.Entry> getChanged() {
+      return changed;
+    }
+
+    /**
+     * Downloaded binaries that were broken or missing locally
+     */
+    public List<Target> getRepaired() {
+      return repaired;
+    }
+
+    /**
+     * Manifest entries dropped since their files are gone
+     */
+    public List<MirrorManifest.Entry> getRemoved() {
+      return removed;
+    }
+
+    public Map<Target, Exception> getFailed() {
+      return failed;
+    }
+
+    public long getDownloadedBytes() {
+      return downloadedBytes;
+    }
+
+    public long getTime() {
+      return time;
+    }
+
+    @Override
+    public String toString() {
+      return valid.size() + " already valid, " + downloaded.size() + " downloaded (" + FileUtils.byteCountToDisplaySize(downloadedBytes) //
+          + "), " + failed.size() + " failed in " + Util.timeToStr(time);
+    }
+
+    /**
+     * Writes what changed in the mirror as a JSON document
+     */
+    public void writeJson(Writer out) throws IOException {
+      JsonWriter json = new JsonWriter(out, true);
+      json.beginObject();
+      json.field("time", time);
+      json.field("unchanged", valid.size());
+      json.field("downloadedBytes", downloadedBytes);
+      json.name("added").beginArray();
+      for (Target t : added) {
+        target(json, t).endObject();
+      }
+      json.endArray();
+      json.name("changed").beginArray();
+      for (Map.Entry<Target, MirrorManifest.Entry> e : changed.entrySet()) {
+        target(json, e.getKey()).name("previous");
+        entry(json, e.getValue()).endObject();
+      }
+      json.endArray();
+      json.name("repaired").beginArray();
+      for (Target t : repaired) {
+        target(json, t).endObject();
+      }
+      json.endArray();
+      json.name("removed").beginArray();
+      for (MirrorManifest.Entry e : removed) {
+        entry(json, e);
+      }
+      json.endArray();
+      json.name("failed").beginArray();
+      for (Map.Entry<Target, Exception> e : failed.entrySet()) {
+        target(json, e.getKey()).field("error", e.getValue().toString()).endObject();
+      }
+      json.endArray();
+      json.endObject();
+      out.write('\n');
+      out.flush();
+    }
+
+    private static JsonWriter target(JsonWriter json, Target t) throws IOException {
+      JdkBinary bin = t.binary;
+      return json.beginObject() //
+          .field("path", bin.getPath()) //
+          .field("version", t.context.getVersion().longBuild()) //
+          .field("arch", t.context.getArch().name()) //
+          .field("size", t.file.length()) //
+          .field("sha256", bin.getSha256()) //
+          .field("md5", bin.getMd5());
+    }
+
+    private static JsonWriter entry(JsonWriter json, MirrorManifest.Entry e) throws IOException {
+      return json.beginObject() //
+          .field("path", e.getPath()) //
+          .field("size", e.getSize()) //
+          .field("sha256", e.getSha256()) //
+          .field("md5", e.getMd5()) //
+          .field("etag", e.getEtag()) //
+          .field("lastModified", e.getLastModified()) //
+          .field("verified", e.getVerified().toString()) //
+          .endObject();
+    }
+  }
+
+  private final ITransport transport;
+  private final IOutput output;
+  private int threads = 4;
+  private int retries = 3;
+  private long backoff = 1000L;
+  private boolean paranoid;
+  private MirrorManifest manifest;
+
+  public JdkMirror(ITransport transport, IOutput output) {
+    this.transport = transport;
+    this.output = output != null ? output : StdOutput.INSTANCE;
+  }
+
+  public int getThreads() {
+    return threads;
+  }
+
+  /**
+   * Number of binaries to download at the same time
+   */
+  public void setThreads(int threads) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("Number of threads should be positive: " + threads);
+    }
+    this.threads = threads;
+  }
+
+  public int getRetries() {
+    return retries;
+  }
+
+  public void setRetries(int retries) {
+    this.retries = retries;
+  }
+
+  public long getBackoff() {
+    return backoff;
+  }
+
+  /**
+   * Delay before the first retry of a failed download in milliseconds, doubled on each subsequent retry
+   */
+  public void setBackoff(long backoff) {
+    this.backoff = backoff;
+  }
+
+  public boolean isParanoid() {
+    return paranoid;
+  }
+
+  public void setParanoid(boolean paranoid) {
+    this.paranoid = paranoid;
+  }
+
+  public MirrorManifest getManifest() {
+    return manifest;
+  }
+
+  /**
+   * Manifest of the mirror to consult and update, so only binaries that are new or changed get looked at
+   */
+  public void setManifest(MirrorManifest manifest) {
+    this.manifest = manifest;
+  }
+
+  /**
+   * Every binary of the releases between {@code from} and {@code to} (both inclusive and optional), for the given or
+   * all architectures, laid out under {@code outDir} the same way as on the remote site.
+   */
+  public List<Target> targets(JdkReleases rels, JdkVersion from, JdkVersion to, Arch arch, File outDir) {
+    List<Target> targets = new ArrayList<>();
+    for (JdkRelease rel : rels.getReleases(from, to)) {
+      JdkVersion v = rel.getVersion();
+      Collection<Arch> arches = rel.getArchs();
+      if (arch != null) {
+        if (!arches.contains(arch)) {
+          continue;
+        }
+        arches = Collections.singleton(arch);
+      }
+      for (Arch a : arches) {
+        JdkBinary bin = rel.getBinary(a);
+        JdkContext ctx = new JdkContext(rels, v, a, new PrefixedOutput(output, v.shortBuild() + " " + a.name()));
+        targets.add(new Target(ctx, bin, new File(outDir, bin.getPath())));
+      }
+    }
+    return targets;
+  }
+
+  public Summary mirror(List<Target> targets) throws IOException, InterruptedException {
+    long start = System.currentTimeMillis();
+    Summary summary = new Summary();
+
+    // whatever the manifest vouches for needs no further look
+    List<Target> unknown = new ArrayList<>();
+    List<Target> conditional = new ArrayList<>();
+    Set<Target> vouched = new HashSet<>();
+    Map<Target, MirrorManifest.Entry> previous = new LinkedHashMap<>();
+    for (Target t : targets) {
+      MirrorManifest.Entry e = manifest != null ? manifest.get(t.binary.getPath()) : null;
+      if (e == null) {
+        unknown.add(t);
+        continue;
+      }
+      previous.put(t, e);
+      if (paranoid || !e.matches(t.file) || !e.matches(t.binary)) {
+        unknown.add(t);
+      } else if (t.binary.getSha256() != null || t.binary.getMd5() != null) {
+        // the catalog would have different digests if it changed
+        vouched.add(t);
+      } else if (e.getValidators() != null) {
+        conditional.add(t);
+      } else {
+        unknown.add(t);
+      }
+    }
+
+    // no digests to go by, ask the server instead
+    Set<Target> modified = ConcurrentHashMap.newKeySet();
+    if (!conditional.isEmpty()) {
+      output.info("Checking " + conditional.size() + " binaries for remote changes");
+      for (Target t : checkRemote(conditional, previous, modified)) {
+        vouched.add(t);
+        manifest.verified(t.binary.getPath(), t.file, t.binary, previous.get(t).getValidators());
+      }
+    }
+
+    // check everything else we already have up front, reading each file only once
+    Map<File, JdkBinary> existing = new LinkedHashMap<>();
+    for (Target t : unknown) {
+      if (t.file.exists()) {
+        existing.put(t.file, t.binary);
+      }
+    }
+    if (manifest != null) {
+      // the manifest keeps track of what's been verified, stamps next to the binaries would just end up being served
+      for (Target t : targets) {
+        ValidationStamp.delete(t.file);
+      }
+    }
+    output.info("Validating " + existing.size() + " existing files");
+    Map<File, Boolean> valid = new ImageValidator(paranoid, manifest == null).validateAll(existing, Runtime.getRuntime().availableProcessors(), output);
+
+    List<Target> pending = new ArrayList<>();
+    for (Target t : targets) {
+      if (vouched.contains(t)) {
+        summary.valid.add(t);
+      } else if (Boolean.TRUE.equals(valid.get(t.file))) {
+        summary.valid.add(t);
+        if (manifest != null) {
+          MirrorManifest.Entry e = previous.get(t);
+          manifest.verified(t.binary.getPath(), t.file, t.binary, e != null && e.matches(t.binary) ? e.getValidators() : null);
+        }
+      } else {
+        pending.add(t);
+      }
+    }
+    if (manifest != null) {
+      removeMissing(targets, summary);
+    }
+    output.info(summary.valid.size() + " of " + targets.size() + " binaries already valid, downloading " + pending.size() + " with " + threads + " threads");
+
+    Set<Target> active = ConcurrentHashMap.newKeySet();
+    ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, pending.size())));
+    try {
+      CompletionService<Long> completion = new ExecutorCompletionService<>(executor);
+      Map<Future<Long>, Target> futures = new LinkedHashMap<>();
+      for (Target t : pending) {
+        futures.put(completion.submit(() -> {
+          active.add(t);
+          try {
+            return download(t);
+          } finally {
+            active.remove(t);
+          }
+        }), t);
+      }
+
+      long lastSummary = System.currentTimeMillis();
+      int done = 0;
+      while (done < pending.size()) {
+        Future<Long> f = completion.poll(SUMMARY_FREQ, TimeUnit.MILLISECONDS);
+        if (f != null) {
+          Target t = futures.get(f);
+          done++;
+          try {
+            summary.downloadedBytes += f.get();
+            summary.downloaded.add(t);
+            MirrorManifest.Entry e = previous.get(t);
+            if (modified.contains(t) || e != null && !e.matches(t.binary)) {
+              summary.changed.put(t, e);
+            } else if (e != null || existing.containsKey(t.file)) {
+              summary.repaired.add(t);
+            } else {
+              summary.added.add(t);
+            }
+            if (manifest != null) {
+              manifest.verified(t.binary.getPath(), t.file, t.binary, transport.getValidators(t.file));
+            }
+            output.info("Mirrored " + t + " (" + done + " of " + pending.size() + ")");
+          } catch (ExecutionException e) {
+            Exception cause = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+            summary.failed.put(t, cause);
+            output.error("Failed to mirror " + t + " (" + done + " of " + pending.size() + "): " + cause);
+          }
+        }
+        if (System.currentTimeMillis() - lastSummary >= SUMMARY_FREQ && done < pending.size()) {
+          lastSummary = System.currentTimeMillis();
+          output.info("Progress: " + done + " of " + pending.size() + " done, " + summary.failed.size() + " failed, in progress: " + StringUtils.join(active, ", "));
+          if (manifest != null) {
+            manifest.save();
+          }
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+      if (manifest != null) {
+        manifest.save();
+      }
+    }
+
+    summary.time = System.currentTimeMillis() - start;
+    output.info("Mirror finished: " + summary);
+    for (Map.Entry<Target, Exception> e : summary.failed.entrySet()) {
+      output.error("  " + e.getKey() + ": " + e.getValue());
+    }
+    return summary;
+  }
+
+  /**
+   * Asks the server about each of {@code targets} with a conditional request, adding the ones that changed to
+   * {@code modified}
+   *
+   * @return the ones that are unchanged
+   */
+  private List<Target> checkRemote(List<Target> targets, Map<Target, MirrorManifest.Entry> previous, Set<Target> modified) throws InterruptedException {
+    List<Target> unchanged = new ArrayList<>();
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, targets.size()));
+    try {
+      Map<Target, Future<Boolean>> futures = new LinkedHashMap<>();
+      for (Target t : targets) {
+        futures.put(t, executor.submit(() -> transport.isModified(t.context, previous.get(t).getValidators())));
+      }
+      for (Map.Entry<Target, Future<Boolean>> e : futures.entrySet()) {
+        Target t = e.getKey();
+        try {
+          if (e.getValue().get()) {
+            t.context.getOutput().info("Changed remotely");
+            modified.add(t);
+          } else {
+            unchanged.add(t);
+          }
+        } catch (ExecutionException ex) {
+          // can't tell, download it again
+          t.context.getOutput().error("Error checking for remote changes: " + ex.getCause());
+          modified.add(t);
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    return unchanged;
+  }
+
+  /**
+   * Drops manifest entries of binaries that aren't being mirrored anymore and are gone from the mirror
+   */
+  private void removeMissing(List<Target> targets, Summary summary) {
+    Set<String> paths = new HashSet<>();
+    for (Target t : targets) {
+      paths.add(t.binary.getPath());
+    }
+    File root = manifest.getFile().getParentFile();
+    for (MirrorManifest.Entry e : manifest.getEntries()) {
+      if (!paths.contains(e.getPath()) && !new File(root, e.getPath()).exists()) {
+        manifest.remove(e.getPath());
+        summary.removed.add(e);
+      }
+    }
+  }
+
+  private long download(Target t) throws Exception {
+    JdkContext ctx = t.context;
+    IOutput out = ctx.getOutput();
+    for (int attempt = 0;; attempt++) {
+      try {
+        if (t.file.exists()) {
+          out.info("Replacing existing file");
+          FileUtils.forceDelete(t.file);
+        }
+        FileUtils.forceMkdir(t.file.getParentFile());
+        transport.downloadJdk(ctx, t.file);
+        if (!t.file.exists()) {
+          throw new IOException("Transport failed to download " + t.file.getName());
+        }
+
+        Util.checkInterrupt();
+        if (transport.validate(ctx, t.file)) {
+          if (manifest != null) {
+            // recorded in the manifest instead
+            ValidationStamp.delete(t.file);
+          }
+          return t.file.length();
+        }
+        if (attempt >= retries) {
+          throw new IOException("Transport downloaded invalid image");
+        }
+        out.error("Downloaded image failed validation");
+      } catch (InterruptedException e) {
+        throw e;
+      } catch (Exception e) {
+        if (attempt >= retries) {
+          throw e;
+        }
+        out.error("Error downloading: " + e);
+      }
+
+      // partial downloads are kept, so a retry usually continues where this attempt failed
+      long delay = backoff(attempt);
+      out.info("Retrying in " + Util.timeToStr(delay) + " (attempt " + (attempt + 2) + " of " + (retries + 1) + ")");
+      Thread.sleep(delay);
+    }
+  }
+
+  private long backoff(int attempt) {
+    long delay = Math.min(MAX_BACKOFF, backoff << Math.min(attempt, 20));
+    // jitter keeps workers that failed together from hammering the server in lockstep
+    return delay + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+  }
+
+}
@@ -2,16 +2,22 @@ package io.takari.jdkget;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.TreeMap;
 import javax.net.ssl.HttpsURLConnection;
 
 public class JdkReleases implements Serializable {
@@ -19,42 +25,52 @@ public class JdkReleases implements Serializable {
   private static final long serialVersionUID = 1L;
 
   private static final String REMOTE_XML = "https://raw.githubusercontent.com/takari/jdkget/master/src/main/resources/jdkreleases.xml";
-  private static final long MAX_CACHE = 24L * 60L * 60L * 1000L; // cache it for a day
+  private static final long MAX_CACHE = 24L * 60L * 60L * 1000L; // refresh it once a day
   private static final int TIMEOUT_VALUE = 10000;
 
-  private static final Object mutex = new Object();
-  private static volatile JdkReleases cached;
-  private static volatile long time;
+  private static final ReleaseCatalog catalog = new ReleaseCatalog(REMOTE_XML, ReleaseCatalog.defaultSnapshotFile(), MAX_CACHE);
+  private static volatile JdkReleases builtin;
 
   public static JdkReleases get() throws IOException {
     return get(StdOutput.INSTANCE);
   }
 
+  /**
+   * The release list as last retrieved from Github, without waiting for it. Once it's a day old a fresh one is
+   * retrieved in the background, for later calls and JVMs to pick up.
+   */
   public static JdkReleases get(IOutput output) throws IOException {
-    JdkReleases c = cached;
-    long t = System.currentTimeMillis() - MAX_CACHE;
-    if (c == null || t > time) {
-      synchronized (mutex) {
-        if (c == null || t > time) {
-          cached = c = readCached(output);
-          time = System.currentTimeMillis();
-        }
+    if ("builtin".equals(System.getProperty("io.takari.jdkget.releaseList"))) {
+      JdkReleases b = builtin;
+      if (b == null) {
+        builtin = b = readFromClasspath();
       }
+      return b;
     }
-    return c;
+    return catalog.get(output);
   }
 
-  private static final JdkReleases readCached(IOutput output) throws IOException {
+  /**
+   * The release list as last retrieved from Github, retrieving it first if that was more than a day ago. For command
+   * line tools, which would exit before a refresh in the background is done.
+   */
+  public static JdkReleases getFresh(IOutput output) throws IOException {
     if ("builtin".equals(System.getProperty("io.takari.jdkget.releaseList"))) {
-      return readFromClasspath();
+      return get(output);
     }
+    return catalog.getFresh(output);
+  }
 
-    try {
-      return readFromGithub();
-    } catch (Exception e) {
-      output.error("Warning: Unable to retreive jdkreleases.xml from Github. Using built-in JDK list.");
-      return readFromClasspath();
+  /**
+   * Retrieves the release list from Github now, for when {@link #get(IOutput)} doesn't know a version yet
+   *
+   * @return the release list afterwards, the same one as before if Github couldn't be reached or had nothing new
+   */
+  public static JdkReleases refresh(IOutput output) throws IOException {
+    if ("builtin".equals(System.getProperty("io.takari.jdkget.releaseList"))) {
+      return get(output);
     }
+    return catalog.refresh(output);
   }
 
   public static JdkReleases readFromGithub() throws IOException {
@@ -70,12 +86,36 @@ public class JdkReleases implements Serializable {
     return read(conn.getInputStream());
   }
 
+  /**
+   * The built-in release list, as precompiled at build time if it was, so it doesn't need to be parsed
+   */
   public static final JdkReleases readFromClasspath() throws IOException {
-    try (InputStream in = JdkReleases.class.getClassLoader().getResourceAsStream("jdkreleases.xml")) {
+    ClassLoader cl = JdkReleases.class.getClassLoader();
+    URL xml = cl.getResource(ReleaseListCompiler.XML);
+    URL compiled = cl.getResource(ReleaseListCompiler.COMPILED);
+
+    // unless the xml is overridden by one earlier on the classpath
+    if (compiled != null && (xml == null || sameLocation(xml, ReleaseListCompiler.XML, compiled, ReleaseListCompiler.COMPILED))) {
+      try (InputStream in = compiled.openStream()) {
+        return ReleaseCatalog.readSnapshot(in);
+      } catch (IOException | RuntimeException e) {
+        // compiled by some other version, read the xml instead
+      }
+    }
+    if (xml == null) {
+      throw new IOException("No " + ReleaseListCompiler.XML + " on the classpath");
+    }
+    try (InputStream in = xml.openStream()) {
       return new JdkReleasesParser().parse(in);
     }
   }
 
+  private static boolean sameLocation(URL a, String aName, URL b, String bName) {
+    String as = a.toString();
+    String bs = b.toString();
+    return as.substring(0, as.length() - aName.length()).equals(bs.substring(0, bs.length() - bName.length()));
+  }
+
   public static JdkReleases read(InputStream inputStream) throws IOException {
     return new JdkReleasesParser().parse(inputStream);
   }
@@ -83,53 +123,173 @@ public class JdkReleases implements Serializable {
   private List<JdkRelease> releases;
   private List<JCE> jces;
 
+  // lookup indexes, built once from the lists above
+  private transient NavigableMap<Key, JdkRelease> index;
+  private transient Map<Integer, JdkRelease> latestByMajor;
+  private transient Map<Arch, List<JdkRelease>> byArch;
+  private transient Map<Integer, JCE> jceByMajor;
+  private transient JdkRelease latest;
+
   JdkReleases(List<JdkRelease> releases, List<JCE> jces) {
     this.releases = releases;
     this.jces = jces;
+    index();
   }
 
-  public JCE getJCE(JdkVersion ver) {
+  private void index() {
+    NavigableMap<Key, JdkRelease> index = new TreeMap<>();
+    Map<Integer, JdkRelease> latestByMajor = new HashMap<>();
+    Map<Arch, List<JdkRelease>> byArch = new EnumMap<>(Arch.class);
+    JdkRelease latest = null;
+
+    // releases are sorted newest first, ties keep their order through the sequence number
+    int seq = releases.size();
+    for (JdkRelease rel : releases) {
+      index.put(new Key(rel.getVersion(), --seq), rel);
+      if (!rel.isPsu()) {
+        latestByMajor.putIfAbsent(rel.getVersion().major, rel);
+        if (latest == null) {
+          latest = rel;
+        }
+      }
+      for (Arch arch : rel.getArchs()) {
+        // no lambda here, bootstrapping those costs a short lived jvm more than the whole list
+        List<JdkRelease> rels = byArch.get(arch);
+        if (rels == null) {
+          byArch.put(arch, rels = new ArrayList<>());
+        }
+        rels.add(rel);
+      }
+    }
+    for (Map.Entry<Arch, List<JdkRelease>> e : byArch.entrySet()) {
+      e.setValue(Collections.unmodifiableList(e.getValue()));
+    }
+
+    Map<Integer, JCE> jceByMajor = new HashMap<>();
     if (jces != null) {
       for (JCE jce : jces) {
-        if (jce.getMajorVersion() == ver.major) {
-          return jce;
-        }
+        jceByMajor.putIfAbsent(jce.getMajorVersion(), jce);
       }
     }
-    return null;
+
+    this.index = index;
+    this.latestByMajor = latestByMajor;
+    this.byArch = byArch;
+    this.jceByMajor = jceByMajor;
+    this.latest = latest;
+  }
+
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    index();
+  }
+
+  public JCE getJCE(JdkVersion ver) {
+    return jceByMajor.get(ver.major);
   }
 
   public List<JdkRelease> getReleases() {
     return releases;
   }
 
+  public List<JCE> getJCEs() {
+    return jces;
+  }
+
+  /**
+   * Releases that have a binary for the given architecture, newest first
+   */
+  public List<JdkRelease> getReleases(Arch arch) {
+    List<JdkRelease> rels = byArch.get(arch);
+    return rels != null ? rels : Collections.<JdkRelease>emptyList();
+  }
+
+  /**
+   * Releases between {@code from} and {@code to}, both inclusive and optional, newest first
+   */
+  public List<JdkRelease> getReleases(JdkVersion from, JdkVersion to) {
+    Key lo = from != null ? new Key(from, Integer.MIN_VALUE) : Key.MIN;
+    Key hi = to != null ? new Key(to, Integer.MAX_VALUE) : Key.MAX;
+    List<JdkRelease> rels = new ArrayList<>();
+    for (JdkRelease rel : descending(hi)) {
+      if (new Key(rel.getVersion(), Integer.MAX_VALUE).compareTo(lo) < 0) {
+        break;
+      }
+      rels.add(rel);
+    }
+    return rels;
+  }
+
+  /**
+   * Releases from the newest one that isn't newer than {@code start} on, newest first. Everything else looks releases
+   * up through here, which is what lets a {@link LayeredJdkReleases} merge its layers at lookup time.
+   */
+  Iterable<JdkRelease> descending(Key start) {
+    return index.headMap(start, true).descendingMap().values();
+  }
+
+  /**
+   * Latest non-PSU release of a major version, or {@code null}
+   */
+  JdkRelease latestOf(int major) {
+    return latestByMajor.get(major);
+  }
+
+  /**
+   * Version a query is pinned to, or {@code null}. Only layers pin versions.
+   */
+  String pinned(JdkVersion ver) {
+    return null;
+  }
+
+  /**
+   * This list with {@code layer} on top, which adds, replaces and removes releases without copying any of the rest
+   */
+  public JdkReleases overlay(CatalogLayer layer) {
+    return new LayeredJdkReleases(this, layer);
+  }
+
   public JdkRelease latest() {
-    return releases.stream().filter(r -> !r.isPsu()).findAny().get();
+    if (latest == null) {
+      throw new NoSuchElementException();
+    }
+    return latest;
   }
 
   public JdkRelease latestInclPSU() {
     return releases.get(0);
   }
 
+  /**
+   * Latest non-PSU release of the given major version
+   */
+  public JdkRelease latest(int major) {
+    JdkRelease rel = latestOf(major);
+    if (rel == null) {
+      throw new IllegalStateException("Unable to find jdk release for version " + major);
+    }
+    return rel;
+  }
+
   public JdkRelease select(JdkVersion ver) {
-    for (JdkRelease rel : releases) {
-      JdkVersion o = rel.getVersion();
-      if (o.major > ver.major) {
-        continue;
-      }
-      if (o.major < ver.major) {
-        break;
-      }
-      if (ver.minor == -1) {
-        if (rel.isPsu()) {
-          continue;
-        }
+    String pin = pinned(ver);
+    if (pin != null) {
+      ver = JdkVersion.parse(pin);
+    }
+
+    if (ver.minor == -1) {
+      JdkRelease rel = latestOf(ver.major);
+      if (rel != null) {
         return rel;
       }
-      if (o.minor > ver.minor) {
-        continue;
-      }
-      if (o.minor < ver.minor) {
+      throw new IllegalStateException("Unable to find jdk release for version " + ver);
+    }
+
+    // jump to the newest release that isn't newer than what's asked for, then walk the few PSUs and builds of the line
+    Key start = new Key(ver.major, ver.minor, ver.security == -1 ? Integer.MAX_VALUE : ver.security, Integer.MAX_VALUE, Integer.MAX_VALUE);
+    for (JdkRelease rel : descending(start)) {
+      JdkVersion o = rel.getVersion();
+      if (o.major != ver.major || o.minor != ver.minor) {
         break;
       }
       if (ver.security == -1 && o.security != -1) {
@@ -138,22 +298,65 @@ public class JdkReleases implements Serializable {
         }
         return rel;
       }
-      if (o.security > ver.security) {
-        continue;
-      }
-      if (o.security < ver.security) {
+      if (o.security != ver.security) {
         break;
       }
-      if (ver.buildNumber.isEmpty()) {
+      if (ver.buildNumber == null || ver.buildNumber.isEmpty()) {
         return rel;
       }
-      if (o.buildNumber.equals(ver.buildNumber)) {
+      if (ver.buildNumber.equals(o.buildNumber)) {
         return rel;
       }
     }
     throw new IllegalStateException("Unable to find jdk release for version " + ver);
   }
 
+  static final class Key implements Comparable<Key> {
+    static final Key MIN = new Key(Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE);
+    static final Key MAX = new Key(Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE);
+
+    final int major;
+    final int minor;
+    final int security;
+    final int build;
+    final int seq;
+
+    Key(JdkVersion v, int seq) {
+      this(v.major, v.minor, v.security, v.buildNum(), seq);
+    }
+
+    Key(int major, int minor, int security, int build, int seq) {
+      this.major = major;
+      this.minor = minor;
+      this.security = security;
+      this.build = build;
+      this.seq = seq;
+    }
+
+    @Override
+    public int compareTo(Key o) {
+      int c = compareVersion(o);
+      if (c == 0) {
+        c = Integer.compare(seq, o.seq);
+      }
+      return c;
+    }
+
+    int compareVersion(Key o) {
+      int c = Integer.compare(major, o.major);
+      if (c == 0) {
+        c = Integer.compare(minor, o.minor);
+      }
+      if (c == 0) {
+        c = Integer.compare(security, o.security);
+      }
+      if (c == 0) {
+        c = Integer.compare(build, o.build);
+      }
+      return c;
+    }
+  }
+
   public static class JCE implements Serializable {
     private static final long serialVersionUID = 1L;
 
@@ -196,6 +399,15 @@ public class JdkReleases implements Serializable {
       return binMap;
     }
 
+    /**
+     * This release with the binaries of {@code over} added or replacing ours, and a PSU if either of them is
+     */
+    JdkRelease overlay(JdkRelease over) {
+      Map<Arch, JdkBinary> bins = new LinkedHashMap<>(binaries);
+      bins.putAll(over.binaries);
+      return new JdkRelease(over.version, psu || over.psu, new ArrayList<>(bins.values()));
+    }
+
     public JdkVersion getVersion() {
       return version;
     }
@@ -272,7 +484,7 @@ public class JdkReleases implements Serializable {
       }
     }
 
-    for (JCE jce : rels.jces) {
+    for (JCE jce : rels.getJCEs()) {
       b.addJCE(jce.getMajorVersion(), jce.getPath());
     }
 
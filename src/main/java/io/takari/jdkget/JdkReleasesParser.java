@@ -2,88 +2,228 @@ package io.takari.jdkget;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Reads a release list in a single pass over the xml, without building a document, straight into a
+ * {@link JdkReleases.Builder}. The strings that repeat all over a list (versions, url templates, archs, extensions)
+ * are shared, and versions are interned by {@link JdkVersion#parse(String)}, so large lists don't cost much more than
+ * the binaries they describe.
+ */
+public class JdkReleasesParser {
 
-import de.pdark.decentxml.Document;
-import de.pdark.decentxml.Element;
-import de.pdark.decentxml.XMLIOSource;
-import de.pdark.decentxml.XMLParser;
+  private final XMLInputFactory factory;
+  private final Map<String, String> strings = new HashMap<>();
 
-public class JdkReleasesParser {
+  private String urlTemplate;
+  // binaries that came before the defaults they need
+  private List<String[]> pending;
+
+  public JdkReleasesParser() {
+    // not shared, the jdk's factories aren't safe to use from several threads
+    factory = XMLInputFactory.newInstance();
+    factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+  }
 
   public JdkReleases parse(InputStream in) throws IOException {
-    Document doc = new XMLParser().parse(new XMLIOSource(in));
     JdkReleases.Builder builder = JdkReleases.newBuilder();
-    parseDoc(doc, builder);
+    parse(in, builder, null);
     return builder.build();
   }
 
-  private void parseDoc(Document doc, JdkReleases.Builder builder) {
-    Element defElem = doc.getRootElement().getChild("defaults");
-    String urlTemplate = defElem.getChild("url").getText();
+  /**
+   * Reads a delta document, a release list that can also remove releases and pin versions
+   */
+  public CatalogLayer parseLayer(InputStream in) throws IOException {
+    CatalogLayer.Builder layer = CatalogLayer.newBuilder();
+    parse(in, layer.releases(), layer);
+    return layer.build();
+  }
 
-    for (Element jceElem : doc.getRootElement().getChildren("jce")) {
-      String ver = jceElem.getAttributeValue("version");
-      String url = getText(jceElem, "url");
-      builder.addJCE(Integer.parseInt(ver), url);
+  private void parse(InputStream in, JdkReleases.Builder builder, CatalogLayer.Builder layer) throws IOException {
+    urlTemplate = null;
+    pending = null;
+    try {
+      XMLStreamReader r = factory.createXMLStreamReader(in);
+      try {
+        r.nextTag(); // jdks
+        while (r.nextTag() == XMLStreamConstants.START_ELEMENT) {
+          switch (r.getLocalName()) {
+            case "jce":
+              parseJCE(r, builder);
+              break;
+            case "defaults":
+              parseDefaults(r);
+              break;
+            case "jdk":
+              parseJdk(r, builder);
+              break;
+            // only deltas have these, lists skip them like any other element they don't know
+            case "remove":
+              if (layer != null) {
+                layer.remove(r.getAttributeValue(null, "version"));
+              }
+              skip(r);
+              break;
+            case "pin":
+              if (layer != null) {
+                layer.pin(r.getAttributeValue(null, "version"), r.getAttributeValue(null, "to"));
+              }
+              skip(r);
+              break;
+            default:
+              skip(r);
+          }
+        }
+      } finally {
+        r.close();
+      }
+    } catch (XMLStreamException e) {
+      throw new IOException("Invalid release list: " + e.getMessage(), e);
     }
 
-    for (Element relElem : doc.getRootElement().getChildren("jdk")) {
-      String v = relElem.getAttributeValue("version");
-      boolean psu = Boolean.parseBoolean(relElem.getAttributeValue("psu"));
-      String url = getText(relElem, "url");
-
-      if (url == null) {
-        url = urlTemplate;
+    if (pending != null) {
+      if (urlTemplate == null) {
+        throw new IOException("Invalid release list: no default url");
       }
-
-      if (psu) {
-        builder.setPSU(v);
+      for (String[] b : pending) {
+        addBinary(builder, urlTemplate, b);
       }
+    }
+  }
 
-      parseBin(v, url, relElem.getChildren("bin"), builder);
+  private void parseJCE(XMLStreamReader r, JdkReleases.Builder builder) throws XMLStreamException {
+    String ver = r.getAttributeValue(null, "version");
+    String url = null;
+    while (r.nextTag() == XMLStreamConstants.START_ELEMENT) {
+      if ("url".equals(r.getLocalName())) {
+        url = first(url, r.getElementText());
+      } else {
+        skip(r);
+      }
     }
+    builder.addJCE(Integer.parseInt(ver), url);
   }
 
-  private void parseBin(String ver, String urlTemplate, List<Element> children, JdkReleases.Builder builder) {
-    for (Element binElem : children) {
-      Arch cls = Arch.valueOf(binElem.getAttributeValue("cls").toUpperCase());
-      String binVersion = binElem.getAttributeValue("version");
-      String arch = binElem.getAttributeValue("arch");
-      String ext = binElem.getAttributeValue("ext");
-      String md5 = getText(binElem, "md5");
-      String sha256 = getText(binElem, "sha256");
-      String size = getText(binElem, "size");
-      String url = getText(binElem, "url");
-      long sz = size == null ? -1 : Long.parseLong(size);
-
-      String pathVersion;
-      if (binVersion != null) {
-        pathVersion = binVersion;
+  private void parseDefaults(XMLStreamReader r) throws XMLStreamException {
+    while (r.nextTag() == XMLStreamConstants.START_ELEMENT) {
+      if ("url".equals(r.getLocalName())) {
+        urlTemplate = first(urlTemplate, intern(r.getElementText()));
       } else {
-        pathVersion = ver;
+        skip(r);
+      }
+    }
+  }
+
+  private void parseJdk(XMLStreamReader r, JdkReleases.Builder builder) throws XMLStreamException {
+    String v = intern(r.getAttributeValue(null, "version"));
+    boolean psu = Boolean.parseBoolean(r.getAttributeValue(null, "psu"));
+    if (psu) {
+      builder.setPSU(v);
+    }
+
+    String url = null;
+    List<String[]> bins = new ArrayList<>();
+    while (r.nextTag() == XMLStreamConstants.START_ELEMENT) {
+      switch (r.getLocalName()) {
+        case "url":
+          url = first(url, intern(r.getElementText()));
+          break;
+        case "bin":
+          bins.add(parseBin(r, v));
+          break;
+        default:
+          skip(r);
       }
+    }
 
-      if (url == null) {
-        url = urlTemplate;
+    for (String[] b : bins) {
+      String binUrl = b[8] != null ? b[8] : url != null ? url : urlTemplate;
+      if (binUrl == null) {
+        if (pending == null) {
+          pending = new ArrayList<>();
+        }
+        pending.add(b);
+      } else {
+        addBinary(builder, binUrl, b);
       }
+    }
+  }
 
-      String path = path(url, JdkVersion.parse(pathVersion), arch, ext);
-      builder.addBinary(ver, cls, path, md5, sha256, sz);
+  private String[] parseBin(XMLStreamReader r, String ver) throws XMLStreamException {
+    // version, cls, bin version, arch, ext, md5, sha256, size, url
+    String[] b = new String[9];
+    b[0] = ver;
+    b[1] = intern(r.getAttributeValue(null, "cls"));
+    b[2] = intern(r.getAttributeValue(null, "version"));
+    b[3] = intern(r.getAttributeValue(null, "arch"));
+    b[4] = intern(r.getAttributeValue(null, "ext"));
+    while (r.nextTag() == XMLStreamConstants.START_ELEMENT) {
+      switch (r.getLocalName()) {
+        case "md5":
+          b[5] = first(b[5], r.getElementText());
+          break;
+        case "sha256":
+          b[6] = first(b[6], r.getElementText());
+          break;
+        case "size":
+          b[7] = first(b[7], r.getElementText());
+          break;
+        case "url":
+          b[8] = first(b[8], intern(r.getElementText()));
+          break;
+        default:
+          skip(r);
+      }
     }
+    return b;
   }
 
-  private String getText(Element e, String name) {
-    Element c = e.getChild(name);
-    return c == null ? null : c.getText();
+  private void addBinary(JdkReleases.Builder builder, String url, String[] b) {
+    Arch cls = Arch.valueOf(b[1].toUpperCase());
+    long sz = b[7] == null ? -1 : Long.parseLong(b[7]);
+    JdkVersion v = JdkVersion.parse(b[2] != null ? b[2] : b[0]);
+    String path = url //
+        .replace("${version}", v.shortVersion()) //
+        .replace("${build}", v.buildNumber) //
+        .replace("${arch}", b[3]) //
+        .replace("${ext}", b[4]);
+    builder.addBinary(b[0], cls, path, b[5], b[6], sz);
   }
 
-  private String path(String template, JdkVersion ver, String arch, String ext) {
-    return template //
-        .replace("${version}", ver.shortVersion()) //
-        .replace("${build}", ver.buildNumber) //
-        .replace("${arch}", arch) //
-        .replace("${ext}", ext);
+  // of repeated elements the first one counts, as it always has
+  private static String first(String current, String s) {
+    return current != null ? current : s;
+  }
+
+  private String intern(String s) {
+    if (s == null) {
+      return null;
+    }
+    String i = strings.putIfAbsent(s, s);
+    return i != null ? i : s;
+  }
+
+  private static void skip(XMLStreamReader r) throws XMLStreamException {
+    int depth = 1;
+    while (depth > 0) {
+      int e = r.next();
+      if (e == XMLStreamConstants.START_ELEMENT) {
+        depth++;
+      } else if (e == XMLStreamConstants.END_ELEMENT) {
+        depth--;
+      }
+    }
   }
 
 }
@@ -1,37 +1,144 @@
 package io.takari.jdkget;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.commons.lang3.StringUtils;
 
+/**
+ * A jdk version. Parsed versions are interned: every spelling of a version parses to the same instance, and parsing a
+ * spelling that was seen before is a lookup. Versions also keep their string forms once asked for, and sort on a single
+ * number that packs all their parts.
+ */
 public abstract class JdkVersion implements Comparable<JdkVersion>, Serializable {
   private static final long serialVersionUID = 1L;
 
+  // plenty for every release there is and the versions asked for, but keeps odd input from growing them for ever
+  private static final int MAX_INTERNED = 8192;
+  private static final ConcurrentMap<String, JdkVersion> parsed = new ConcurrentHashMap<>();
+  private static final ConcurrentMap<String, JdkVersion> canonical = new ConcurrentHashMap<>();
+
   public final int major;
   public final int minor;
   public final int security;
   public final String buildNumber;
 
+  // major, minor, security and build in one number that sorts like them, or -1 if any doesn't fit
+  private transient long sortKey;
+  private transient int build;
+
+  private transient String shortBuild;
+  private transient String shortVersion;
+  private transient String longBuild;
+  private transient String longVersion;
+
   protected JdkVersion(int major, int minor, int security, String buildNumber) {
     this.major = major;
     this.minor = minor;
     this.security = security;
     this.buildNumber = buildNumber;
+    init();
   }
 
-  public abstract String shortBuild();
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    init();
+  }
 
-  public abstract String shortVersion();
+  private void init() {
+    try {
+      build = parseBuild(buildNumber);
+    } catch (NumberFormatException e) {
+      // only fails when compared, as it always has
+      build = -1;
+      sortKey = -1;
+      return;
+    }
+    sortKey = pack(major, minor, security, build);
+  }
 
-  public abstract String longBuild();
+  // 10 bits of major, 16 of minor and security (which can be -1) and 21 of build, the sign bit stays clear
+  private static long pack(int major, int minor, int security, int build) {
+    if (major < 0 || major >= 1 << 10 || minor < -1 || minor >= (1 << 16) - 1 || security < -1 || security >= (1 << 16) - 1 || build < 0 || build >= 1 << 21) {
+      return -1;
+    }
+    return (long) major << 53 | (long) (minor + 1) << 37 | (long) (security + 1) << 21 | build;
+  }
 
-  public abstract String longVersion();
+  public String shortBuild() {
+    String s = shortBuild;
+    if (s == null) {
+      shortBuild = s = format(false, true);
+    }
+    return s;
+  }
+
+  public String shortVersion() {
+    String s = shortVersion;
+    if (s == null) {
+      shortVersion = s = format(false, false);
+    }
+    return s;
+  }
+
+  public String longBuild() {
+    String s = longBuild;
+    if (s == null) {
+      longBuild = s = format(true, true);
+    }
+    return s;
+  }
+
+  public String longVersion() {
+    String s = longVersion;
+    if (s == null) {
+      longVersion = s = format(true, false);
+    }
+    return s;
+  }
+
+  /**
+   * Formats this version for the accessors above, which only ask for each form once. Subclasses either implement this
+   * or override all four accessors themselves.
+   */
+  protected String format(boolean longForm, boolean withBuild) {
+    throw new UnsupportedOperationException(getClass().getName() + " doesn't format its versions");
+  }
 
   public String toString() {
     return longBuild();
   }
 
   public static JdkVersion parse(String version) {
+    JdkVersion v = parsed.get(version);
+    if (v == null) {
+      v = intern(parseVersion(version));
+      if (parsed.size() < MAX_INTERNED) {
+        parsed.putIfAbsent(version, v);
+      }
+    }
+    return v;
+  }
+
+  private static JdkVersion intern(JdkVersion v) {
+    String key = (v instanceof JdkVersionPost9 ? "+" : "-") + v.major + "." + v.minor + "." + v.security + v.buildNumber;
+    JdkVersion c = canonical.get(key);
+    if (c == null) {
+      if (canonical.size() >= MAX_INTERNED) {
+        return v;
+      }
+      c = canonical.putIfAbsent(key, v);
+      if (c == null) {
+        c = v;
+      }
+    }
+    return c;
+  }
+
+  private static JdkVersion parseVersion(String version) {
     {
       // 9+build
       // 9.<maj>.<min>+build
@@ -137,7 +244,16 @@ public abstract class JdkVersion implements Comparable<JdkVersion>, Serializable
   }
 
   int buildNum() {
-    String b = buildNumber;
+    if (build == -1) {
+      return parseBuild(buildNumber); // throws
+    }
+    return build;
+  }
+
+  private static int parseBuild(String b) {
+    if (b == null) {
+      return 0;
+    }
     if (b.startsWith("-")) {
       b = b.substring(1);
     }
@@ -152,6 +268,9 @@ public abstract class JdkVersion implements Comparable<JdkVersion>, Serializable
 
   @Override
   public int compareTo(JdkVersion o) {
+    if ((sortKey | o.sortKey) >= 0) {
+      return Long.compare(sortKey, o.sortKey);
+    }
     int c = major - o.major;
     if (c == 0) {
       c = minor - o.minor;
@@ -187,40 +306,19 @@ public abstract class JdkVersion implements Comparable<JdkVersion>, Serializable
     }
 
     @Override
-    public String longVersion() {
+    protected String format(boolean longForm, boolean withBuild) {
       StringBuilder sb = new StringBuilder();
-      sb.append("1.").append(major).append(".0");
-      if (minor > 0)
-        sb.append('_').append(minor);
-      return sb.toString();
-    }
-
-    @Override
-    public String longBuild() {
-      StringBuilder sb = new StringBuilder();
-      sb.append("1.").append(major).append(".0");
-      if (minor > 0)
-        sb.append('_').append(minor);
-      sb.append(buildNumber);
-      return sb.toString();
-    }
-
-    @Override
-    public String shortVersion() {
-      StringBuilder sb = new StringBuilder();
-      sb.append(major);
-      if (minor > 0)
-        sb.append('u').append(minor);
-      return sb.toString();
-    }
-
-    @Override
-    public String shortBuild() {
-      StringBuilder sb = new StringBuilder();
-      sb.append(major);
-      if (minor > 0)
-        sb.append('u').append(minor);
-      sb.append(buildNumber);
+      if (longForm) {
+        sb.append("1.").append(major).append(".0");
+        if (minor > 0)
+          sb.append('_').append(minor);
+      } else {
+        sb.append(major);
+        if (minor > 0)
+          sb.append('u').append(minor);
+      }
+      if (withBuild)
+        sb.append(buildNumber);
       return sb.toString();
     }
   }
@@ -233,38 +331,18 @@ public abstract class JdkVersion implements Comparable<JdkVersion>, Serializable
     }
 
     @Override
-    public String longVersion() {
-      StringBuilder sb = new StringBuilder();
-      sb.append(major);
-      if (minor > 0 || security > 0)
-        sb.append('.').append(minor);
-      if (security > 0)
-        sb.append('.').append(security);
-      return sb.toString();
-    }
-
-    @Override
-    public String longBuild() {
+    protected String format(boolean longForm, boolean withBuild) {
+      // short and long forms are the same since 9
       StringBuilder sb = new StringBuilder();
       sb.append(major);
       if (minor > 0 || security > 0)
         sb.append('.').append(minor);
       if (security > 0)
         sb.append('.').append(security);
-      sb.append(buildNumber);
+      if (withBuild)
+        sb.append(buildNumber);
       return sb.toString();
     }
-
-    @Override
-    public String shortVersion() {
-      return longVersion();
-    }
-
-    @Override
-    public String shortBuild() {
-      return longBuild();
-    }
-
   }
 
 }
@@ -0,0 +1,70 @@
+package io.takari.jdkget;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Writes every phase as a JSON object on a line of its own, ready to be collected and charted, e.g.
+ *
+ * <pre>
+ * {"start":"2017-06-01T10:15:30.120Z","phase":"download","version":"8u131-b11","arch":"NIX_64","duration":2315433872,"bytes":185540433,"allocated":1048576,"success":true,"thread":"main"}
+ * </pre>
+ *
+ * Durations are in nanoseconds, byte counts that don't apply are left out.
+ */
+public class JsonLinesPhaseListener implements IPhaseListener, Closeable {
+
+  private final Writer out;
+
+  public JsonLinesPhaseListener(Writer out) {
+    this.out = out;
+  }
+
+  /**
+   * Appends to {@code file}, so several runs can share one
+   */
+  public JsonLinesPhaseListener(File file) throws IOException {
+    this(new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8));
+  }
+
+  @Override
+  public synchronized void phaseCompleted(PhaseEvent e) {
+    try {
+      JsonWriter json = new JsonWriter(out);
+      json.beginObject();
+      json.field("start", e.getStart().toString());
+      json.field("phase", e.getPhase().name().toLowerCase(Locale.ROOT));
+      json.field("stage", e.getStage());
+      json.field("version", e.getVersion() != null ? e.getVersion().shortBuild() : null);
+      json.field("arch", e.getArch() != null ? e.getArch().name() : null);
+      json.field("duration", e.getDuration());
+      if (e.getBytes() != -1) {
+        json.field("bytes", e.getBytes());
+      }
+      if (e.getAllocatedBytes() != -1) {
+        json.field("allocated", e.getAllocatedBytes());
+      }
+      json.name("success").value(e.isSuccess());
+      json.field("thread", e.getThread());
+      json.endObject();
+      out.write('\n');
+      // a line at a time, for whoever is tailing it
+      out.flush();
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    out.close();
+  }
+
+}
@@ -0,0 +1,158 @@
+package io.takari.jdkget;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Bare bones streaming JSON output, taking care of separators and string escaping. Nesting is up to the caller.
+ */
+class JsonWriter {
+
+  private final Writer out;
+  private final boolean pretty;
+  private int depth;
+  // whether the current object or array already has a member, so the next one needs a separator
+  private boolean hasMember;
+  private boolean afterName;
+
+  JsonWriter(Writer out) {
+    this(out, false);
+  }
+
+  JsonWriter(Writer out, boolean pretty) {
+    this.out = out;
+    this.pretty = pretty;
+  }
+
+  public JsonWriter beginObject() throws IOException {
+    return open('{');
+  }
+
+  public JsonWriter endObject() throws IOException {
+    return close('}');
+  }
+
+  public JsonWriter beginArray() throws IOException {
+    return open('[');
+  }
+
+  public JsonWriter endArray() throws IOException {
+    return close(']');
+  }
+
+  public JsonWriter name(String name) throws IOException {
+    separate();
+    string(name);
+    out.write(pretty ? ": " : ":");
+    afterName = true;
+    return this;
+  }
+
+  public JsonWriter value(String value) throws IOException {
+    separate();
+    if (value == null) {
+      out.write("null");
+    } else {
+      string(value);
+    }
+    hasMember = true;
+    return this;
+  }
+
+  public JsonWriter value(long value) throws IOException {
+    separate();
+    out.write(Long.toString(value));
+    hasMember = true;
+    return this;
+  }
+
+  public JsonWriter value(boolean value) throws IOException {
+    separate();
+    out.write(Boolean.toString(value));
+    hasMember = true;
+    return this;
+  }
+
+  /**
+   * Shorthand for a member with a string value, left out when the value is {@code null}
+   */
+  public JsonWriter field(String name, String value) throws IOException {
+    return value != null ? name(name).value(value) : this;
+  }
+
+  public JsonWriter field(String name, long value) throws IOException {
+    return name(name).value(value);
+  }
+
+  private JsonWriter open(char c) throws IOException {
+    separate();
+    out.write(c);
+    depth++;
+    hasMember = false;
+    return this;
+  }
+
+  private JsonWriter close(char c) throws IOException {
+    depth--;
+    if (hasMember) {
+      newline();
+    }
+    out.write(c);
+    hasMember = true;
+    return this;
+  }
+
+  private void separate() throws IOException {
+    if (afterName) {
+      afterName = false;
+      return;
+    }
+    if (hasMember) {
+      out.write(',');
+    }
+    if (depth > 0) {
+      newline();
+    }
+  }
+
+  private void newline() throws IOException {
+    if (pretty) {
+      out.write('\n');
+      for (int i = 0; i < depth; i++) {
+        out.write("  ");
+      }
+    }
+  }
+
+  private void string(String s) throws IOException {
+    out.write('"');
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      switch (c) {
+        case '"':
+          out.write("\\\"");
+          break;
+        case '\\':
+          out.write("\\\\");
+          break;
+        case '\n':
+          out.write("\\n");
+          break;
+        case '\r':
+          out.write("\\r");
+          break;
+        case '\t':
+          out.write("\\t");
+          break;
+        default:
+          if (c < 0x20) {
+            out.write(String.format("\\u%04x", (int) c));
+          } else {
+            out.write(c);
+          }
+      }
+    }
+    out.write('"');
+  }
+
+}
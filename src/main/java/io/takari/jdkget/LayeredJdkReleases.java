@@ -0,0 +1,181 @@
+package io.takari.jdkget;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.common.collect.AbstractIterator;
+
+/**
+ * A release list with a {@link CatalogLayer} on top, merged as releases are looked up instead of copied into a new
+ * list. Putting a small layer on a large list costs next to nothing and leaves the list underneath shared and as it
+ * was. A release only one side has is returned as it is, one that both have is merged once and kept.
+ * <p>
+ * Layers stack, each on the list with the layers before it, and every lookup goes through all of them. Once lots have
+ * piled up, {@code JdkReleases.newBuilder(layered).build()} flattens them into a plain list again.
+ */
+class LayeredJdkReleases extends JdkReleases {
+  private static final long serialVersionUID = 1L;
+
+  private final JdkReleases base;
+  private final CatalogLayer layer;
+
+  private transient ConcurrentMap<String, JdkRelease> merged;
+  private transient volatile List<JdkRelease> all;
+
+  LayeredJdkReleases(JdkReleases base, CatalogLayer layer) {
+    super(Collections.<JdkRelease>emptyList(), Collections.<JCE>emptyList());
+    this.base = base;
+    this.layer = layer;
+    this.merged = new ConcurrentHashMap<>();
+  }
+
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    merged = new ConcurrentHashMap<>();
+  }
+
+  @Override
+  Iterable<JdkRelease> descending(Key start) {
+    return () -> new AbstractIterator<JdkRelease>() {
+      private final Iterator<JdkRelease> belowIt = base.descending(start).iterator();
+      private final Iterator<JdkRelease> aboveIt = layer.getReleases().descending(start).iterator();
+      private JdkRelease below = nextBelow();
+      private JdkRelease above = aboveIt.hasNext() ? aboveIt.next() : null;
+
+      private JdkRelease nextBelow() {
+        while (belowIt.hasNext()) {
+          JdkRelease rel = belowIt.next();
+          if (!layer.isRemoved(rel.getVersion())) {
+            return rel;
+          }
+        }
+        return null;
+      }
+
+      @Override
+      protected JdkRelease computeNext() {
+        if (above == null && below == null) {
+          return endOfData();
+        }
+        int c = above == null ? -1 : below == null ? 1 : compare(above, below);
+        JdkRelease rel;
+        if (c > 0) {
+          rel = above;
+          above = aboveIt.hasNext() ? aboveIt.next() : null;
+        } else if (c < 0) {
+          rel = below;
+          below = nextBelow();
+        } else {
+          rel = merge(below, above);
+          above = aboveIt.hasNext() ? aboveIt.next() : null;
+          below = nextBelow();
+        }
+        return rel;
+      }
+    };
+  }
+
+  // in the order of the indexes the two sides walk
+  private static int compare(JdkRelease a, JdkRelease b) {
+    return new Key(a.getVersion(), 0).compareVersion(new Key(b.getVersion(), 0));
+  }
+
+  private JdkRelease merge(JdkRelease below, JdkRelease above) {
+    String key = above.getVersion().shortBuild();
+    JdkRelease rel = merged.get(key);
+    if (rel == null) {
+      JdkRelease m = below.overlay(above);
+      rel = merged.putIfAbsent(key, m);
+      if (rel == null) {
+        rel = m;
+      }
+    }
+    return rel;
+  }
+
+  @Override
+  JdkRelease latestOf(int major) {
+    for (JdkRelease rel : descending(new Key(major, Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE))) {
+      if (rel.getVersion().major != major) {
+        break;
+      }
+      if (!rel.isPsu()) {
+        return rel;
+      }
+    }
+    return null;
+  }
+
+  @Override
+  String pinned(JdkVersion ver) {
+    String pin = layer.pinned(ver);
+    return pin != null ? pin : base.pinned(ver);
+  }
+
+  @Override
+  public JdkRelease latest() {
+    for (JdkRelease rel : descending(Key.MAX)) {
+      if (!rel.isPsu()) {
+        return rel;
+      }
+    }
+    throw new NoSuchElementException();
+  }
+
+  @Override
+  public JdkRelease latestInclPSU() {
+    return descending(Key.MAX).iterator().next();
+  }
+
+  @Override
+  public List<JdkRelease> getReleases() {
+    List<JdkRelease> rels = all;
+    if (rels == null) {
+      rels = new ArrayList<>();
+      for (JdkRelease rel : descending(Key.MAX)) {
+        rels.add(rel);
+      }
+      all = rels = Collections.unmodifiableList(rels);
+    }
+    return rels;
+  }
+
+  @Override
+  public List<JdkRelease> getReleases(Arch arch) {
+    List<JdkRelease> rels = new ArrayList<>();
+    for (JdkRelease rel : getReleases()) {
+      if (rel.getArchs().contains(arch)) {
+        rels.add(rel);
+      }
+    }
+    return rels;
+  }
+
+  @Override
+  public JCE getJCE(JdkVersion ver) {
+    JCE jce = layer.getReleases().getJCE(ver);
+    return jce != null ? jce : base.getJCE(ver);
+  }
+
+  @Override
+  public List<JCE> getJCEs() {
+    Map<Integer, JCE> jces = new LinkedHashMap<>();
+    for (JCE jce : base.getJCEs()) {
+      jces.putIfAbsent(jce.getMajorVersion(), jce);
+    }
+    for (JCE jce : layer.getReleases().getJCEs()) {
+      jces.put(jce.getMajorVersion(), jce);
+    }
+    return new ArrayList<>(jces.values());
+  }
+
+}
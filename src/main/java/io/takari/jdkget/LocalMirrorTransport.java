@@ -0,0 +1,96 @@
+package io.takari.jdkget;
+
+import java.io.File;
+import java.io.IOException;
+
+import io.takari.jdkget.JdkReleases.JCE;
+import io.takari.jdkget.JdkReleases.JdkBinary;
+import io.takari.jdkget.JdkReleases.JdkRelease;
+
+/**
+ * Takes binaries straight out of a mirror on a local or network file system, laid out like the remote site (e.g.
+ * populated with {@code -mirror}). Images are hard linked when the mirror is on the same file system, and copied
+ * otherwise. Binaries the {@link MirrorManifest} of the mirror vouches for are trusted as they are, so an image verified
+ * by the mirror run is never hashed again. Nothing is ever written to the mirror.
+ */
+public class LocalMirrorTransport implements ITransport {
+
+  private final File root;
+  private boolean paranoid;
+  private ImageValidator validator = new ImageValidator();
+
+  public LocalMirrorTransport(File root) {
+    this.root = root.getAbsoluteFile();
+  }
+
+  public File getRoot() {
+    return root;
+  }
+
+  public void setParanoid(boolean paranoid) {
+    this.paranoid = paranoid;
+    this.validator = new ImageValidator(paranoid);
+  }
+
+  private JdkBinary binary(JdkContext context) throws IOException {
+    JdkRelease rel = context.getReleases().select(context.getVersion());
+    return rel.getBinary(context.getArch());
+  }
+
+  @Override
+  public File getImageFile(JdkContext context, File parent) throws IOException {
+    return new File(parent, new File(binary(context).getPath()).getName());
+  }
+
+  @Override
+  public void downloadJdk(JdkContext context, File jdkImage) throws IOException, InterruptedException {
+    JdkBinary bin = binary(context);
+    IOutput output = context.getOutput();
+    File source = new File(root, bin.getPath());
+    if (!source.isFile()) {
+      throw new IOException("Mirror has no " + bin.getPath());
+    }
+    if (!isVouched(bin, source) && !new ImageValidator(paranoid, false).validate(bin, source, output)) {
+      throw new IOException("Mirror has invalid " + bin.getPath());
+    }
+
+    if (Util.linkOrCopy(source, jdkImage)) {
+      output.info("Linked " + source);
+    } else {
+      output.info("Copied " + source);
+    }
+    // same content as the one just validated
+    ValidationStamp.write(jdkImage, bin);
+  }
+
+  /**
+   * Whether the manifest of the mirror has {@code source} as verified against {@code bin}, and it hasn't changed since
+   */
+  private boolean isVouched(JdkBinary bin, File source) throws IOException {
+    if (paranoid) {
+      return false;
+    }
+    MirrorManifest.Entry e = MirrorManifest.load(root).get(bin.getPath());
+    return e != null && e.matches(source) && e.matches(bin);
+  }
+
+  @Override
+  public void downloadJce(JdkContext context, File jceImage) throws IOException, InterruptedException {
+    JCE jce = context.getReleases().getJCE(context.getVersion());
+    if (jce == null) {
+      throw new IllegalStateException("No JCE for JDK " + context.getVersion());
+    }
+
+    File source = new File(root, jce.getPath());
+    if (!source.isFile()) {
+      throw new IOException("Mirror has no " + jce.getPath());
+    }
+    Util.linkOrCopy(source, jceImage);
+  }
+
+  @Override
+  public boolean validate(JdkContext context, File jdkImage) throws IOException, InterruptedException {
+    return validator.validate(binary(context), jdkImage, context.getOutput());
+  }
+
+}
@@ -0,0 +1,202 @@
+package io.takari.jdkget;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+import org.apache.commons.lang3.StringUtils;
+
+import io.takari.jdkget.JdkReleases.JdkBinary;
+
+/**
+ * What a mirror holds, kept at its root: every binary with its size, digests, the validators the server sent with it
+ * and when it was last verified. A binary whose file and catalog entry still match the manifest doesn't need to be
+ * hashed or requested again.
+ * <p>
+ * Stored as one tab separated line per binary, sorted by path, so manifests of two runs can be diffed as they are.
+ */
+public class MirrorManifest {
+
+  public static final String FILE_NAME = "mirror.manifest";
+
+  private static final String HEADER = "# path\tsize\tmtime\tsha256\tmd5\tetag\tlast-modified\tverified";
+
+  public static class Entry {
+    private final String path;
+    private final long size;
+    private final long mtime;
+    private final String sha256;
+    private final String md5;
+    private final String etag;
+    private final String lastModified;
+    private final Instant verified;
+
+    Entry(String path, long size, long mtime, String sha256, String md5, String etag, String lastModified, Instant verified) {
+      this.path = path;
+      this.size = size;
+      this.mtime = mtime;
+      this.sha256 = sha256;
+      this.md5 = md5;
+      this.etag = etag;
+      this.lastModified = lastModified;
+      this.verified = verified;
+    }
+
+    public String getPath() {
+      return path;
+    }
+
+    public long getSize() {
+      return size;
+    }
+
+    public String getSha256() {
+      return sha256;
+    }
+
+    public String getMd5() {
+      return md5;
+    }
+
+    public String getEtag() {
+      return etag;
+    }
+
+    public String getLastModified() {
+      return lastModified;
+    }
+
+    public Instant getVerified() {
+      return verified;
+    }
+
+    /**
+     * Validators to check with the server whether the binary changed, or {@code null} if it didn't send any
+     */
+    public HttpValidators getValidators() {
+      return etag != null || lastModified != null ? new HttpValidators(etag, lastModified) : null;
+    }
+
+    /**
+     * Whether {@code file} is still the one that was verified, judging by its size and modification time
+     */
+    public boolean matches(File file) {
+      return file.isFile() && file.length() == size && file.lastModified() == mtime;
+    }
+
+    /**
+     * Whether the catalog still describes the binary the same way as when it was verified
+     */
+    public boolean matches(JdkBinary bin) {
+      return (bin.getSize() == -1 || bin.getSize() == size) && Objects.equals(bin.getSha256(), sha256) && Objects.equals(bin.getMd5(), md5);
+    }
+
+    private String toLine() {
+      return StringUtils.join(new Object[] {path, size, mtime, str(sha256), str(md5), str(etag), str(lastModified), verified}, '\t');
+    }
+
+    private static Entry parse(String line) {
+      String[] f = line.split("\t", -1);
+      if (f.length != 8) {
+        return null;
+      }
+      try {
+        return new Entry(f[0], Long.parseLong(f[1]), Long.parseLong(f[2]), nul(f[3]), nul(f[4]), nul(f[5]), nul(f[6]), Instant.parse(f[7]));
+      } catch (NumberFormatException | DateTimeParseException e) {
+        return null;
+      }
+    }
+
+    private static String str(String s) {
+      return s != null ? s : "";
+    }
+
+    private static String nul(String s) {
+      return s.isEmpty() ? null : s;
+    }
+  }
+
+  private final File file;
+  private final Map<String, Entry> entries = new TreeMap<>();
+
+  private MirrorManifest(File file) {
+    this.file = file;
+  }
+
+  /**
+   * Manifest of the mirror at {@code root}, empty if there is none yet
+   */
+  public static MirrorManifest load(File root) throws IOException {
+    MirrorManifest manifest = new MirrorManifest(new File(root, FILE_NAME));
+    if (manifest.file.isFile()) {
+      try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(manifest.file), StandardCharsets.UTF_8))) {
+        String line;
+        while ((line = in.readLine()) != null) {
+          if (line.isEmpty() || line.startsWith("#")) {
+            continue;
+          }
+          // a broken line just means that binary gets verified again
+          Entry e = Entry.parse(line);
+          if (e != null) {
+            manifest.entries.put(e.path, e);
+          }
+        }
+      }
+    }
+    return manifest;
+  }
+
+  public File getFile() {
+    return file;
+  }
+
+  public synchronized Entry get(String path) {
+    return entries.get(path);
+  }
+
+  public synchronized List<Entry> getEntries() {
+    return new ArrayList<>(entries.values());
+  }
+
+  /**
+   * Records {@code image} as just verified against {@code bin}
+   *
+   * @return the previous entry for its path, if any
+   */
+  public synchronized Entry verified(String path, File image, JdkBinary bin, HttpValidators validators) {
+    Entry e = new Entry(path, image.length(), image.lastModified(), bin.getSha256(), bin.getMd5(), //
+        validators != null ? validators.getEtag() : null, validators != null ? validators.getLastModified() : null, Instant.now());
+    return entries.put(path, e);
+  }
+
+  public synchronized Entry remove(String path) {
+    return entries.remove(path);
+  }
+
+  public synchronized void save() throws IOException {
+    File tmp = new File(file.getPath() + ".tmp");
+    try (Writer out = new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.UTF_8)) {
+      out.write(HEADER);
+      out.write('\n');
+      for (Entry e : entries.values()) {
+        out.write(e.toLine());
+        out.write('\n');
+      }
+    }
+    DownloadState.move(tmp, file);
+  }
+
+}
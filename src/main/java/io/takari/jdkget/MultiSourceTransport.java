@@ -0,0 +1,304 @@
+package io.takari.jdkget;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.HttpHeaders;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+
+import io.takari.jdkget.DownloadState.Range;
+import io.takari.jdkget.JdkReleases.JCE;
+import io.takari.jdkget.JdkReleases.JdkBinary;
+import io.takari.jdkget.StripedDownload.Source;
+
+/**
+ * Downloads binaries from several mirrors laid out like the remote site (e.g. populated with {@code -mirror}),
+ * spreading byte ranges of each binary over all of them. Sources are listed in order of preference, the first one
+ * that has a binary is used for anything that can't be split into ranges.
+ */
+public class MultiSourceTransport extends AbstractHttpTransport {
+
+  public static final long DEFAULT_CHUNK_SIZE = 4L * 1024L * 1024L;
+
+  private static final long MAX_CHUNK_SIZE = 64L * 1024L * 1024L;
+
+  private static final int CONNECT_TIMEOUT = 30000;
+  private static final int SOCKET_TIMEOUT = 60000;
+
+  private final List<String> sources;
+  private int connectionsPerSource = 2;
+  private long chunkSize = DEFAULT_CHUNK_SIZE;
+
+  // sources caught handing out bad data, not used anymore
+  private final Set<String> badSources = ConcurrentHashMap.newKeySet();
+
+  public MultiSourceTransport(List<String> sources) {
+    if (sources.isEmpty()) {
+      throw new IllegalArgumentException("No sources");
+    }
+    List<String> s = new ArrayList<>();
+    for (String src : sources) {
+      s.add(StringUtils.removeEnd(src.trim(), "/"));
+    }
+    this.sources = Collections.unmodifiableList(s);
+  }
+
+  public List<String> getSources() {
+    return sources;
+  }
+
+  public int getConnectionsPerSource() {
+    return connectionsPerSource;
+  }
+
+  public void setConnectionsPerSource(int connectionsPerSource) {
+    if (connectionsPerSource < 1) {
+      throw new IllegalArgumentException("Number of connections should be positive: " + connectionsPerSource);
+    }
+    this.connectionsPerSource = connectionsPerSource;
+    applyPoolLimits();
+  }
+
+  @Override
+  protected int defaultConnectionsPerHost() {
+    return connectionsPerSource;
+  }
+
+  @Override
+  protected int totalConnections(int perHost) {
+    return Math.max(20, sources.size() * perHost);
+  }
+
+  public long getChunkSize() {
+    return chunkSize;
+  }
+
+  /**
+   * Size of the ranges handed out to sources
+   */
+  public void setChunkSize(long chunkSize) {
+    if (chunkSize < 1 || chunkSize > MAX_CHUNK_SIZE) {
+      throw new IllegalArgumentException("Chunk size should be between 1 and " + MAX_CHUNK_SIZE + ": " + chunkSize);
+    }
+    this.chunkSize = chunkSize;
+  }
+
+  @Override
+  protected void configure(HttpClientBuilder builder) {
+    // a stalled mirror should fail its ranges over to the others instead of holding up the download
+    RequestConfig config = RequestConfig.custom() //
+        .setConnectTimeout(CONNECT_TIMEOUT) //
+        .setSocketTimeout(SOCKET_TIMEOUT) //
+        .build();
+    builder.setDefaultRequestConfig(config);
+  }
+
+  @Override
+  public void downloadJdk(JdkContext context, File jdkImage) throws IOException, InterruptedException {
+    JdkBinary bin = binary(context);
+    IOutput output = context.getOutput();
+    output.info("Downloading " + bin.getPath());
+
+    CloseableHttpClient cl = client();
+    List<Probe> probes = probe(cl, bin.getPath(), output);
+
+    // the catalog has the final word on size, otherwise go with the most preferred source
+    long length = bin.getSize();
+    List<Source> ranged = new ArrayList<>();
+    Probe whole = null;
+    for (Probe p : probes) {
+      if (length == -1 && p.length > 0) {
+        length = p.length;
+      }
+      if (p.length != length) {
+        output.error(p.source + " has " + p.length + " bytes instead of " + length + ", skipping it");
+      } else if (p.ranges && length > 0) {
+        ranged.add(p.source);
+      } else if (whole == null) {
+        whole = p;
+      }
+    }
+
+    if (ranged.isEmpty()) {
+      if (whole == null) {
+        throw new IOException("No source has " + bin.getPath());
+      }
+      output.info("No source supports ranges, downloading from " + whole.source);
+      Digests digests = Digests.of(bin);
+      downloadWhole(cl, whole, jdkImage, digests, output);
+      verified(bin, jdkImage, digests.finish(), output);
+      return;
+    }
+
+    Probe primary = null;
+    for (Probe p : probes) {
+      if (ranged.contains(p.source)) {
+        primary = p;
+        break;
+      }
+    }
+
+    DownloadState state = isResume() ? DownloadState.load(jdkImage) : null;
+    if (state != null && !matchesAny(state, probes, length)) {
+      output.info("Discarding partial download of changed content");
+      state.discard();
+      state = null;
+    }
+    if (state == null) {
+      int chunks = (int) Math.max(1, (length + chunkSize - 1) / chunkSize);
+      state = DownloadState.create(jdkImage, isResume(), primary.source.uri.toString(), primary.etag, primary.lastModified, length, chunks);
+    } else {
+      output.info("Resuming download at " + state.committed() + " of " + state.getLength() + " bytes");
+    }
+    state.save();
+
+    StripedDownload download = new StripedDownload(cl, ranged, state, connectionsPerSource, throttle, output);
+    download.download();
+
+    if (bin.getSha256() != null || bin.getMd5() != null) {
+      Digests digests = ImageValidator.digest(state.getPartFile(), Digests.of(bin));
+      if (!matches(bin, digests) && ranged.size() > 1) {
+        for (Source s : ranged) {
+          if (download.repair(s)) {
+            digests = ImageValidator.digest(state.getPartFile(), Digests.of(bin));
+            if (matches(bin, digests)) {
+              output.error("Not using " + s + " anymore, it returned bad data");
+              badSources.add(s.name);
+              break;
+            }
+          }
+        }
+      }
+      state.complete();
+      verified(bin, jdkImage, digests, output);
+    } else {
+      state.complete();
+    }
+  }
+
+  private void verified(JdkBinary bin, File image, Digests digests, IOutput output) throws IOException, InterruptedException {
+    // records a validation stamp, or reports what's wrong for the caller's validation to act on
+    validator.validate(bin, image, digests, output);
+  }
+
+  private static boolean matches(JdkBinary bin, Digests digests) {
+    return (bin.getSha256() == null || bin.getSha256().equals(digests.getSha256())) //
+        && (bin.getMd5() == null || bin.getMd5().equals(digests.getMd5()));
+  }
+
+  private static boolean matchesAny(DownloadState state, List<Probe> probes, long length) {
+    for (Probe p : probes) {
+      if (state.matches(p.etag, p.lastModified, length)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public void downloadJce(JdkContext context, File jceImage) throws IOException, InterruptedException {
+    JCE jce = context.getReleases().getJCE(context.getVersion());
+    if (jce == null) {
+      throw new IllegalStateException("No JCE for JDK " + context.getVersion());
+    }
+
+    IOutput output = context.getOutput();
+    CloseableHttpClient cl = client();
+    List<Probe> probes = probe(cl, jce.getPath(), output);
+    if (probes.isEmpty()) {
+      throw new IOException("No source has " + jce.getPath());
+    }
+    downloadWhole(cl, probes.get(0), jceImage, null, output);
+  }
+
+  /**
+   * Downloads from a single source in one go, into a {@code .part} file that only replaces the target once complete
+   */
+  private void downloadWhole(CloseableHttpClient cl, Probe probe, File target, Digests digests, IOutput output) throws IOException, InterruptedException {
+    // without ranges there's nothing to resume from, a previous attempt only leaves stale data behind
+    DownloadState previous = DownloadState.load(target);
+    if (previous != null) {
+      previous.discard();
+    }
+
+    try (CloseableHttpResponse res = cl.execute(new HttpGet(probe.source.uri))) {
+      int code = res.getStatusLine().getStatusCode();
+      if (code != 200) {
+        throw new IOException("Server responded with " + code + ": " + res.getStatusLine().getReasonPhrase());
+      }
+      long totalHint = res.getEntity().getContentLength();
+      DownloadState state = DownloadState.create(target, false, probe.source.uri.toString(), probe.etag, probe.lastModified, totalHint, 1);
+      Range range = state.firstPending();
+      try (InputStream is = res.getEntity().getContent(); FileChannel ch = state.openChannel()) {
+        new DownloadSink(ch, throttle, digests).transfer(is, 0, range.end, //
+            DownloadSink.progress(output, totalHint, (pos, bytes) -> state.advance(range, pos)));
+      }
+      if (range.end != -1 && range.pos < range.end) {
+        throw new IOException("Premature end of download at " + range.pos + " of " + range.end + " bytes");
+      }
+      state.complete();
+    }
+  }
+
+  private static class Probe {
+    final Source source;
+    final long length;
+    final boolean ranges;
+    final String etag;
+    final String lastModified;
+
+    Probe(Source source, long length, boolean ranges, String etag, String lastModified) {
+      this.source = source;
+      this.length = length;
+      this.ranges = ranges;
+      this.etag = etag;
+      this.lastModified = lastModified;
+    }
+  }
+
+  /**
+   * Asks every usable source for the first byte of {@code path}, to find out which of them have it and support ranges
+   */
+  private List<Probe> probe(CloseableHttpClient cl, String path, IOutput output) throws InterruptedException {
+    List<Probe> probes = new ArrayList<>();
+    for (String base : sources) {
+      Util.checkInterrupt();
+      if (badSources.contains(base)) {
+        continue;
+      }
+      Source source = new Source(base, URI.create(base + "/" + path));
+      HttpGet req = new HttpGet(source.uri);
+      req.setHeader(HttpHeaders.RANGE, "bytes=0-0");
+      try (CloseableHttpResponse res = cl.execute(req)) {
+        // not consuming the body, a source ignoring the range would send us all of it
+        int code = res.getStatusLine().getStatusCode();
+        String etag = HttpValidators.headerValue(res, HttpHeaders.ETAG);
+        String lastModified = HttpValidators.headerValue(res, HttpHeaders.LAST_MODIFIED);
+        if (code == 206) {
+          probes.add(new Probe(source, SegmentedDownload.contentRangeLength(res), true, etag, lastModified));
+        } else if (code == 200) {
+          probes.add(new Probe(source, res.getEntity().getContentLength(), false, etag, lastModified));
+        } else {
+          output.info(base + " responded with " + code + ": " + res.getStatusLine().getReasonPhrase() + ", skipping it");
+        }
+      } catch (IOException e) {
+        output.error("Error contacting " + base + ": " + e + ", skipping it");
+      }
+    }
+    return probes;
+  }
+
+}
@@ -3,15 +3,18 @@ package io.takari.jdkget;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.net.URI;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringEscapeUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -32,14 +35,13 @@ import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.impl.cookie.BasicClientCookie;
 import org.apache.http.message.BasicNameValuePair;
-import com.google.common.hash.HashFunction;
-import com.google.common.hash.Hasher;
-import com.google.common.hash.Hashing;
+import org.apache.http.util.EntityUtils;
+import io.takari.jdkget.DownloadState.Range;
 import io.takari.jdkget.JdkReleases.JCE;
 import io.takari.jdkget.JdkReleases.JdkBinary;
-import io.takari.jdkget.JdkReleases.JdkRelease;
+import io.takari.jdkget.PhaseEvent.Phase;
 
-public class OracleWebsiteTransport implements ITransport {
+public class OracleWebsiteTransport extends AbstractHttpTransport {
 
   private static final List<String> supportedBinaryContentTypes = Arrays.asList("application/x-gzip", 
       "application/gzip",
@@ -51,9 +53,35 @@ public class OracleWebsiteTransport implements ITransport {
 
   public static final String JDK_URL_FORMAT = "/java/jdk/%s/jdk-%s-%s.%s";
 
+  // how long to reuse a resolved download url that doesn't tell when it expires
+  private static final long RESOLVED_TTL = 5L * 60L * 1000L;
+
+  // how long throughput has to stay low before hedging
+  private static final long HEDGE_WINDOW = 10000L;
+
+  // downloads to remember validators of, plenty for a mirror run asking for them right after each one
+  private static final int MAX_VALIDATORS = 256;
+
   private String website;
   private String otnUsername;
   private String otnPassword;
+  private String loginHost = "login.oracle.com";
+  private int segments = 1;
+  private long hedgeAfter;
+  private long hedgeBelow;
+
+  private final Map<File, DownloadedImage> downloaded = new ConcurrentHashMap<>();
+  private final Map<File, HttpValidators> validators = Collections.synchronizedMap(new LinkedHashMap<File, HttpValidators>() {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<File, HttpValidators> eldest) {
+      return size() > MAX_VALIDATORS;
+    }
+  });
+  private final Map<String, ResolvedUrl> resolved = new ConcurrentHashMap<>();
+
+  private Hedging hedging;
 
   public OracleWebsiteTransport() {
     this(ORACLE_WEBSITE);
@@ -69,9 +97,72 @@ public class OracleWebsiteTransport implements ITransport {
     this.otnPassword = otnPassword;
   }
 
-  private JdkBinary binary(JdkContext context) throws IOException {
-    JdkRelease rel = context.getReleases().select(context.getVersion());
-    return rel.getBinary(context.getArch());
+  public int getSegments() {
+    return segments;
+  }
+
+  /**
+   * Download each binary over this many parallel range requests when the server supports them
+   */
+  public void setSegments(int segments) {
+    if (segments < 1) {
+      throw new IllegalArgumentException("Number of segments should be positive: " + segments);
+    }
+    this.segments = segments;
+    applyPoolLimits();
+  }
+
+  @Override
+  protected int defaultConnectionsPerHost() {
+    // just enough for the segments of one download
+    return Math.max(2, segments);
+  }
+
+  public long getHedgeAfter() {
+    return hedgeAfter;
+  }
+
+  /**
+   * Send a second request when the first one gets no response within this many milliseconds and keep whichever
+   * responds first, 0 to disable
+   */
+  public synchronized void setHedgeAfter(long millis) {
+    this.hedgeAfter = millis;
+    resetHedging();
+  }
+
+  public long getHedgeBelow() {
+    return hedgeBelow;
+  }
+
+  /**
+   * Request the rest of a download again when it keeps coming in at less than this many bytes per second, switching to
+   * the new request if it turns out to be faster; 0 to disable
+   */
+  public synchronized void setHedgeBelow(long bytesPerSecond) {
+    this.hedgeBelow = bytesPerSecond;
+    resetHedging();
+  }
+
+  private void resetHedging() {
+    if (hedging != null) {
+      hedging.shutdown();
+      hedging = null;
+    }
+  }
+
+  private synchronized Hedging hedging() {
+    if (hedging == null && (hedgeAfter > 0 || hedgeBelow > 0)) {
+      hedging = new Hedging(hedgeAfter, hedgeBelow, HEDGE_WINDOW);
+    }
+    return hedging;
+  }
+
+  /**
+   * Host serving the OTN login, only worth changing for testing against a stand-in for the real site
+   */
+  void setLoginHost(String loginHost) {
+    this.loginHost = loginHost;
   }
 
   private boolean isApple(JdkContext context) {
@@ -86,25 +177,23 @@ public class OracleWebsiteTransport implements ITransport {
     if (isApple(context)) {
       return new File(parent, "javaforosx.dmg");
     }
-    JdkBinary bin = binary(context);
-    return new File(parent, new File(bin.getPath()).getName());
+    return super.getImageFile(context, parent);
   }
 
   @Override
   public void downloadJdk(JdkContext context, File jdkImage) throws IOException, InterruptedException {
 
     String url;
-    boolean cookie = true;
+    JdkBinary bin = null;
     if (isApple(context)) {
       // for osx, jdk6* is only available from here
       url = "http://support.apple.com/downloads/DL1572/en_US/javaforosx.dmg";
-      cookie = false;
     } else {
-      JdkBinary bin = binary(context);
+      bin = binary(context);
       url = website + "/" + bin.getPath();
     }
 
-    doDownload(url, cookie, jdkImage, context.getOutput());
+    doDownload(url, jdkImage, bin, context);
   }
 
   @Override
@@ -114,83 +203,192 @@ public class OracleWebsiteTransport implements ITransport {
       throw new IllegalStateException("No JCE for JDK " + context.getVersion());
     }
 
-    doDownload(website + "/" + jce.getPath(), true, jceImage, context.getOutput());
+    doDownload(website + "/" + jce.getPath(), jceImage, null, context);
   }
 
-  private void doDownload(final String url, boolean cookie, File target, IOutput output) throws IOException, InterruptedException {
-    output.info("Downloading " + cleanUrl(url));
-
+  @Override
+  protected void configure(HttpClientBuilder builder) {
+    // license cookies go into the long-lived store along with whatever session cookies the OTN login gives us
     BasicCookieStore cookieStore = new BasicCookieStore();
-    CloseableHttpClient cl = HttpClientBuilder.create().setDefaultCookieStore(cookieStore)
+    cookieStore.addCookie(new BasicClientCookie("oraclelicense", "accept-securebackup-cookie"));
+    cookieStore.addCookie(new BasicClientCookie("gpw_e24", "http%3A%2F%2Fwww.oracle.com"));
+    cookieStore.getCookies().forEach(c -> {
+      BasicClientCookie bc = (BasicClientCookie) c;
+      bc.setDomain(".oracle.com");
+      bc.setPath("/");
+      bc.setAttribute(ClientCookie.PATH_ATTR, bc.getPath());
+      bc.setAttribute(ClientCookie.DOMAIN_ATTR, bc.getDomain());
+    });
+
+    builder.setDefaultCookieStore(cookieStore)
         .disableRedirectHandling()
         //.setUserAgent("curl/7.47.0")
         //User Agent String of Safari
         .setUserAgent("Mozilla/5.0 (iPad; CPU OS 7_0 like Mac OS X) "
             + "AppleWebKit/537.51.1 (KHTML, like Gecko) "
             + "CriOS/30.0.1599.12 Mobile/11A465 Safari/8536.25 "
-            + "(3B92C18B-D9DE-4CB7-A02A-22FD2AF17C8F)")
-        .build();
+            + "(3B92C18B-D9DE-4CB7-A02A-22FD2AF17C8F)");
+  }
 
-    if (cookie) {
-      cookieStore.addCookie(new BasicClientCookie("oraclelicense", "accept-securebackup-cookie"));
-      cookieStore.addCookie(new BasicClientCookie("gpw_e24", "http%3A%2F%2Fwww.oracle.com"));
+  /**
+   * Releases pooled connections and forgets the OTN session; the transport can still be used afterwards, it would just
+   * start a new session.
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    resetHedging();
+    try {
+      super.close();
+    } finally {
+      resolved.clear();
     }
-    cookieStore.getCookies().forEach(c -> {
-      BasicClientCookie bc = (BasicClientCookie) c;
-      bc.setDomain(".oracle.com");
-      bc.setPath("/");
-      bc.setAttribute(ClientCookie.PATH_ATTR, bc.getPath());
-      bc.setAttribute(ClientCookie.DOMAIN_ATTR, bc.getDomain());
-    });
+  }
 
+  /**
+   * @param bin binary being downloaded, to hash it on the fly; {@code null} for anything that isn't in the catalog
+   */
+  private void doDownload(final String url, File target, JdkBinary bin, JdkContext context) throws IOException, InterruptedException {
+    IOutput output = context.getOutput();
+    output.info("Downloading " + cleanUrl(url));
+
+    CloseableHttpClient cl = client();
 
     boolean hasOtnCredentials = StringUtils.isNotBlank(otnUsername) && StringUtils.isNotBlank(otnPassword);
 
+    if (isResume() && resumeDirect(cl, target, bin, output)) {
+      return;
+    }
+
+    ResolvedUrl r = resolved.get(url);
+    if (r != null) {
+      if (r.isValid() && downloadResolved(cl, r.uri, target, bin, output)) {
+        return;
+      }
+      resolved.remove(url);
+    }
+
     HttpRequestBase req = new HttpGet(url);
+    CloseableHttpResponse download = null;
 
     // Oracle does some redirects so we have to follow a couple before we win the JDK prize
     int retries = 20;
-    for (int retry = 0; retry < retries; retry++) {
-
-      CloseableHttpResponse res = cl.execute(req);
-      try {
-        int code = res.getStatusLine().getStatusCode();
-        String msg = res.getStatusLine().getReasonPhrase();
-
-        boolean shouldTryLogin = hasOtnCredentials && req.getURI().getHost().equals("login.oracle.com");
-        
-        if(code == 401 && shouldTryLogin){
-          req = createLoginBasic(URI.create(res.getFirstHeader("Location").getValue()), otnUsername, otnPassword);
-          output.info("Basic authorizing on " + cleanUrl(req.getURI().toString()));
-        }
-        if (code == 200 && shouldTryLogin) {
-          req = createLoginPost(req.getURI(),  res);
-          output.info("Authorizing on " + cleanUrl(req.getURI().toString()));
-        } else if (code == 200) {
-          downloadResponse(res, target, output);
-          return;
-        } else if (code == 301 || code == 302) {
-          String newUrl = res.getFirstHeader("Location").getValue();
-          output.info("Redirecting to " + cleanUrl(newUrl));
-          req = new HttpGet(newUrl);
-        } else if (code == 404) {
-          if (hasOtnCredentials && url.contains("/otn-pub/")) {
-            output.info("Server responded with " + code + ": " + msg + ", retrying with OTN credentials");
-            req = new HttpGet(url.replace("/otn-pub/", "/otn/"));
+    try (PhaseTimer redirects = context.phase(Phase.REDIRECT)) {
+      for (int retry = 0; retry < retries && download == null; retry++) {
+
+        CloseableHttpResponse res = execute(cl, req, output);
+        try {
+          int code = res.getStatusLine().getStatusCode();
+          String msg = res.getStatusLine().getReasonPhrase();
+
+          boolean shouldTryLogin = hasOtnCredentials && req.getURI().getHost().equals(loginHost);
+          
+          if(code == 401 && shouldTryLogin){
+            req = createLoginBasic(URI.create(res.getFirstHeader("Location").getValue()), otnUsername, otnPassword);
+            output.info("Basic authorizing on " + cleanUrl(req.getURI().toString()));
+          } else if (code == 200 && shouldTryLogin) {
+            req = createLoginPost(req.getURI(),  res);
+            output.info("Authorizing on " + cleanUrl(req.getURI().toString()));
+          } else if (code == 200) {
+            if (req instanceof HttpGet && !req.getURI().toString().equals(url)) {
+              resolved.put(url, new ResolvedUrl(req.getURI()));
+            }
+            redirects.succeeded();
+            download = res;
+          } else if (code == 301 || code == 302) {
+            String newUrl = res.getFirstHeader("Location").getValue();
+            output.info("Redirecting to " + cleanUrl(newUrl));
+            req = new HttpGet(newUrl);
+          } else if (code == 404) {
+            if (hasOtnCredentials && url.contains("/otn-pub/")) {
+              output.info("Server responded with " + code + ": " + msg + ", retrying with OTN credentials");
+              req = new HttpGet(url.replace("/otn-pub/", "/otn/"));
+            } else {
+              output.error("Server responded with " + code + ": " + msg);
+              throw new IOException("Could not download jdk");
+            }
           } else {
-            output.error("Server responded with " + code + ": " + msg);
-            throw new IOException("Could not download jdk");
+            output.error("Server responded with " + code + ": " + msg + ", retrying");
+            req = new HttpGet(req.getURI());
+          }
+        } finally {
+          if (res != download) {
+            if (res.getStatusLine().getStatusCode() != 200) {
+              // let the connection go back to the pool
+              EntityUtils.consumeQuietly(res.getEntity());
+            }
+            res.close();
           }
+        }
+      }
+    }
+
+    if (download == null) {
+      throw new IOException("Could not download jdk after " + retries + " attempts");
+    }
+    try (CloseableHttpResponse res = download) {
+      downloadResponse(cl, req.getURI(), res, target, bin, output);
+    }
+  }
+
+  @Override
+  public HttpValidators getValidators(File jdkImage) {
+    return validators.get(jdkImage.getAbsoluteFile());
+  }
+
+  @Override
+  public boolean isModified(JdkContext context, HttpValidators previous) throws IOException, InterruptedException {
+    if (isApple(context)) {
+      return true;
+    }
+    String url = website + "/" + binary(context).getPath();
+    IOutput output = context.getOutput();
+    CloseableHttpClient cl = client();
+
+    ResolvedUrl r = resolved.get(url);
+    String next = r != null && r.isValid() ? r.uri.toString() : url;
+    for (int redirects = 0; redirects < 20; redirects++) {
+      Util.checkInterrupt();
+      HttpGet req = new HttpGet(next);
+      previous.applyTo(req);
+      try (CloseableHttpResponse res = cl.execute(req)) {
+        int code = res.getStatusLine().getStatusCode();
+        Header location = res.getFirstHeader("Location");
+        if (code == 304) {
+          return false;
+        } else if ((code == 301 || code == 302) && location != null) {
+          EntityUtils.consumeQuietly(res.getEntity());
+          next = location.getValue();
         } else {
-          output.error("Server responded with " + code + ": " + msg + ", retrying");
-          req = new HttpGet(req.getURI());
+          // changed, or something only a real download knows how to deal with
+          output.info("Server responded with " + code + " to a conditional request for " + cleanUrl(url));
+          req.abort();
+          return true;
         }
-      } finally {
-        res.close();
       }
     }
+    return true;
+  }
 
-    throw new IOException("Could not download jdk after " + retries + " attempts");
+  private CloseableHttpResponse execute(CloseableHttpClient cl, HttpRequestBase req, IOutput output) throws IOException, InterruptedException {
+    Hedging h = hedging();
+    if (h != null && req instanceof HttpGet) {
+      return h.execute(cl, (HttpGet) req, output);
+    }
+    return cl.execute(req);
+  }
+
+  private boolean downloadResolved(CloseableHttpClient cl, URI uri, File target, JdkBinary bin, IOutput output) throws IOException, InterruptedException {
+    HttpGet req = new HttpGet(uri);
+    try (CloseableHttpResponse res = execute(cl, req, output)) {
+      if (res.getStatusLine().getStatusCode() != 200 || !isBinary(res)) {
+        // expired links tend to come back with a login page rather than an error
+        EntityUtils.consumeQuietly(res.getEntity());
+        return false;
+      }
+      output.info("Using previously resolved " + cleanUrl(uri.toString()));
+      downloadResponse(cl, uri, res, target, bin, output);
+      return true;
+    }
   }
   
   private static String cleanUrl(String url) {
@@ -198,25 +396,131 @@ public class OracleWebsiteTransport implements ITransport {
     return q != -1 ? url.substring(0, q) : url;
   }
 
-  private void downloadResponse(HttpResponse res, File target, IOutput output)
+  private boolean resumeDirect(CloseableHttpClient cl, File target, JdkBinary bin, IOutput output) throws IOException, InterruptedException {
+    DownloadState state = DownloadState.load(target);
+    if (state == null || state.getUrl() == null || state.ifRange() == null) {
+      return false;
+    }
+
+    // resolved urls tend to expire, in which case we'll go through the redirects again
+    HttpGet req = new HttpGet(state.getUrl());
+    req.setHeader(HttpHeaders.RANGE, "bytes=" + state.firstPending().pos + "-");
+    req.setHeader(HttpHeaders.IF_RANGE, state.ifRange());
+    try (CloseableHttpResponse res = execute(cl, req, output)) {
+      if (res.getStatusLine().getStatusCode() != 206) {
+        return false;
+      }
+      downloadResponse(cl, req.getURI(), res, target, bin, output);
+      return true;
+    } catch (IOException e) {
+      output.error("Error resuming from " + cleanUrl(state.getUrl()) + ": " + e + ", starting over");
+      return false;
+    }
+  }
+
+  private void downloadResponse(CloseableHttpClient cl, URI uri, CloseableHttpResponse res, File target, JdkBinary bin, IOutput output)
       throws IOException, InterruptedException, FileNotFoundException {
-    Header contentType = res.getFirstHeader("Content-Type");
-    
-    if(contentType == null || !supportedBinaryContentTypes.contains(contentType.getValue().trim())) {
-      throw new IOException("Unsupported content type: " + contentType);
+    // hash from scratch on every attempt, a failed one leaves whatever it got through in its digests
+    Digests digests = bin != null ? Digests.of(bin) : null;
+
+    if (!isBinary(res)) {
+      throw new IOException("Unsupported content type: " + res.getFirstHeader("Content-Type"));
     }
-    
-    Header contentLength = res.getFirstHeader("Content-Length");
+
+    boolean partial = res.getStatusLine().getStatusCode() == 206;
     long totalHint = -1;
-    if (contentLength != null) {
-      try {
-        totalHint = Long.parseLong(contentLength.getValue());
-      } catch (NumberFormatException e) {
+    if (partial) {
+      totalHint = SegmentedDownload.contentRangeLength(res);
+    } else {
+      Header contentLength = res.getFirstHeader("Content-Length");
+      if (contentLength != null) {
+        try {
+          totalHint = Long.parseLong(contentLength.getValue());
+        } catch (NumberFormatException e) {
+        }
       }
     }
 
-    try (InputStream is = res.getEntity().getContent(); OutputStream os = new FileOutputStream(target)) {
-      Util.copyWithProgress(is, os, totalHint, output);
+    Header acceptRanges = res.getFirstHeader(HttpHeaders.ACCEPT_RANGES);
+    boolean ranges = partial || acceptRanges != null && "bytes".equalsIgnoreCase(acceptRanges.getValue().trim());
+    String etag = HttpValidators.headerValue(res, HttpHeaders.ETAG);
+    String lastModified = HttpValidators.headerValue(res, HttpHeaders.LAST_MODIFIED);
+
+    DownloadState state = isResume() ? DownloadState.load(target) : null;
+    if (state != null && !(ranges && state.matches(etag, lastModified, totalHint))) {
+      output.info("Discarding partial download of changed content");
+      state.discard();
+      state = null;
+    }
+    if (state == null) {
+      if (partial) {
+        throw new IOException("Unexpected partial content");
+      }
+      int segs = ranges ? SegmentedDownload.segmentsFor(totalHint, segments) : 1;
+      state = DownloadState.create(target, isResume(), uri.toString(), etag, lastModified, totalHint, segs);
+    } else {
+      output.info("Resuming download at " + state.committed() + " of " + state.getLength() + " bytes");
+      state.setUrl(uri.toString());
+    }
+    state.save();
+
+    long first = state.firstPending().pos;
+    boolean streamable = state.getRanges().size() == 1 && (partial ? SegmentedDownload.contentRangeStart(res) == first : first == 0);
+    if (streamable) {
+      if (digests != null && first > 0) {
+        hashPrefix(state.getPartFile(), first, digests);
+      }
+      DownloadState st = state;
+      InputStream body = res.getEntity().getContent();
+      Hedging h = hedging();
+      if (h != null && ranges && state.ifRange() != null) {
+        // validators make sure a hedged range request gets the very same content
+        body = h.monitor(res, body, first, p -> SegmentedDownload.openRange(cl, null, uri, p, -1, st.ifRange(), output), output);
+      }
+      Range range = state.firstPending();
+      try (InputStream is = body; FileChannel ch = state.openChannel()) {
+        new DownloadSink(ch, throttle, digests).transfer(is, first, range.end, //
+            DownloadSink.progress(output, state.remaining(), (pos, bytes) -> st.advance(range, pos)));
+      } finally {
+        state.save();
+      }
+      if (range.end != -1 && range.pos < range.end) {
+        throw new IOException("Premature end of download at " + range.pos + " of " + range.end + " bytes");
+      }
+    } else {
+      // drop this connection and request the rest of the body as ranges
+      res.close();
+      new SegmentedDownload(cl, uri, state, throttle, hedging(), output).download();
+      // ranges arrive out of order, so they can't be hashed on the fly
+      digests = null;
+    }
+    state.complete();
+
+    HttpValidators v = HttpValidators.of(res);
+    if (v != null) {
+      validators.put(target.getAbsoluteFile(), v);
+    } else {
+      validators.remove(target.getAbsoluteFile());
+    }
+    if (digests != null) {
+      downloaded.put(target.getAbsoluteFile(), new DownloadedImage(target, digests.finish()));
+    }
+  }
+
+  private static boolean isBinary(HttpResponse res) {
+    Header contentType = res.getFirstHeader("Content-Type");
+    return contentType != null && supportedBinaryContentTypes.contains(contentType.getValue().trim());
+  }
+
+  private static void hashPrefix(File part, long length, Digests digests) throws IOException {
+    try (InputStream in = new FileInputStream(part)) {
+      byte[] buf = new byte[65536];
+      long remaining = length;
+      int l;
+      while (remaining > 0 && (l = in.read(buf, 0, (int) Math.min(buf.length, remaining))) != -1) {
+        digests.update(buf, 0, l);
+        remaining -= l;
+      }
     }
   }
 
@@ -305,55 +609,69 @@ public class OracleWebsiteTransport implements ITransport {
   public boolean validate(JdkContext context, File jdkImage) throws IOException, InterruptedException {
     if (isApple(context)) {
       return jdkImage.length() == 66724162L;
-    } else {
-      JdkBinary bin = binary(context);
+    }
 
-      IOutput output = context.getOutput();
+    Digests known = knownDigests(jdkImage);
+    // only trusted for the validation right after the download, later ones hash the file again
+    downloaded.remove(jdkImage.getAbsoluteFile());
+    return validator.validate(binary(context), jdkImage, known, context.getOutput());
+  }
 
-      int checks = 0;
-      int failed = 0;
+  /**
+   * Digests computed while downloading this very file, if it hasn't been touched since
+   */
+  Digests knownDigests(File jdkImage) {
+    DownloadedImage img = downloaded.get(jdkImage.getAbsoluteFile());
+    return img != null && img.matches(jdkImage) ? img.digests : null;
+  }
 
-      if (bin.getSha256() != null) {
-        checks++;
-        String fileHash = hash(jdkImage, Hashing.sha256());
-        if (!bin.getSha256().equals(fileHash)) {
-          failed++;
-          output.error("File sha256 `" + fileHash + "` differs from `" + bin.getSha256() + "`");
-        }
-      }
-      if (bin.getMd5() != null) {
-        checks++;
-        String fileHash = hash(jdkImage, Hashing.md5());
-        if (!bin.getMd5().equals(fileHash)) {
-          failed++;
-          output.error("File md5 `" + fileHash + "` differs from `" + bin.getMd5() + "`");
-        }
-      }
-      if (bin.getSize() != -1) {
-        checks++;
-        if (bin.getSize() != jdkImage.length()) {
-          failed++;
-          output.error("File size `" + jdkImage.length() + "` differs from `" + bin.getSize() + "`");
-        }
-      }
+  private static class DownloadedImage {
+    private final long length;
+    private final long lastModified;
+    private final Digests digests;
 
-      if (checks != 0 && failed > 0) {
-        return false;
-      }
+    DownloadedImage(File file, Digests digests) {
+      this.length = file.length();
+      this.lastModified = file.lastModified();
+      this.digests = digests;
+    }
+
+    boolean matches(File file) {
+      return file.length() == length && file.lastModified() == lastModified && digests.getSize() == length;
     }
-    return true;
   }
 
-  private static String hash(File f, HashFunction hf) throws IOException {
-    Hasher h = hf.newHasher();
-    try (InputStream in = new FileInputStream(f)) {
-      byte[] buf = new byte[8192];
-      int l;
-      while ((l = in.read(buf)) != -1) {
-        h.putBytes(buf, 0, l);
+  private static class ResolvedUrl {
+    private final URI uri;
+    private final long expires;
+
+    ResolvedUrl(URI uri) {
+      this.uri = uri;
+      this.expires = expires(uri);
+    }
+
+    boolean isValid() {
+      return System.currentTimeMillis() < expires;
+    }
+
+    private static long expires(URI uri) {
+      // oracle download urls carry an AuthParam=<expiry epoch seconds>_<signature>
+      String q = uri.getRawQuery();
+      if (q != null) {
+        for (String p : StringUtils.split(q, '&')) {
+          if (p.startsWith("AuthParam=")) {
+            int u = p.indexOf('_');
+            try {
+              // leave some room for the download to actually start
+              return Long.parseLong(p.substring(10, u == -1 ? p.length() : u)) * 1000L - 30000L;
+            } catch (NumberFormatException e) {
+              break;
+            }
+          }
+        }
       }
+      return System.currentTimeMillis() + RESOLVED_TTL;
     }
-    return h.hash().toString();
   }
 
 }
@@ -0,0 +1,115 @@
+package io.takari.jdkget;
+
+import java.time.Instant;
+
+/**
+ * A completed phase of an install, with how long it took and how much it moved
+ */
+public class PhaseEvent {
+
+  public enum Phase {
+    /** Loading the catalog and selecting the release */
+    RESOLVE,
+    /** Following redirects to the actual download url, as part of downloading */
+    REDIRECT,
+    DOWNLOAD,
+    VALIDATE,
+    /** Unpacking the image, stages of multi-layered images are reported separately as well */
+    EXTRACT,
+    /** Installing the unrestricted jce policy */
+    JCE,
+    /** Rebuilding the class data sharing archive */
+    JSA
+  }
+
+  private final Phase phase;
+  private final String stage;
+  private final JdkVersion version;
+  private final Arch arch;
+  private final Instant start;
+  private final long duration;
+  private final long bytes;
+  private final long allocatedBytes;
+  private final boolean success;
+  private final String thread;
+
+  PhaseEvent(Phase phase, String stage, JdkVersion version, Arch arch, Instant start, long duration, long bytes, long allocatedBytes, boolean success,
+      String thread) {
+    this.phase = phase;
+    this.stage = stage;
+    this.version = version;
+    this.arch = arch;
+    this.start = start;
+    this.duration = duration;
+    this.bytes = bytes;
+    this.allocatedBytes = allocatedBytes;
+    this.success = success;
+    this.thread = thread;
+  }
+
+  public Phase getPhase() {
+    return phase;
+  }
+
+  /**
+   * Part of the phase this is about, like {@code xar} or {@code cpio} for extracting an osx image, or {@code null} for
+   * the whole phase. Stages may be nested, like {@code pack200} within {@code zip}.
+   */
+  public String getStage() {
+    return stage;
+  }
+
+  /**
+   * @return the jdk, or {@code null} if not known yet
+   */
+  public JdkVersion getVersion() {
+    return version;
+  }
+
+  public Arch getArch() {
+    return arch;
+  }
+
+  public Instant getStart() {
+    return start;
+  }
+
+  /**
+   * In nanoseconds
+   */
+  public long getDuration() {
+    return duration;
+  }
+
+  /**
+   * Bytes downloaded, validated or extracted, -1 if not applicable
+   */
+  public long getBytes() {
+    return bytes;
+  }
+
+  /**
+   * Heap allocated by the thread running the phase, -1 if the JVM can't tell. Work the phase hands off to other threads
+   * isn't included.
+   */
+  public long getAllocatedBytes() {
+    return allocatedBytes;
+  }
+
+  /**
+   * Whether the phase completed, rather than failing or being interrupted
+   */
+  public boolean isSuccess() {
+    return success;
+  }
+
+  public String getThread() {
+    return thread;
+  }
+
+  @Override
+  public String toString() {
+    return phase + (stage != null ? "/" + stage : "") + " " + (duration / 1000000) + "ms" + (bytes != -1 ? " " + bytes + " bytes" : "") + (success ? "" : " failed");
+  }
+
+}
@@ -0,0 +1,90 @@
+package io.takari.jdkget;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.Instant;
+
+import io.takari.jdkget.PhaseEvent.Phase;
+
+/**
+ * Times a phase from creation until closed and reports it to a listener. Phases not marked as succeeded by then are
+ * reported as failed. Does nothing without a listener.
+ */
+public class PhaseTimer implements AutoCloseable {
+
+  private static final com.sun.management.ThreadMXBean threads = allocationCounter();
+
+  private final IPhaseListener listener;
+  private final Phase phase;
+  private final String stage;
+  private final JdkVersion version;
+  private final Arch arch;
+  private final Instant start;
+  private final long startTime;
+  private final long startAllocated;
+  private long bytes = -1;
+  private boolean success;
+  private boolean closed;
+
+  PhaseTimer(IPhaseListener listener, Phase phase, String stage, JdkVersion version, Arch arch) {
+    this.listener = listener;
+    this.phase = phase;
+    this.stage = stage;
+    this.version = version;
+    this.arch = arch;
+    if (listener != null) {
+      start = Instant.now();
+      startAllocated = allocated();
+      startTime = System.nanoTime();
+    } else {
+      start = null;
+      startAllocated = -1;
+      startTime = 0;
+    }
+  }
+
+  private static com.sun.management.ThreadMXBean allocationCounter() {
+    try {
+      ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+      if (bean instanceof com.sun.management.ThreadMXBean) {
+        com.sun.management.ThreadMXBean b = (com.sun.management.ThreadMXBean) bean;
+        if (b.isThreadAllocatedMemorySupported() && b.isThreadAllocatedMemoryEnabled()) {
+          return b;
+        }
+      }
+    } catch (LinkageError | UnsupportedOperationException e) {
+      // not a hotspot jvm
+    }
+    return null;
+  }
+
+  private static long allocated() {
+    return threads != null ? threads.getThreadAllocatedBytes(Thread.currentThread().getId()) : -1;
+  }
+
+  public PhaseTimer bytes(long bytes) {
+    this.bytes = bytes;
+    return this;
+  }
+
+  public PhaseTimer addBytes(long bytes) {
+    this.bytes = this.bytes == -1 ? bytes : this.bytes + bytes;
+    return this;
+  }
+
+  public void succeeded() {
+    success = true;
+  }
+
+  @Override
+  public void close() {
+    if (listener == null || closed) {
+      return;
+    }
+    closed = true;
+    long duration = System.nanoTime() - startTime;
+    long allocated = startAllocated != -1 ? allocated() - startAllocated : -1;
+    listener.phaseCompleted(new PhaseEvent(phase, stage, version, arch, start, duration, bytes, allocated, success, Thread.currentThread().getName()));
+  }
+
+}
@@ -0,0 +1,31 @@
+package io.takari.jdkget;
+
+/**
+ * Tags every message, so output of concurrent operations can be told apart
+ */
+class PrefixedOutput implements IOutput {
+
+  private final IOutput output;
+  private final String prefix;
+
+  PrefixedOutput(IOutput output, String prefix) {
+    this.output = output;
+    this.prefix = prefix + ": ";
+  }
+
+  @Override
+  public void info(String message) {
+    output.info(prefix + message);
+  }
+
+  @Override
+  public void error(String message) {
+    output.error(prefix + message);
+  }
+
+  @Override
+  public void error(String message, Throwable t) {
+    output.error(prefix + message, t);
+  }
+
+}
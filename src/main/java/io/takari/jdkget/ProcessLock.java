@@ -0,0 +1,150 @@
+package io.takari.jdkget;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.FileLockInterruptionException;
+import java.nio.file.StandardOpenOption;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Exclusive lock on a lock file, held against other threads of this JVM as well as other processes. File locks are
+ * per process, so threads are kept apart with an in-JVM lock taken first. The lock file can carry a few properties
+ * describing whatever it protects.
+ */
+class ProcessLock implements Closeable {
+
+  private static final ConcurrentMap<String, ReentrantLock> jvmLocks = new ConcurrentHashMap<>();
+
+  private final File file;
+  private final ReentrantLock jvmLock;
+  private final FileChannel channel;
+  private final FileLock lock;
+
+  private ProcessLock(File file, ReentrantLock jvmLock, FileChannel channel, FileLock lock) {
+    this.file = file;
+    this.jvmLock = jvmLock;
+    this.channel = channel;
+    this.lock = lock;
+  }
+
+  /**
+   * Blocks until the lock is ours, to be closed by the same thread
+   */
+  public static ProcessLock acquire(File file, IOutput output) throws IOException, InterruptedException {
+    file = prepare(file);
+    ReentrantLock jvmLock = jvmLocks.computeIfAbsent(file.getCanonicalPath(), k -> new ReentrantLock());
+    if (!jvmLock.tryLock()) {
+      output.info("Waiting for another thread holding " + file);
+      jvmLock.lockInterruptibly();
+    }
+
+    FileChannel channel = null;
+    try {
+      channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+      FileLock lock = channel.tryLock();
+      if (lock == null) {
+        output.info("Waiting for another process holding " + file);
+        lock = channel.lock();
+      }
+      return new ProcessLock(file, jvmLock, channel, lock);
+    } catch (ClosedByInterruptException | FileLockInterruptionException e) {
+      Thread.interrupted();
+      jvmLock.unlock();
+      throw new InterruptedException();
+    } catch (IOException | RuntimeException e) {
+      if (channel != null) {
+        channel.close();
+      }
+      jvmLock.unlock();
+      throw e;
+    }
+  }
+
+  /**
+   * The lock if nobody else is holding it, {@code null} otherwise, without waiting
+   */
+  public static ProcessLock tryAcquire(File file) throws IOException {
+    file = prepare(file);
+    ReentrantLock jvmLock = jvmLocks.computeIfAbsent(file.getCanonicalPath(), k -> new ReentrantLock());
+    if (!jvmLock.tryLock()) {
+      return null;
+    }
+    if (jvmLock.getHoldCount() > 1) {
+      // this thread holds it already, and the file lock can't be taken twice
+      jvmLock.unlock();
+      return null;
+    }
+
+    FileChannel channel = null;
+    try {
+      channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+      FileLock lock = channel.tryLock();
+      if (lock == null) {
+        channel.close();
+        jvmLock.unlock();
+        return null;
+      }
+      return new ProcessLock(file, jvmLock, channel, lock);
+    } catch (IOException | RuntimeException e) {
+      if (channel != null) {
+        channel.close();
+      }
+      jvmLock.unlock();
+      throw e;
+    }
+  }
+
+  private static File prepare(File file) throws IOException {
+    file = file.getAbsoluteFile();
+    File parent = file.getParentFile();
+    if (parent != null && !parent.isDirectory() && !parent.mkdirs() && !parent.isDirectory()) {
+      throw new IOException("Cannot create directory " + parent);
+    }
+    return file;
+  }
+
+  public File getFile() {
+    return file;
+  }
+
+  public Properties read() throws IOException {
+    ByteBuffer buf = ByteBuffer.allocate((int) channel.size());
+    while (buf.hasRemaining() && channel.read(buf, buf.position()) != -1) {
+    }
+    Properties props = new Properties();
+    props.load(new ByteArrayInputStream(buf.array(), 0, buf.position()));
+    return props;
+  }
+
+  public void write(Properties props) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    props.store(out, null);
+    ByteBuffer buf = ByteBuffer.wrap(out.toByteArray());
+    channel.truncate(0);
+    while (buf.hasRemaining()) {
+      channel.write(buf, buf.position());
+    }
+    channel.force(false);
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      lock.release();
+      channel.close();
+    } finally {
+      jvmLock.unlock();
+    }
+  }
+
+}
@@ -0,0 +1,356 @@
+package io.takari.jdkget;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.http.HttpHeaders;
+
+import io.takari.jdkget.JdkReleases.JCE;
+import io.takari.jdkget.JdkReleases.JdkBinary;
+import io.takari.jdkget.JdkReleases.JdkRelease;
+
+/**
+ * The release catalog as last fetched from the remote, served stale while a fresh copy is fetched in the background.
+ * Every fetch is kept in a compact binary snapshot on disk, which is what the next JVM starts with instead of parsing
+ * the xml again, and the remote is only asked whether its copy changed since, by its ETag.
+ * <p>
+ * Until there is a snapshot the built-in catalog is served.
+ */
+class ReleaseCatalog {
+
+  private static final int MAGIC = 0x4a444b52; // JDKR
+  private static final int FORMAT = 2;
+
+  private static final int TIMEOUT_VALUE = 10000;
+  private static final long RETRY_INTERVAL = 10L * 60L * 1000L; // after a failed fetch
+
+  private static class Snapshot {
+    final JdkReleases releases;
+    final String etag;
+    final String lastModified;
+    final long fetched;
+
+    Snapshot(JdkReleases releases, String etag, String lastModified, long fetched) {
+      this.releases = releases;
+      this.etag = etag;
+      this.lastModified = lastModified;
+      this.fetched = fetched;
+    }
+  }
+
+  private final String url;
+  private final File snapshotFile;
+  private final long maxAge;
+
+  private final Object mutex = new Object();
+  private volatile Snapshot current;
+  private volatile long nextCheck;
+  private final AtomicReference<CompletableFuture<JdkReleases>> refreshing = new AtomicReference<>();
+
+  ReleaseCatalog(String url, File snapshotFile, long maxAge) {
+    this.url = url;
+    this.snapshotFile = snapshotFile;
+    this.maxAge = maxAge;
+  }
+
+  static File defaultSnapshotFile() {
+    return new File(System.getProperty("user.home"), ".jdkget/jdkreleases.bin");
+  }
+
+  /**
+   * The freshest catalog at hand, never waiting on the remote. Starts a refresh if it's older than the max age.
+   */
+  JdkReleases get(IOutput output) throws IOException {
+    Snapshot s = snapshot(output);
+    if (isStale(s)) {
+      refreshAsync(output);
+    }
+    return s.releases;
+  }
+
+  /**
+   * Like {@link #get(IOutput)}, but waits for the remote when there's no snapshot yet or it's older than the max age.
+   * For short-lived processes, which would be gone before a background refresh got anywhere.
+   */
+  JdkReleases getFresh(IOutput output) throws IOException {
+    Snapshot s = snapshot(output);
+    return isStale(s) ? refresh(output) : s.releases;
+  }
+
+  private Snapshot snapshot(IOutput output) throws IOException {
+    Snapshot s = current;
+    if (s == null) {
+      synchronized (mutex) {
+        if ((s = current) == null) {
+          current = s = load(output);
+        }
+      }
+    }
+    return s;
+  }
+
+  private boolean isStale(Snapshot s) {
+    long now = System.currentTimeMillis();
+    return now - s.fetched >= maxAge && now >= nextCheck;
+  }
+
+  /**
+   * Fetches the remote catalog, or joins the fetch already under way, and waits for it
+   *
+   * @return the catalog afterwards, which is the one we had if the remote couldn't be reached
+   */
+  JdkReleases refresh(IOutput output) throws IOException {
+    snapshot(output);
+    try {
+      return refreshAsync(output).get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return current.releases;
+    } catch (ExecutionException e) {
+      return current.releases;
+    }
+  }
+
+  private CompletableFuture<JdkReleases> refreshAsync(IOutput output) {
+    CompletableFuture<JdkReleases> f = new CompletableFuture<>();
+    while (true) {
+      CompletableFuture<JdkReleases> running = refreshing.get();
+      if (running != null && !running.isDone()) {
+        return running;
+      }
+      // a finished one is about to be cleared, but asking again means wanting a new fetch
+      if (refreshing.compareAndSet(running, f)) {
+        break;
+      }
+    }
+
+    Thread t = new Thread(() -> {
+      Snapshot s = current;
+      try {
+        s = fetch(s);
+        current = s;
+        try {
+          save(s);
+        } catch (IOException e) {
+          output.error("Warning: Unable to save the jdk release list to " + snapshotFile + ": " + e.getMessage());
+        }
+      } catch (Exception e) {
+        nextCheck = System.currentTimeMillis() + RETRY_INTERVAL;
+        output.error("Warning: Unable to retreive jdkreleases.xml from " + url + ". Using the one from " + //
+            (s.fetched > 0 ? String.format("%tF %<tR", s.fetched) : "the build") + ": " + e);
+      } finally {
+        // callers that joined this refresh see its result before a new one can start
+        f.complete(s.releases);
+        refreshing.compareAndSet(f, null);
+      }
+    }, "jdkget-catalog");
+    t.setDaemon(true);
+    t.start();
+    return f;
+  }
+
+  private Snapshot load(IOutput output) throws IOException {
+    if (snapshotFile.isFile()) {
+      try {
+        return read(Files.readAllBytes(snapshotFile.toPath()));
+      } catch (IOException | RuntimeException e) {
+        // written by another version, or broken; it gets replaced with the next fetch
+        output.error("Warning: Ignoring unreadable jdk release list " + snapshotFile);
+      }
+    }
+    return new Snapshot(JdkReleases.readFromClasspath(), null, null, 0L);
+  }
+
+  private Snapshot fetch(Snapshot s) throws IOException {
+    HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+    conn.setAllowUserInteraction(false);
+    conn.setDoInput(true);
+    conn.setDoOutput(false);
+    conn.setUseCaches(false);
+    conn.setRequestMethod("GET");
+    conn.setConnectTimeout(TIMEOUT_VALUE);
+    conn.setReadTimeout(TIMEOUT_VALUE);
+    if (s.etag != null) {
+      conn.setRequestProperty(HttpHeaders.IF_NONE_MATCH, s.etag);
+    }
+    if (s.lastModified != null) {
+      conn.setRequestProperty(HttpHeaders.IF_MODIFIED_SINCE, s.lastModified);
+    }
+    try {
+      int code = conn.getResponseCode();
+      if (code == HttpURLConnection.HTTP_NOT_MODIFIED) {
+        return new Snapshot(s.releases, s.etag, s.lastModified, System.currentTimeMillis());
+      }
+      if (code != HttpURLConnection.HTTP_OK) {
+        throw new IOException("Unexpected response " + code + " " + conn.getResponseMessage());
+      }
+      try (InputStream in = conn.getInputStream()) {
+        JdkReleases rels = JdkReleases.read(in);
+        return new Snapshot(rels, conn.getHeaderField(HttpHeaders.ETAG), conn.getHeaderField(HttpHeaders.LAST_MODIFIED), System.currentTimeMillis());
+      }
+    } finally {
+      conn.disconnect();
+    }
+  }
+
+  private void save(Snapshot s) throws IOException {
+    File dir = snapshotFile.getAbsoluteFile().getParentFile();
+    if (!dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory()) {
+      throw new IOException("Cannot create directory " + dir);
+    }
+    // other processes may be saving theirs at the same time
+    File tmp = File.createTempFile(snapshotFile.getName(), ".tmp", dir);
+    try {
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+        write(s, out);
+      }
+      DownloadState.move(tmp, snapshotFile);
+    } finally {
+      tmp.delete();
+    }
+  }
+
+  /**
+   * Writes {@code rels} in the snapshot format, for {@link #readSnapshot(InputStream)} to read back without parsing xml
+   */
+  static void writeSnapshot(JdkReleases rels, OutputStream out) throws IOException {
+    DataOutputStream dout = new DataOutputStream(new BufferedOutputStream(out));
+    write(new Snapshot(rels, null, null, 0L), dout);
+    dout.flush();
+  }
+
+  static JdkReleases readSnapshot(InputStream in) throws IOException {
+    return read(IOUtils.toByteArray(in)).releases;
+  }
+
+  /*
+   * All strings go into a table up front, each one once, as a single block of utf-8 which decodes in one go. The rest
+   * refers to them by index, -1 for none.
+   */
+  private static void write(Snapshot s, DataOutputStream out) throws IOException {
+    JdkReleases rels = s.releases;
+    Map<String, Integer> strings = new LinkedHashMap<>();
+    index(strings, s.etag);
+    index(strings, s.lastModified);
+    for (JCE jce : rels.getJCEs()) {
+      index(strings, jce.getPath());
+    }
+    for (JdkRelease rel : rels.getReleases()) {
+      index(strings, rel.getVersion().shortBuild());
+      for (Arch arch : rel.getArchs()) {
+        JdkBinary bin = rel.getBinary(arch);
+        index(strings, arch.name());
+        index(strings, bin.getPath());
+        index(strings, bin.getMd5());
+        index(strings, bin.getSha256());
+      }
+    }
+
+    out.writeInt(MAGIC);
+    out.writeInt(FORMAT);
+    out.writeLong(s.fetched);
+
+    StringBuilder sb = new StringBuilder();
+    out.writeInt(strings.size());
+    for (String str : strings.keySet()) {
+      out.writeInt(str.length());
+      sb.append(str);
+    }
+    byte[] utf8 = sb.toString().getBytes(StandardCharsets.UTF_8);
+    out.writeInt(utf8.length);
+    out.write(utf8);
+
+    out.writeInt(index(strings, s.etag));
+    out.writeInt(index(strings, s.lastModified));
+    out.writeInt(rels.getJCEs().size());
+    for (JCE jce : rels.getJCEs()) {
+      out.writeInt(jce.getMajorVersion());
+      out.writeInt(index(strings, jce.getPath()));
+    }
+    out.writeInt(rels.getReleases().size());
+    for (JdkRelease rel : rels.getReleases()) {
+      out.writeInt(index(strings, rel.getVersion().shortBuild()));
+      out.writeBoolean(rel.isPsu());
+      out.writeInt(rel.getArchs().size());
+      for (Arch arch : rel.getArchs()) {
+        JdkBinary bin = rel.getBinary(arch);
+        out.writeInt(index(strings, arch.name()));
+        out.writeInt(index(strings, bin.getPath()));
+        out.writeInt(index(strings, bin.getMd5()));
+        out.writeInt(index(strings, bin.getSha256()));
+        out.writeLong(bin.getSize());
+      }
+    }
+  }
+
+  private static int index(Map<String, Integer> strings, String s) {
+    if (s == null) {
+      return -1;
+    }
+    Integer i = strings.get(s);
+    if (i == null) {
+      strings.put(s, i = strings.size());
+    }
+    return i;
+  }
+
+  private static Snapshot read(byte[] data) throws IOException {
+    ByteBuffer in = ByteBuffer.wrap(data);
+    if (data.length < 8 || in.getInt() != MAGIC || in.getInt() != FORMAT) {
+      throw new IOException("Not a jdk release list snapshot");
+    }
+    long fetched = in.getLong();
+
+    String[] strings = new String[in.getInt()];
+    int[] lengths = new int[strings.length];
+    for (int i = 0; i < lengths.length; i++) {
+      lengths[i] = in.getInt();
+    }
+    int size = in.getInt();
+    String all = new String(data, in.position(), size, StandardCharsets.UTF_8);
+    in.position(in.position() + size);
+    for (int i = 0, off = 0; i < strings.length; off += lengths[i++]) {
+      strings[i] = all.substring(off, off + lengths[i]);
+    }
+
+    String etag = string(strings, in.getInt());
+    String lastModified = string(strings, in.getInt());
+
+    JdkReleases.Builder b = JdkReleases.newBuilder();
+    for (int i = in.getInt(); i > 0; i--) {
+      b.addJCE(in.getInt(), string(strings, in.getInt()));
+    }
+    for (int i = in.getInt(); i > 0; i--) {
+      String version = string(strings, in.getInt());
+      if (in.get() != 0) {
+        b.setPSU(version);
+      }
+      for (int j = in.getInt(); j > 0; j--) {
+        Arch arch = Arch.valueOf(string(strings, in.getInt()));
+        b.addBinary(version, arch, string(strings, in.getInt()), string(strings, in.getInt()), string(strings, in.getInt()), in.getLong());
+      }
+    }
+    return new Snapshot(b.build(), etag, lastModified, fetched);
+  }
+
+  private static String string(String[] strings, int i) {
+    return i == -1 ? null : strings[i];
+  }
+
+}
@@ -0,0 +1,39 @@
+package io.takari.jdkget;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Precompiles the built-in release list at build time into the binary snapshot format, which
+ * {@link JdkReleases#readFromClasspath()} reads without any xml parsing. Run by the build with the xml and the
+ * compiled file as arguments.
+ */
+public class ReleaseListCompiler {
+
+  static final String XML = "jdkreleases.xml";
+  static final String COMPILED = "jdkreleases.bin";
+
+  public static void main(String[] args) throws IOException {
+    // runs inside the build's JVM, so fail the build rather than exiting it
+    if (args.length != 2) {
+      throw new IllegalArgumentException("Usage: ReleaseListCompiler <jdkreleases.xml> <jdkreleases.bin>");
+    }
+    compile(new File(args[0]), new File(args[1]));
+  }
+
+  static JdkReleases compile(File xml, File compiled) throws IOException {
+    JdkReleases rels;
+    try (InputStream in = new FileInputStream(xml)) {
+      rels = new JdkReleasesParser().parse(in);
+    }
+    try (OutputStream out = new FileOutputStream(compiled)) {
+      ReleaseCatalog.writeSnapshot(rels, out);
+    }
+    return rels;
+  }
+
+}
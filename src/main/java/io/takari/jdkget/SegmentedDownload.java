@@ -0,0 +1,217 @@
+package io.takari.jdkget;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.http.Header;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import com.google.common.base.Throwables;
+import io.takari.jdkget.DownloadState.Range;
+
+/**
+ * Fetches the pending byte ranges of a {@link DownloadState} over parallel connections, writing each range at its
+ * offset into a preallocated file.
+ */
+class SegmentedDownload {
+
+  static final long MIN_SEGMENT_SIZE = 1024L * 1024L;
+
+  private static final int SEGMENT_RETRIES = 3;
+
+  private final CloseableHttpClient client;
+  private final URI uri;
+  private final DownloadState state;
+  private final Throttle throttle;
+  private final Hedging hedging;
+  private final IOutput output;
+
+  private final AtomicLong copiedBytes = new AtomicLong();
+
+  /**
+   * @param throttle bandwidth limit to obey, or {@code null}
+   * @param hedging hedging of slow requests, or {@code null}
+   */
+  SegmentedDownload(CloseableHttpClient client, URI uri, DownloadState state, Throttle throttle, Hedging hedging, IOutput output) {
+    this.client = client;
+    this.uri = uri;
+    this.state = state;
+    this.throttle = throttle;
+    this.hedging = hedging;
+    this.output = output;
+  }
+
+  /**
+   * Number of segments worth using for a resource of the given length, never more than requested and never less
+   * than {@link #MIN_SEGMENT_SIZE} per segment.
+   */
+  static int segmentsFor(long length, int requested) {
+    if (length <= 0) {
+      return 1;
+    }
+    return (int) Math.max(1, Math.min(requested, length / MIN_SEGMENT_SIZE));
+  }
+
+  public void download() throws IOException, InterruptedException {
+    List<Range> pending = new ArrayList<>();
+    for (Range r : state.getRanges()) {
+      if (!r.isComplete()) {
+        pending.add(r);
+      }
+    }
+    if (pending.size() > 1) {
+      output.info("Downloading in " + pending.size() + " segments");
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(pending.size());
+    try (FileChannel channel = state.openChannel()) {
+      List<Future<?>> futures = new ArrayList<>();
+      for (Range r : pending) {
+        futures.add(executor.submit(() -> {
+          fetch(channel, r);
+          return null;
+        }));
+      }
+
+      await(futures);
+    } finally {
+      executor.shutdownNow();
+      state.save();
+    }
+  }
+
+  private void await(List<Future<?>> futures) throws IOException, InterruptedException {
+    long start = System.currentTimeMillis();
+    long total = state.remaining();
+    try {
+      for (Future<?> f : futures) {
+        while (true) {
+          try {
+            f.get(Util.PROGRESS_FREQ, TimeUnit.MILLISECONDS);
+            break;
+          } catch (TimeoutException e) {
+            output.printProgress(System.currentTimeMillis() - start, copiedBytes.get(), total);
+            state.save();
+          }
+        }
+      }
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      Throwables.propagateIfPossible(cause, IOException.class, InterruptedException.class);
+      throw Throwables.propagate(cause);
+    } finally {
+      for (Future<?> f : futures) {
+        f.cancel(true);
+      }
+    }
+  }
+
+  private void fetch(FileChannel channel, Range range) throws IOException, InterruptedException {
+    DownloadSink sink = new DownloadSink(channel, throttle, null);
+    long end = range.end;
+    int failures = 0;
+    while (range.pos < end) {
+      long pos = range.pos;
+      try (CloseableHttpResponse res = openRange(client, hedging, uri, pos, end, state.ifRange(), output)) {
+        InputStream body = res.getEntity().getContent();
+        if (hedging != null) {
+          body = hedging.monitor(res, body, pos, p -> openRange(client, null, uri, p, end, state.ifRange(), output), output);
+        }
+        try (InputStream in = body) {
+          pos = sink.transfer(in, pos, end, (p, bytes) -> {
+            range.pos = p;
+            copiedBytes.addAndGet(bytes);
+          });
+        }
+        if (pos < end) {
+          throw new IOException("Premature end of segment at " + pos + " of " + range.start + "-" + end);
+        }
+      } catch (IOException e) {
+        if (e instanceof ClosedChannelException) {
+          // channel closed by an interrupt, the whole download is being cancelled
+          throw e;
+        }
+        if (++failures > SEGMENT_RETRIES) {
+          throw e;
+        }
+        output.error("Error downloading segment " + range.start + "-" + end + ": " + e + ", resuming from " + range.pos);
+      }
+    }
+  }
+
+  /**
+   * Requests bytes from {@code from} up to {@code end} (exclusive, -1 for the rest of the content), making sure that's
+   * what the response has
+   */
+  static CloseableHttpResponse openRange(CloseableHttpClient client, Hedging hedging, URI uri, long from, long end, String ifRange, IOutput output)
+      throws IOException, InterruptedException {
+    HttpGet req = new HttpGet(uri);
+    req.setHeader(HttpHeaders.RANGE, "bytes=" + from + "-" + (end != -1 ? Long.toString(end - 1) : ""));
+    if (ifRange != null) {
+      req.setHeader(HttpHeaders.IF_RANGE, ifRange);
+    }
+    CloseableHttpResponse res = hedging != null ? hedging.execute(client, req, output) : client.execute(req);
+    int code = res.getStatusLine().getStatusCode();
+    if (code != 206) {
+      res.close();
+      throw new IOException("Server responded with " + code + ": " + res.getStatusLine().getReasonPhrase() + " to a range request");
+    }
+    if (contentRangeStart(res) != from) {
+      res.close();
+      throw new IOException("Server responded with unexpected range " + res.getFirstHeader(HttpHeaders.CONTENT_RANGE));
+    }
+    return res;
+  }
+
+  /**
+   * First byte position of a {@code Content-Range: bytes <first>-<last>/<length>} header, -1 if absent or malformed
+   */
+  static long contentRangeStart(HttpResponse res) {
+    Header h = res.getFirstHeader(HttpHeaders.CONTENT_RANGE);
+    if (h == null) {
+      return -1;
+    }
+    String v = h.getValue().trim();
+    if (!v.startsWith("bytes ")) {
+      return -1;
+    }
+    int dash = v.indexOf('-');
+    try {
+      return dash == -1 ? -1 : Long.parseLong(v.substring(6, dash).trim());
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  /**
+   * Complete length of a {@code Content-Range: bytes <first>-<last>/<length>} header, -1 if absent or unknown
+   */
+  static long contentRangeLength(HttpResponse res) {
+    Header h = res.getFirstHeader(HttpHeaders.CONTENT_RANGE);
+    if (h == null) {
+      return -1;
+    }
+    String v = h.getValue();
+    int slash = v.indexOf('/');
+    try {
+      return slash == -1 ? -1 : Long.parseLong(v.substring(slash + 1).trim());
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+}
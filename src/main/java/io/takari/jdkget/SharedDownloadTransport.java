@@ -0,0 +1,107 @@
+package io.takari.jdkget;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.commons.io.FileUtils;
+
+import com.google.common.base.Throwables;
+
+/**
+ * Downloads every jdk image and jce zip once for all the installs using it, each getting a link or copy of the one
+ * download. Images of the same jdk are the same no matter where they get installed, and the jce zip is the same for a
+ * whole major version.
+ */
+class SharedDownloadTransport implements ITransport {
+
+  interface Download {
+    void to(File file) throws IOException, InterruptedException;
+  }
+
+  private final ITransport transport;
+  private final File dir;
+  private final ConcurrentMap<String, CompletableFuture<File>> downloads = new ConcurrentHashMap<>();
+
+  /**
+   * @param dir where to keep the downloads, ideally on the same file system as the installs so they can be linked
+   */
+  SharedDownloadTransport(ITransport transport, File dir) {
+    this.transport = transport;
+    this.dir = dir;
+  }
+
+  @Override
+  public File getImageFile(JdkContext context, File parent) throws IOException {
+    return transport.getImageFile(context, parent);
+  }
+
+  @Override
+  public void downloadJdk(JdkContext context, File jdkImage) throws IOException, InterruptedException {
+    String name = context.getVersion().longBuild() + "-" + context.getArch().name() + "-" + jdkImage.getName();
+    File shared = shared(name, context, f -> {
+      transport.downloadJdk(context, f);
+      if (!f.isFile()) {
+        throw new IOException("Transport failed to download jdk image");
+      }
+      Util.checkInterrupt();
+      if (!transport.validate(context, f)) {
+        FileUtils.deleteQuietly(f);
+        throw new IOException("Transport downloaded invalid image");
+      }
+    });
+    Util.linkOrCopy(shared, jdkImage);
+  }
+
+  @Override
+  public void downloadJce(JdkContext context, File jceImage) throws IOException, InterruptedException {
+    File shared = shared("jce-" + context.getVersion().major + ".zip", context, f -> {
+      transport.downloadJce(context, f);
+      if (!f.isFile()) {
+        throw new IOException("Transport failed to download jce policy");
+      }
+    });
+    Util.linkOrCopy(shared, jceImage);
+  }
+
+  @Override
+  public boolean validate(JdkContext context, File jdkImage) throws IOException, InterruptedException {
+    return transport.validate(context, jdkImage);
+  }
+
+  private File shared(String name, JdkContext context, Download download) throws IOException, InterruptedException {
+    while (true) {
+      CompletableFuture<File> mine = new CompletableFuture<>();
+      CompletableFuture<File> theirs = downloads.putIfAbsent(name, mine);
+      if (theirs == null) {
+        File file = new File(dir, name);
+        try {
+          download.to(file);
+        } catch (Throwable t) {
+          // whoever asks next tries again
+          downloads.remove(name, mine);
+          mine.completeExceptionally(t);
+          throw t;
+        }
+        mine.complete(file);
+        return file;
+      }
+
+      context.getOutput().info("Waiting for " + name + " being downloaded for another install");
+      try {
+        return theirs.get();
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof InterruptedException) {
+          continue;
+        }
+        Throwables.propagateIfPossible(cause, IOException.class);
+        throw Throwables.propagate(cause);
+      }
+    }
+  }
+
+}
@@ -0,0 +1,362 @@
+package io.takari.jdkget;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.URI;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.http.HttpHeaders;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+
+import com.google.common.base.Throwables;
+
+import io.takari.jdkget.DownloadState.Range;
+
+/**
+ * Fetches the pending ranges of a {@link DownloadState} from several sources at once. Every source gets its own workers
+ * pulling ranges off a shared queue, so faster sources end up serving more of them. A range that fails on one source is
+ * put back for the others to pick up.
+ */
+class StripedDownload {
+
+  // consecutive failures after which a source is not used anymore
+  private static final int SOURCE_FAILURES = 3;
+
+  static class Source {
+    final String name;
+    final URI uri;
+    volatile boolean dead;
+    private int failures;
+
+    final AtomicInteger ranges = new AtomicInteger();
+    final AtomicLong bytes = new AtomicLong();
+    final AtomicLong nanos = new AtomicLong();
+
+    Source(String name, URI uri) {
+      this.name = name;
+      this.uri = uri;
+    }
+
+    double throughput() {
+      long n = nanos.get();
+      return n > 0 ? (double) bytes.get() / n : 0;
+    }
+
+    @Override
+    public String toString() {
+      return name;
+    }
+  }
+
+  private static class Chunk {
+    final Range range;
+    final Set<Source> failedOn = new HashSet<>();
+    final Set<Source> servedBy = ConcurrentHashMap.newKeySet();
+
+    Chunk(Range range) {
+      this.range = range;
+    }
+
+    @Override
+    public String toString() {
+      return range.start + "-" + range.end;
+    }
+  }
+
+  private final CloseableHttpClient client;
+  private final List<Source> sources;
+  private final DownloadState state;
+  private final int connectionsPerSource;
+  private final Throttle throttle;
+  private final IOutput output;
+
+  private final List<Chunk> chunks = new ArrayList<>();
+  private final LinkedList<Chunk> pending = new LinkedList<>();
+  private int inFlight;
+  private IOException failure;
+
+  private final AtomicLong copiedBytes = new AtomicLong();
+
+  /**
+   * @param throttle bandwidth limit to obey, or {@code null}
+   */
+  StripedDownload(CloseableHttpClient client, List<Source> sources, DownloadState state, int connectionsPerSource, Throttle throttle, IOutput output) {
+    this.client = client;
+    this.sources = sources;
+    this.state = state;
+    this.connectionsPerSource = connectionsPerSource;
+    this.throttle = throttle;
+    this.output = output;
+    for (Range r : state.getRanges()) {
+      Chunk c = new Chunk(r);
+      chunks.add(c);
+      if (!r.isComplete()) {
+        pending.add(c);
+      }
+    }
+  }
+
+  public void download() throws IOException, InterruptedException {
+    output.info("Downloading " + pending.size() + " ranges from " + sources.size() + " sources");
+
+    ExecutorService executor = Executors.newFixedThreadPool(sources.size() * connectionsPerSource);
+    try (FileChannel channel = state.openChannel()) {
+      List<Future<?>> futures = new ArrayList<>();
+      for (Source s : sources) {
+        for (int i = 0; i < connectionsPerSource; i++) {
+          futures.add(executor.submit(() -> {
+            work(channel, s);
+            return null;
+          }));
+        }
+      }
+
+      await(futures);
+    } finally {
+      executor.shutdownNow();
+      state.save();
+    }
+
+    synchronized (this) {
+      if (failure != null) {
+        throw failure;
+      }
+    }
+    if (!state.isComplete()) {
+      throw new IOException("Download incomplete, no usable sources left");
+    }
+
+    for (Source s : sources) {
+      long ms = TimeUnit.NANOSECONDS.toMillis(s.nanos.get());
+      output.info("  " + s + ": " + s.ranges.get() + " ranges, " + FileUtils.byteCountToDisplaySize(s.bytes.get()) //
+          + (ms > 0 ? " at " + FileUtils.byteCountToDisplaySize(s.bytes.get() * 1000L / ms) + "/s" : ""));
+    }
+  }
+
+  private void await(List<Future<?>> futures) throws IOException, InterruptedException {
+    long start = System.currentTimeMillis();
+    long total = state.remaining();
+    try {
+      for (Future<?> f : futures) {
+        while (true) {
+          try {
+            f.get(Util.PROGRESS_FREQ, TimeUnit.MILLISECONDS);
+            break;
+          } catch (TimeoutException e) {
+            output.printProgress(System.currentTimeMillis() - start, copiedBytes.get(), total);
+            state.save();
+          }
+        }
+      }
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      Throwables.propagateIfPossible(cause, IOException.class, InterruptedException.class);
+      throw Throwables.propagate(cause);
+    } finally {
+      for (Future<?> f : futures) {
+        f.cancel(true);
+      }
+    }
+  }
+
+  private void work(FileChannel channel, Source s) throws IOException, InterruptedException {
+    DownloadSink sink = new DownloadSink(channel, throttle, null);
+    Chunk c;
+    while ((c = take(s)) != null) {
+      boolean ok = false;
+      try {
+        fetch(sink, s, c);
+        ok = true;
+      } catch (ClosedChannelException e) {
+        // channel closed by an interrupt, the whole download is being cancelled
+        throw e;
+      } catch (IOException e) {
+        output.error("Error downloading range " + c + " from " + s + ": " + e);
+      } finally {
+        done(s, c, ok);
+      }
+    }
+  }
+
+  private synchronized Chunk take(Source s) throws InterruptedException {
+    while (failure == null && !s.dead) {
+      for (Iterator<Chunk> it = pending.iterator(); it.hasNext();) {
+        Chunk c = it.next();
+        if (!c.failedOn.contains(s)) {
+          it.remove();
+          inFlight++;
+          return c;
+        }
+      }
+      if (pending.isEmpty() && inFlight == 0) {
+        return null;
+      }
+      wait();
+    }
+    return null;
+  }
+
+  private synchronized void done(Source s, Chunk c, boolean ok) {
+    inFlight--;
+    if (ok) {
+      s.failures = 0;
+    } else {
+      c.failedOn.add(s);
+      if (++s.failures >= SOURCE_FAILURES && !s.dead) {
+        s.dead = true;
+        output.error("Giving up on " + s + " after " + SOURCE_FAILURES + " failures in a row");
+      }
+      // retried first, it's likely holding up the end of the download
+      pending.addFirst(c);
+
+      for (Chunk p : pending) {
+        if (!isTakeable(p)) {
+          failure = new IOException("Range " + p + " failed on all sources");
+          break;
+        }
+      }
+    }
+    notifyAll();
+  }
+
+  private boolean isTakeable(Chunk c) {
+    for (Source s : sources) {
+      if (!s.dead && !c.failedOn.contains(s)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void fetch(DownloadSink sink, Source s, Chunk c) throws IOException, InterruptedException {
+    Range range = c.range;
+    long pos = range.pos;
+    long end = range.end;
+    long start = System.nanoTime();
+    try (CloseableHttpResponse res = client.execute(rangeRequest(s, pos, end))) {
+      checkRange(res, pos);
+      try (InputStream in = res.getEntity().getContent()) {
+        pos = sink.transfer(in, pos, end, (p, bytes) -> {
+          c.servedBy.add(s);
+          range.pos = p;
+          copiedBytes.addAndGet(bytes);
+          s.bytes.addAndGet(bytes);
+        });
+      }
+      if (pos < end) {
+        throw new IOException("Premature end of range at " + pos + " of " + c);
+      }
+      s.ranges.incrementAndGet();
+    } finally {
+      s.nanos.addAndGet(System.nanoTime() - start);
+    }
+  }
+
+  private static HttpGet rangeRequest(Source s, long from, long to) {
+    HttpGet req = new HttpGet(s.uri);
+    req.setHeader(HttpHeaders.RANGE, "bytes=" + from + "-" + (to - 1));
+    return req;
+  }
+
+  private static void checkRange(CloseableHttpResponse res, long from) throws IOException {
+    int code = res.getStatusLine().getStatusCode();
+    if (code != 206) {
+      throw new IOException("Server responded with " + code + ": " + res.getStatusLine().getReasonPhrase() + " to a range request");
+    }
+    if (SegmentedDownload.contentRangeStart(res) != from) {
+      throw new IOException("Server responded with unexpected range " + res.getFirstHeader(HttpHeaders.CONTENT_RANGE));
+    }
+  }
+
+  /**
+   * Compares every range {@code suspect} served (or that came from a previous attempt) with what another source has for
+   * it, replacing ranges that differ. Used when the assembled file doesn't match the catalog: a mismatch alone doesn't
+   * tell which side is wrong, so suspects are tried one after another until the file matches.
+   *
+   * @return whether anything was replaced
+   */
+  public boolean repair(Source suspect) throws IOException, InterruptedException {
+    output.info("Cross-checking ranges from " + suspect + " against other sources");
+    boolean changed = false;
+    try (RandomAccessFile raf = new RandomAccessFile(state.getPartFile(), "rw")) {
+      for (Chunk c : chunks) {
+        Util.checkInterrupt();
+        if (!c.servedBy.isEmpty() && !c.servedBy.contains(suspect)) {
+          continue;
+        }
+        // fastest one that didn't serve this range
+        Source alt = null;
+        for (Source s : sources) {
+          if (!s.dead && s != suspect && !c.servedBy.contains(s) && (alt == null || s.throughput() > alt.throughput())) {
+            alt = s;
+          }
+        }
+        if (alt == null) {
+          continue;
+        }
+
+        Range r = c.range;
+        byte[] theirs;
+        try {
+          theirs = fetchBytes(alt, r.start, r.end);
+        } catch (IOException e) {
+          output.error("Error cross-checking range " + c + " with " + alt + ": " + e);
+          continue;
+        }
+        byte[] ours = new byte[theirs.length];
+        raf.seek(r.start);
+        raf.readFully(ours);
+        if (!Arrays.equals(ours, theirs)) {
+          output.error("Range " + c + " from " + (c.servedBy.isEmpty() ? "a previous attempt" : c.servedBy) + " differs from " + alt + ", replacing it");
+          raf.seek(r.start);
+          raf.write(theirs);
+          c.servedBy.clear();
+          c.servedBy.add(alt);
+          changed = true;
+        }
+      }
+    }
+    return changed;
+  }
+
+  private byte[] fetchBytes(Source s, long from, long to) throws IOException, InterruptedException {
+    byte[] data = new byte[(int) (to - from)];
+    try (CloseableHttpResponse res = client.execute(rangeRequest(s, from, to))) {
+      checkRange(res, from);
+      try (InputStream in = res.getEntity().getContent()) {
+        int off = 0;
+        int l;
+        while (off < data.length && (l = in.read(data, off, data.length - off)) != -1) {
+          Util.checkInterrupt();
+          off += l;
+        }
+        if (off < data.length) {
+          throw new IOException("Premature end of range at " + (from + off) + " of " + from + "-" + to);
+        }
+      }
+    }
+    return data;
+  }
+
+}
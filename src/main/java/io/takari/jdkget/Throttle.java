@@ -0,0 +1,80 @@
+package io.takari.jdkget;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket shared by all downloads of a transport, keeping their combined rate under a limit.
+ */
+class Throttle {
+
+  private static final long SECOND = 1_000_000_000L;
+
+  private final long bytesPerSecond;
+  private final LongSupplier clock;
+
+  private long available;
+  private long last;
+
+  Throttle(long bytesPerSecond) {
+    this(bytesPerSecond, System::nanoTime);
+  }
+
+  /**
+   * @param clock source of {@link System#nanoTime()}-like readings
+   */
+  Throttle(long bytesPerSecond, LongSupplier clock) {
+    if (bytesPerSecond <= 0) {
+      throw new IllegalArgumentException("Bandwidth limit should be positive: " + bytesPerSecond);
+    }
+    this.bytesPerSecond = bytesPerSecond;
+    this.clock = clock;
+    this.last = clock.getAsLong();
+  }
+
+  public long getBytesPerSecond() {
+    return bytesPerSecond;
+  }
+
+  /**
+   * Accounts for {@code bytes} just transferred, sleeping for as long as it takes to get back under the limit
+   */
+  public void acquire(long bytes) throws InterruptedException {
+    long wait;
+    synchronized (this) {
+      long now = clock.getAsLong();
+      // allow bursts of up to a second worth of data, anything longer idle would only overflow
+      long elapsed = Math.min(now - last, SECOND);
+      available = Math.min(bytesPerSecond, available + elapsed * bytesPerSecond / SECOND);
+      last = now;
+      available -= bytes;
+      wait = available < 0 ? -available * SECOND / bytesPerSecond : 0;
+    }
+    if (wait > 0) {
+      TimeUnit.NANOSECONDS.sleep(wait);
+    }
+  }
+
+  public OutputStream wrap(OutputStream out) {
+    return new FilterOutputStream(out) {
+      @Override
+      public void write(int b) throws IOException {
+        write(new byte[] {(byte) b}, 0, 1);
+      }
+
+      @Override
+      public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+        try {
+          acquire(len);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    };
+  }
+
+}
@@ -1,14 +1,18 @@
 package io.takari.jdkget;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.util.concurrent.TimeUnit;
 
 public class Util {
 
   public static void copyInterruptibly(InputStream in, OutputStream out) throws IOException, InterruptedException {
-    byte[] buf = new byte[4096];
+    byte[] buf = new byte[65536];
     int l;
     while ((l = in.read(buf)) != -1) {
       checkInterrupt();
@@ -22,7 +26,7 @@ public class Util {
     }
   }
 
-  private static final long PROGRESS_FREQ = 3000L; // every 3 seconds
+  static final long PROGRESS_FREQ = 3000L; // every 3 seconds
 
   public static void copyWithProgress(InputStream in, OutputStream out, long totalHint, IOutput output) throws IOException, InterruptedException {
 
@@ -35,7 +39,7 @@ public class Util {
     }
     long copiedBytes = 0;
 
-    byte[] buf = new byte[4096];
+    byte[] buf = new byte[65536];
     int l;
     while ((l = in.read(buf)) != -1) {
       checkInterrupt();
@@ -72,4 +76,56 @@ public class Util {
     return sb.toString();
   }
 
+  /**
+   * Parses sizes like {@code 500k}, {@code 10M} or {@code 1G}
+   */
+  public static long parseSize(String size) {
+    String l = size.trim();
+    long mult = 1;
+    char unit = Character.toUpperCase(l.charAt(l.length() - 1));
+    if (unit == 'K') {
+      mult = 1024L;
+    } else if (unit == 'M') {
+      mult = 1024L * 1024L;
+    } else if (unit == 'G') {
+      mult = 1024L * 1024L * 1024L;
+    }
+    if (mult != 1) {
+      l = l.substring(0, l.length() - 1);
+    }
+    return Long.parseLong(l.trim()) * mult;
+  }
+
+  private static final long TRANSFER_CHUNK = 8L * 1024L * 1024L;
+
+  /**
+   * Puts {@code from} at {@code to} as a hard link, or copies it when they're on different file systems or there are no
+   * hard links at all
+   *
+   * @return whether it got linked
+   */
+  public static boolean linkOrCopy(File from, File to) throws IOException, InterruptedException {
+    Files.createDirectories(to.getAbsoluteFile().getParentFile().toPath());
+    Files.deleteIfExists(to.toPath());
+    try {
+      Files.createLink(to.toPath(), from.toPath());
+      return true;
+    } catch (IOException | UnsupportedOperationException e) {
+      // fall through to copying
+    }
+
+    // lets the kernel do the copying where it can, in chunks so it can be interrupted
+    try (FileChannel in = FileChannel.open(from.toPath(), StandardOpenOption.READ);
+        FileChannel out = FileChannel.open(to.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      long size = in.size();
+      long pos = 0;
+      while (pos < size) {
+        checkInterrupt();
+        pos += in.transferTo(pos, Math.min(TRANSFER_CHUNK, size - pos), out);
+      }
+    }
+    to.setLastModified(from.lastModified());
+    return false;
+  }
+
 }
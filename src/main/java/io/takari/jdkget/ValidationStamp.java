@@ -0,0 +1,145 @@
+package io.takari.jdkget;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Objects;
+import java.util.Properties;
+
+import io.takari.jdkget.JdkReleases.JdkBinary;
+
+/**
+ * Sidecar recording that an image was successfully validated, along with enough file metadata to tell whether it has
+ * been touched since. As long as the metadata still matches, the image doesn't need to be hashed again.
+ */
+class ValidationStamp {
+
+  private static final String SUFFIX = ".valid";
+
+  private final String path;
+  private final long size;
+  private final String mtime;
+  private final String inode;
+  private final String sha256;
+  private final String md5;
+
+  private ValidationStamp(String path, long size, String mtime, String inode, String sha256, String md5) {
+    this.path = path;
+    this.size = size;
+    this.mtime = mtime;
+    this.inode = inode;
+    this.sha256 = sha256;
+    this.md5 = md5;
+  }
+
+  static File stampFile(File image) {
+    return new File(image.getPath() + SUFFIX);
+  }
+
+  /**
+   * Current metadata of {@code image}, to be taken before hashing it and handed to {@link #write} afterwards
+   */
+  static ValidationStamp of(File image, JdkBinary bin) throws IOException {
+    BasicFileAttributes attrs = Files.readAttributes(image.toPath(), BasicFileAttributes.class);
+    Object fileKey = attrs.fileKey();
+    return new ValidationStamp(image.getAbsolutePath(), attrs.size(), attrs.lastModifiedTime().toString(), //
+        fileKey != null ? fileKey.toString() : null, bin.getSha256(), bin.getMd5());
+  }
+
+  /**
+   * Whether {@code image} carries a stamp showing it was validated against the digests of {@code bin} and hasn't
+   * changed since
+   */
+  static boolean isValid(File image, JdkBinary bin) {
+    File stampFile = stampFile(image);
+    if (!stampFile.isFile() || !image.isFile()) {
+      return false;
+    }
+
+    Properties props = new Properties();
+    try (InputStream in = new FileInputStream(stampFile)) {
+      props.load(in);
+      ValidationStamp stamp = new ValidationStamp(props.getProperty("path"), Long.parseLong(props.getProperty("size")), //
+          props.getProperty("mtime"), props.getProperty("inode"), props.getProperty("sha256"), props.getProperty("md5"));
+      return stamp.equals(of(image, bin));
+    } catch (IOException | RuntimeException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Records {@code image} as valid as it is now, for files whose content is known to be good without hashing them
+   */
+  static void write(File image, JdkBinary bin) {
+    try {
+      write(image, bin, of(image, bin));
+    } catch (IOException e) {
+      // gone already, nothing to stamp
+    }
+  }
+
+  /**
+   * Records {@code stamp} taken before {@code image} was hashed, unless the file has changed in the meantime and the
+   * digests might not belong to what's there now
+   */
+  static void write(File image, JdkBinary bin, ValidationStamp stamp) {
+    if (bin.getSha256() == null && bin.getMd5() == null) {
+      // nothing expensive to remember
+      return;
+    }
+
+    File stampFile = stampFile(image);
+    File tmp = new File(stampFile.getPath() + ".tmp");
+    try {
+      if (!stamp.equals(of(image, bin))) {
+        // touched while we were hashing it
+        return;
+      }
+      Properties props = new Properties();
+      props.setProperty("path", stamp.path);
+      props.setProperty("size", Long.toString(stamp.size));
+      props.setProperty("mtime", stamp.mtime);
+      if (stamp.inode != null) {
+        props.setProperty("inode", stamp.inode);
+      }
+      if (stamp.sha256 != null) {
+        props.setProperty("sha256", stamp.sha256);
+      }
+      if (stamp.md5 != null) {
+        props.setProperty("md5", stamp.md5);
+      }
+      try (OutputStream out = new FileOutputStream(tmp)) {
+        props.store(out, null);
+      }
+      DownloadState.move(tmp, stampFile);
+    } catch (IOException e) {
+      // read-only location, we'll just hash it again next time
+      tmp.delete();
+    }
+  }
+
+  static void delete(File image) {
+    stampFile(image).delete();
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (!(obj instanceof ValidationStamp)) {
+      return false;
+    }
+    ValidationStamp that = (ValidationStamp) obj;
+    return Objects.equals(path, that.path) && size == that.size && Objects.equals(mtime, that.mtime) //
+        && Objects.equals(inode, that.inode) && Objects.equals(sha256, that.sha256) && Objects.equals(md5, that.md5);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(path, size, mtime, inode, sha256, md5);
+  }
+
+}
@@ -7,7 +7,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.file.Files;
-import java.nio.file.Path;
+import java.nio.file.Paths;
 
 import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
@@ -58,8 +58,8 @@ public abstract class AbstractTarJDKExtractor implements IJdkExtractor {
             if (File.pathSeparatorChar == ';') {
               context.getOutput().info("Not creating symbolic link " + entryName + " -> " + te.getLinkName());
             } else {
-              Path p = f.toPath();
-              Files.createSymbolicLink(p, p.getParent().resolve(te.getLinkName()));
+              // kept relative, so the jdk still works after being moved into place
+              Files.createSymbolicLink(f.toPath(), Paths.get(te.getLinkName()));
             }
           } else {
             try (OutputStream out = new FileOutputStream(f)) {
@@ -11,11 +11,14 @@ import java.util.jar.Pack200;
 import java.util.zip.ZipEntry;
 
 import io.takari.jdkget.IJdkExtractor;
+import io.takari.jdkget.JdkContext;
+import io.takari.jdkget.PhaseEvent.Phase;
+import io.takari.jdkget.PhaseTimer;
 import io.takari.jdkget.Util;
 
 public abstract class AbstractZipExtractor implements IJdkExtractor {
 
-  protected void extractEntry(File outputDir, String versionPrefix, ZipEntry e, InputStream zip) throws IOException, InterruptedException {
+  protected void extractEntry(JdkContext context, File outputDir, String versionPrefix, ZipEntry e, InputStream zip) throws IOException, InterruptedException {
     Util.checkInterrupt();
 
     boolean unpack200 = false;
@@ -40,13 +43,16 @@ public abstract class AbstractZipExtractor implements IJdkExtractor {
       f.createNewFile();
 
       if (unpack200) {
-        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(f))) {
-          // prevent unpacker from closing the stream
-          InputStream zin = new FilterInputStream(zip) {
-            @Override
-            public void close() throws IOException {}
-          };
-          Pack200.newUnpacker().unpack(zin, out);
+        try (PhaseTimer t = context.phase(Phase.EXTRACT, "pack200")) {
+          try (JarOutputStream out = new JarOutputStream(new FileOutputStream(f))) {
+            // prevent unpacker from closing the stream
+            InputStream zin = new FilterInputStream(zip) {
+              @Override
+              public void close() throws IOException {}
+            };
+            Pack200.newUnpacker().unpack(zin, out);
+          }
+          t.bytes(f.length()).succeeded();
         }
       } else {
         try (OutputStream out = new FileOutputStream(f)) {
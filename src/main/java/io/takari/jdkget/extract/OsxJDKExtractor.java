@@ -22,6 +22,8 @@ import com.sprylab.xar.XarEntry;
 import com.sprylab.xar.XarFile;
 import io.takari.jdkget.IJdkExtractor;
 import io.takari.jdkget.JdkContext;
+import io.takari.jdkget.PhaseEvent.Phase;
+import io.takari.jdkget.PhaseTimer;
 import io.takari.jdkget.Util;
 import io.takari.jdkget.osx.PosixModes;
 import io.takari.jdkget.osx.UnHFS;
@@ -36,34 +38,42 @@ public class OsxJDKExtractor implements IJdkExtractor {
     context.getOutput().info("Extracting osx dmg image into " + outputDir);
 
     // DMG <-- XAR <-- GZ <-- CPIO
-    UnHFS.unhfs(jdkImage, workDir);
+    // the udif image is decompressed on the fly as the file system is read, so it's timed along with it
+    try (PhaseTimer t = context.phase(Phase.EXTRACT, "hfs")) {
+      UnHFS.unhfs(jdkImage, workDir);
+      t.bytes(jdkImage.length()).succeeded();
+    }
 
     List<File> payloads = new ArrayList<>(); 
     File jdkPkg = getJdkPackage(workDir);
     
-    // validate
-    XarFile xarFile = new XarFile(jdkPkg);
-    for (XarEntry entry : xarFile.getEntries()) {
-      Util.checkInterrupt();
-      String name = entry.getName();
-      if (!entry.isDirectory() && //
-          (name.startsWith("jdk") //
-              || name.startsWith("JavaForOSX") //
-              || name.startsWith("JavaEssentials") //
-              || name.startsWith("JavaMDNS") //
-          ) && entry.getName().endsWith("Payload")) {
-        File file = new File(workDir, name);
-        File parentFile = file.getParentFile();
-        if (parentFile.isFile()) {
-          parentFile = new File(parentFile.getParentFile(), parentFile.getName() + ".tmp");
-          file = new File(parentFile, file.getName());
-        }
-        parentFile.mkdirs();
-        try (InputStream is = entry.getInputStream(); OutputStream os = new FileOutputStream(file)) {
-          Util.copyInterruptibly(is, os);
+    try (PhaseTimer t = context.phase(Phase.EXTRACT, "xar")) {
+      // validate
+      XarFile xarFile = new XarFile(jdkPkg);
+      for (XarEntry entry : xarFile.getEntries()) {
+        Util.checkInterrupt();
+        String name = entry.getName();
+        if (!entry.isDirectory() && //
+            (name.startsWith("jdk") //
+                || name.startsWith("JavaForOSX") //
+                || name.startsWith("JavaEssentials") //
+                || name.startsWith("JavaMDNS") //
+            ) && entry.getName().endsWith("Payload")) {
+          File file = new File(workDir, name);
+          File parentFile = file.getParentFile();
+          if (parentFile.isFile()) {
+            parentFile = new File(parentFile.getParentFile(), parentFile.getName() + ".tmp");
+            file = new File(parentFile, file.getName());
+          }
+          parentFile.mkdirs();
+          try (InputStream is = entry.getInputStream(); OutputStream os = new FileOutputStream(file)) {
+            Util.copyInterruptibly(is, os);
+          }
+          payloads.add(file);
+          t.addBytes(file.length());
         }
-        payloads.add(file);
       }
+      t.succeeded();
     }
 
     Map<Path, Integer> fileModes = new HashMap<>();
@@ -71,12 +81,15 @@ public class OsxJDKExtractor implements IJdkExtractor {
     for (File jdkGz : payloads) {
       Util.checkInterrupt();
       File cpio = new File(workDir, "temp" + System.currentTimeMillis() + ".cpio");
-      try (GZIPInputStream is = new GZIPInputStream(new FileInputStream(jdkGz)); FileOutputStream os = new FileOutputStream(cpio)) {
-        Util.copyInterruptibly(is, os);
+      try (PhaseTimer t = context.phase(Phase.EXTRACT, "gzip")) {
+        try (GZIPInputStream is = new GZIPInputStream(new FileInputStream(jdkGz)); FileOutputStream os = new FileOutputStream(cpio)) {
+          Util.copyInterruptibly(is, os);
+        }
+        t.bytes(cpio.length()).succeeded();
       }
 
       // https://people.freebsd.org/~kientzle/libarchive/man/cpio.5.txt
-      try (ArchiveInputStream is = new CpioArchiveInputStream(new FileInputStream(cpio))) {
+      try (PhaseTimer t = context.phase(Phase.EXTRACT, "cpio"); ArchiveInputStream is = new CpioArchiveInputStream(new FileInputStream(cpio))) {
         CpioArchiveEntry e;
         while ((e = (CpioArchiveEntry) is.getNextEntry()) != null) {
           Util.checkInterrupt();
@@ -113,6 +126,7 @@ public class OsxJDKExtractor implements IJdkExtractor {
             }
           }
         }
+        t.bytes(cpio.length()).succeeded();
       }
     }
 
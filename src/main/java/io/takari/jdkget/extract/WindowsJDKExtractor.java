@@ -7,6 +7,8 @@ import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
 import io.takari.jdkget.JdkContext;
+import io.takari.jdkget.PhaseEvent.Phase;
+import io.takari.jdkget.PhaseTimer;
 import io.takari.jdkget.Util;
 import io.takari.jdkget.win.CabEntry;
 import io.takari.jdkget.win.CabInput;
@@ -21,21 +23,26 @@ public class WindowsJDKExtractor extends AbstractZipExtractor {
     // > 1.7: PE EXE <- PE EXE <- CAB <- tools.zip (some jars are pack200'd as .pack)
 
     try (CabInput in = CabInput.fromFile(jdkImage)) {
-      List<Cabinet> cabs = Cabinet.cabd_search(in);
+      List<Cabinet> cabs;
+      try (PhaseTimer t = context.phase(Phase.EXTRACT, "cab")) {
+        cabs = Cabinet.cabd_search(in);
+        t.bytes(jdkImage.length()).succeeded();
+      }
       for (Cabinet cab : cabs) {
         for (CabEntry e : cab.entries()) {
           Util.checkInterrupt();
           if (e.getName().equals("tools.zip")) {
 
-            // extract it
+            // extract it, the lzx compressed cabinet is decompressed on the fly and timed along with it
             outputDir.mkdirs();
-            try (ZipInputStream zin = new ZipInputStream(e.getInputStream())) {
+            try (PhaseTimer t = context.phase(Phase.EXTRACT, "zip"); ZipInputStream zin = new ZipInputStream(e.getInputStream())) {
               ZipEntry ze = zin.getNextEntry();
               while (ze != null) {
                 Util.checkInterrupt();
-                extractEntry(outputDir, null, ze, zin);
+                extractEntry(context, outputDir, null, ze, zin);
                 ze = zin.getNextEntry();
               }
+              t.succeeded();
             }
 
             return true;
@@ -0,0 +1,100 @@
+package io.takari.jdkget;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class AsyncTransportTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private JdkContext context() {
+    return new JdkContext(null, null, Arch.NIX_64, new NullOutput());
+  }
+
+  @Test
+  public void testDownload() throws Exception {
+    File image = new File(temp.getRoot(), "image");
+    try (AsyncTransport t = new AsyncTransport(new DumbTransport(true))) {
+      t.downloadJdk(context(), image, null).get(10, TimeUnit.SECONDS);
+      assertTrue(image.isFile());
+      assertTrue(t.validate(context(), image).get(10, TimeUnit.SECONDS));
+    }
+  }
+
+  @Test
+  public void testFailure() throws Exception {
+    ITransport failing = new DumbTransport(true) {
+      @Override
+      public void downloadJdk(JdkContext context, File jdkImage) throws IOException {
+        throw new IOException("nope");
+      }
+    };
+    try (AsyncTransport t = new AsyncTransport(failing)) {
+      t.downloadJdk(context(), new File(temp.getRoot(), "image"), null).get(10, TimeUnit.SECONDS);
+      fail();
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof IOException);
+      assertEquals("nope", e.getCause().getMessage());
+    }
+  }
+
+  @Test
+  public void testCancelInterrupts() throws Exception {
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch interrupted = new CountDownLatch(1);
+    ITransport sleeping = new SleepingTransport() {
+      @Override
+      public void downloadJdk(JdkContext context, File jdkImage) throws IOException, InterruptedException {
+        started.countDown();
+        try {
+          super.downloadJdk(context, jdkImage);
+        } catch (InterruptedException e) {
+          interrupted.countDown();
+          throw e;
+        }
+      }
+    };
+    try (AsyncTransport t = new AsyncTransport(sleeping)) {
+      CompletableFuture<Void> f = t.downloadJdk(context(), new File(temp.getRoot(), "image"), null);
+      assertTrue(started.await(10, TimeUnit.SECONDS));
+      f.cancel(true);
+      assertTrue(interrupted.await(10, TimeUnit.SECONDS));
+      assertTrue(f.isCancelled());
+    }
+  }
+
+  @Test
+  public void testProgress() throws Exception {
+    ITransport reporting = new DumbTransport(true) {
+      @Override
+      public void downloadJdk(JdkContext context, File jdkImage) throws IOException, InterruptedException {
+        context.getOutput().printProgress(1000L, 50L, 100L);
+        context.getOutput().printProgress(2000L, 100L, 100L);
+        super.downloadJdk(context, jdkImage);
+      }
+    };
+    List<Long> copied = new CopyOnWriteArrayList<>();
+    try (AsyncTransport t = new AsyncTransport(reporting)) {
+      t.downloadJdk(context(), new File(temp.getRoot(), "image"), (c, total) -> copied.add(c)).get(10, TimeUnit.SECONDS);
+    }
+    assertEquals(2, copied.size());
+    assertEquals(50L, (long) copied.get(0));
+    assertEquals(100L, (long) copied.get(1));
+  }
+
+}
@@ -0,0 +1,140 @@
+package io.takari.jdkget;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import io.takari.jdkget.JdkReleases.JdkRelease;
+
+public class CatalogLayerTest {
+
+  @Test
+  public void testAddMergeRemove() throws Exception {
+    JdkReleases base = JdkReleases.readFromClasspath();
+    int size = base.getReleases().size();
+    JdkRelease u151 = base.select(JdkVersion.parse("8u151-b12"));
+
+    JdkReleases rels = base.overlay(CatalogLayer.newBuilder() //
+        .addBinary("8u161-b12", Arch.NIX_64, "jdk/8u161-linux-x64.tar.gz") //
+        .addBinary("8u151-b12", Arch.NIX_64, "mirror/8u151-linux-x64.tar.gz") //
+        .remove("8u144-b01") //
+        .build());
+
+    assertEquals(size, rels.getReleases().size());
+    assertEquals("8u161-b12", rels.latest(8).getVersion().shortBuild());
+    assertEquals("8u161-b12", rels.select(JdkVersion.parse("8")).getVersion().shortBuild());
+
+    JdkRelease merged = rels.select(JdkVersion.parse("8u151-b12"));
+    assertEquals("mirror/8u151-linux-x64.tar.gz", merged.getBinary(Arch.NIX_64).getPath());
+    assertEquals(u151.getBinary(Arch.WIN_64).getPath(), merged.getBinary(Arch.WIN_64).getPath());
+    assertSame(merged, rels.select(JdkVersion.parse("8u151-b12")));
+
+    assertEquals(2, rels.getReleases(JdkVersion.parse("8u141"), JdkVersion.parse("8u151-b12")).size());
+    try {
+      rels.select(JdkVersion.parse("8u144"));
+      fail();
+    } catch (IllegalStateException e) {
+      // removed
+    }
+
+    // untouched releases are the base's own, and the base itself is as it was
+    assertSame(base.select(JdkVersion.parse("8u131")), rels.select(JdkVersion.parse("8u131")));
+    assertEquals(size, base.getReleases().size());
+    assertSame(u151, base.select(JdkVersion.parse("8u151-b12")));
+    assertEquals("8u151-b12", base.latest(8).getVersion().shortBuild());
+  }
+
+  @Test
+  public void testMatchesFlattened() throws Exception {
+    JdkReleases base = JdkReleases.readFromClasspath();
+    JdkReleases rels = base //
+        .overlay(CatalogLayer.newBuilder() //
+            .addBinary("8u161-b12", Arch.NIX_64, "jdk/8u161-linux-x64.tar.gz") //
+            .setPSU("8u161-b12") //
+            .addBinary("7u80-b15", Arch.NIX_64, "mirror/7u80-linux-x64.tar.gz") //
+            .remove("9.0.1+11") //
+            .addJCE(8, "mirror/jce_policy-8.zip") //
+            .build()) //
+        .overlay(CatalogLayer.newBuilder() //
+            .addBinary("8u162-b12", Arch.NIX_64, "jdk/8u162-linux-x64.tar.gz") //
+            .remove("8u161-b12") //
+            .build());
+    JdkReleases flat = JdkReleases.newBuilder(rels).build();
+
+    assertEquals(versions(flat.getReleases()), versions(rels.getReleases()));
+    assertEquals(versions(flat.getReleases(Arch.WIN_64)), versions(rels.getReleases(Arch.WIN_64)));
+    JdkVersion from = JdkVersion.parse("7u80");
+    JdkVersion to = JdkVersion.parse("8u152");
+    assertEquals(versions(flat.getReleases(from, to)), versions(rels.getReleases(from, to)));
+    assertEquals("8u162-b12", rels.latest(8).getVersion().shortBuild());
+    assertEquals("10+46", rels.latest().getVersion().shortBuild());
+    assertEquals("10+46", rels.latestInclPSU().getVersion().shortBuild());
+    for (String q : new String[] {"7", "8", "9", "10", "7u80", "8u151", "8u161", "8u162", "9.0.1", "9.0.4"}) {
+      assertEquals(q, select(flat, q), select(rels, q));
+    }
+    assertEquals("mirror/7u80-linux-x64.tar.gz", rels.select(JdkVersion.parse("7u80")).getBinary(Arch.NIX_64).getPath());
+
+    assertEquals("mirror/jce_policy-8.zip", rels.getJCE(JdkVersion.parse("8u151")).getPath());
+    assertEquals(base.getJCE(JdkVersion.parse("7u80")).getPath(), rels.getJCE(JdkVersion.parse("7u80")).getPath());
+    assertEquals(3, rels.getJCEs().size());
+  }
+
+  @Test
+  public void testReadDelta() throws Exception {
+    String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" //
+        + "<jdks>\n" //
+        + "  <defaults>\n" //
+        + "    <url>java/jdk/${version}${build}/jdk-${version}-${arch}.${ext}</url>\n" //
+        + "  </defaults>\n" //
+        + "  <remove version=\"8u152-b16\"/>\n" //
+        + "  <pin version=\"8\" to=\"8u141-b15\"/>\n" //
+        + "  <jdk version=\"8u161-b12\">\n" //
+        + "    <bin cls=\"nix_64\" arch=\"linux-x64\" ext=\"tar.gz\">\n" //
+        + "      <sha256>0000</sha256>\n" //
+        + "    </bin>\n" //
+        + "  </jdk>\n" //
+        + "</jdks>\n";
+    CatalogLayer layer = CatalogLayer.read(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+    JdkReleases base = JdkReleases.readFromClasspath();
+    JdkReleases rels = base.overlay(layer);
+
+    JdkRelease u161 = rels.select(JdkVersion.parse("8u161"));
+    assertEquals("java/jdk/8u161-b12/jdk-8u161-linux-x64.tar.gz", u161.getBinary(Arch.NIX_64).getPath());
+    assertEquals("0000", u161.getBinary(Arch.NIX_64).getSha256());
+    assertEquals(4, rels.getReleases(JdkVersion.parse("8u141"), JdkVersion.parse("8u161-b12")).size());
+    assertEquals("8u141-b15", rels.select(JdkVersion.parse("8")).getVersion().shortBuild());
+    assertEquals("8u161-b12", rels.latest(8).getVersion().shortBuild());
+
+    // plain lists skip what only deltas have
+    JdkReleases plain = JdkReleases.read(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+    assertEquals(1, plain.getReleases().size());
+    assertNull(plain.pinned(JdkVersion.parse("8")));
+    assertTrue(base.select(JdkVersion.parse("8")) == base.latest(8));
+  }
+
+  private static String select(JdkReleases rels, String version) {
+    try {
+      return rels.select(JdkVersion.parse(version)).getVersion().shortBuild();
+    } catch (IllegalStateException e) {
+      return null;
+    }
+  }
+
+  private static List<String> versions(List<JdkRelease> rels) {
+    List<String> vs = new ArrayList<>();
+    for (JdkRelease r : rels) {
+      vs.add(r.getVersion().shortBuild() + (r.isPsu() ? " psu" : "") + " " + r.getArchs());
+    }
+    return vs;
+  }
+
+}
@@ -0,0 +1,98 @@
+package io.takari.jdkget;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class HedgingTest {
+
+  private static final String PATH = "java/jdk/8u92-b14/jdk-8u92-linux-x64.tar.gz";
+
+  private OracleSiteSimulator site;
+  private PoolingHttpClientConnectionManager connectionManager;
+  private CloseableHttpClient client;
+  private Hedging hedging;
+
+  @Before
+  public void start() throws IOException {
+    site = new OracleSiteSimulator();
+    connectionManager = new PoolingHttpClientConnectionManager();
+    client = HttpClients.custom().setConnectionManager(connectionManager).build();
+  }
+
+  @After
+  public void stop() throws IOException {
+    if (hedging != null) {
+      hedging.shutdown();
+    }
+    client.close();
+    site.close();
+  }
+
+  private URI uri() {
+    return URI.create(site.getMirrorUrl() + "/" + PATH);
+  }
+
+  @Test
+  public void testSlowFirstByte() throws Exception {
+    byte[] data = site.addBinary(PATH, 100000);
+    site.stallDownloads(1, 5000);
+    hedging = new Hedging(200, 0, 10000);
+
+    long start = System.currentTimeMillis();
+    byte[] got;
+    try (CloseableHttpResponse res = hedging.execute(client, new HttpGet(uri()), new NullOutput())) {
+      got = IOUtils.toByteArray(res.getEntity().getContent());
+    }
+    assertTrue(System.currentTimeMillis() - start < 5000);
+    assertArrayEquals(data, got);
+    assertEquals(2, site.getRequests());
+    assertReleased();
+  }
+
+  @Test
+  public void testSlowBody() throws Exception {
+    byte[] data = site.addBinary(PATH, 300000);
+    // would take half a minute
+    site.throttleDownloads(1, 10000);
+    hedging = new Hedging(0, 100000, 400);
+
+    long start = System.currentTimeMillis();
+    byte[] got;
+    CloseableHttpResponse res = client.execute(new HttpGet(uri()));
+    String etag = res.getFirstHeader("ETag").getValue();
+    InputStream body = hedging.monitor(res, res.getEntity().getContent(), 0, //
+        p -> SegmentedDownload.openRange(client, null, uri(), p, -1, etag, new NullOutput()), new NullOutput());
+    try (InputStream in = body) {
+      got = IOUtils.toByteArray(in);
+    }
+    assertTrue(System.currentTimeMillis() - start < 10000);
+    assertArrayEquals(data, got);
+    assertEquals(1, site.getRangeRequests());
+    assertReleased();
+  }
+
+  private void assertReleased() throws InterruptedException {
+    // losers are closed in the background
+    long deadline = System.currentTimeMillis() + 5000;
+    while (connectionManager.getTotalStats().getLeased() > 0 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(20);
+    }
+    assertEquals(0, connectionManager.getTotalStats().getLeased());
+  }
+
+}
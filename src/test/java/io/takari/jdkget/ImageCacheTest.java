@@ -0,0 +1,170 @@
+package io.takari.jdkget;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.hash.Hashing;
+
+import io.takari.jdkget.JdkReleases.JdkBinary;
+
+public class ImageCacheTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private static String content(String version) {
+    return "jdk " + version + " " + new String(new char[1000]).replace('\0', 'x');
+  }
+
+  private static JdkReleases releases(String... versions) {
+    JdkReleases.Builder b = JdkReleases.newBuilder();
+    for (String v : versions) {
+      String c = content(v);
+      b.addBinary(v, Arch.NIX_64, "jdk-" + v + ".tar.gz", null, Hashing.sha256().hashString(c, StandardCharsets.UTF_8).toString(), c.length());
+    }
+    return b.build();
+  }
+
+  private static class CountingTransport implements ITransport {
+    int downloads;
+
+    @Override
+    public void downloadJdk(JdkContext context, File jdkImage) throws IOException, InterruptedException {
+      downloads++;
+      FileUtils.writeStringToFile(jdkImage, content(context.getVersion().shortBuild()), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public boolean validate(JdkContext context, File jdkImage) throws IOException, InterruptedException {
+      JdkBinary bin = context.getReleases().select(context.getVersion()).getBinary(context.getArch());
+      return new ImageValidator().validate(bin, jdkImage, context.getOutput());
+    }
+
+    @Override
+    public File getImageFile(JdkContext context, File parent) throws IOException {
+      return new File(parent, "jdk-" + context.getVersion().shortBuild() + ".tar.gz");
+    }
+  }
+
+  private static JdkContext context(JdkReleases rels, String version) {
+    return new JdkContext(rels, JdkVersion.parse(version), Arch.NIX_64, new NullOutput());
+  }
+
+  @Test
+  public void testCachedDownload() throws Exception {
+    JdkReleases rels = releases("8u92-b14");
+    JdkContext ctx = context(rels, "8u92-b14");
+    CountingTransport delegate = new CountingTransport();
+    CachingTransport transport = new CachingTransport(delegate, new ImageCache(temp.newFolder("cache")));
+
+    File first = new File(temp.newFolder("a"), "jdk.tar.gz");
+    File second = new File(temp.newFolder("b"), "jdk.tar.gz");
+    transport.downloadJdk(ctx, first);
+    transport.downloadJdk(ctx, second);
+
+    assertEquals(1, delegate.downloads);
+    assertTrue(transport.validate(ctx, first));
+    assertTrue(transport.validate(ctx, second));
+    assertEquals(content("8u92-b14"), FileUtils.readFileToString(second, StandardCharsets.UTF_8));
+
+    // removing an install leaves the cache alone
+    first.delete();
+    File entry = transport.getCache().entry(rels.select(ctx.getVersion()).getBinary(Arch.NIX_64));
+    assertTrue(entry.isFile());
+    assertFalse(new File(temp.getRoot(), "cache/tmp/sha256-" + entry.getName()).exists());
+  }
+
+  @Test
+  public void testCorruptEntry() throws Exception {
+    JdkReleases rels = releases("8u92-b14");
+    JdkContext ctx = context(rels, "8u92-b14");
+    CountingTransport delegate = new CountingTransport();
+    CachingTransport transport = new CachingTransport(delegate, new ImageCache(temp.newFolder("cache")));
+
+    File image = new File(temp.newFolder("a"), "jdk.tar.gz");
+    transport.downloadJdk(ctx, image);
+    File entry = transport.getCache().entry(rels.select(ctx.getVersion()).getBinary(Arch.NIX_64));
+    image.delete();
+    FileUtils.writeStringToFile(entry, "garbage", StandardCharsets.UTF_8);
+
+    transport.downloadJdk(ctx, image);
+    assertEquals(2, delegate.downloads);
+    assertTrue(transport.validate(ctx, image));
+  }
+
+  @Test
+  public void testEviction() throws Exception {
+    JdkReleases rels = releases("8u92-b14", "8u91-b14", "8u77-b03");
+    long size = content("8u92-b14").length();
+    CountingTransport delegate = new CountingTransport();
+    // room for two images
+    ImageCache cache = new ImageCache(temp.newFolder("cache"), size * 2 + size / 2);
+    CachingTransport transport = new CachingTransport(delegate, cache);
+
+    File dir = temp.newFolder("out");
+    transport.downloadJdk(context(rels, "8u92-b14"), new File(dir, "1"));
+    Thread.sleep(20);
+    transport.downloadJdk(context(rels, "8u91-b14"), new File(dir, "2"));
+    Thread.sleep(20);
+    // makes 8u91 the least recently used one
+    transport.downloadJdk(context(rels, "8u92-b14"), new File(dir, "3"));
+    Thread.sleep(20);
+    transport.downloadJdk(context(rels, "8u77-b03"), new File(dir, "4"));
+    assertEquals(3, delegate.downloads);
+
+    assertTrue(cache.contains(rels.select(JdkVersion.parse("8u92-b14")).getBinary(Arch.NIX_64), new NullOutput()));
+    assertFalse(cache.contains(rels.select(JdkVersion.parse("8u91-b14")).getBinary(Arch.NIX_64), new NullOutput()));
+    assertTrue(cache.contains(rels.select(JdkVersion.parse("8u77-b03")).getBinary(Arch.NIX_64), new NullOutput()));
+    // installs keep their copy
+    assertTrue(new File(dir, "2").isFile());
+  }
+
+  @Test
+  public void testEvictionSkipsLockedEntries() throws Exception {
+    JdkReleases rels = releases("8u92-b14", "8u91-b14");
+    JdkBinary locked = rels.select(JdkVersion.parse("8u92-b14")).getBinary(Arch.NIX_64);
+    long size = content("8u92-b14").length();
+    // room for one image
+    ImageCache cache = new ImageCache(temp.newFolder("cache"), size + size / 2);
+    CachingTransport transport = new CachingTransport(new CountingTransport(), cache);
+
+    File dir = temp.newFolder("out");
+    transport.downloadJdk(context(rels, "8u92-b14"), new File(dir, "1"));
+
+    // somebody else is about to make a copy of it
+    CountDownLatch held = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    Thread holder = new Thread(() -> {
+      try (ProcessLock lock = cache.lock(locked, new NullOutput())) {
+        held.countDown();
+        release.await();
+      } catch (IOException | InterruptedException e) {
+        throw new IllegalStateException(e);
+      }
+    });
+    holder.start();
+    held.await();
+    try {
+      transport.downloadJdk(context(rels, "8u91-b14"), new File(dir, "2"));
+      assertTrue(cache.entry(locked).isFile());
+    } finally {
+      release.countDown();
+      holder.join();
+    }
+
+    // once it's let go, it's the next one to go
+    cache.evict(null, new NullOutput());
+    assertFalse(cache.entry(locked).isFile());
+  }
+}
@@ -0,0 +1,120 @@
+package io.takari.jdkget;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.hash.Hashing;
+
+import io.takari.jdkget.JdkReleases.JdkBinary;
+
+public class ImageValidatorTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private File image(String name, int size) throws Exception {
+    byte[] data = new byte[size];
+    new Random(size).nextBytes(data);
+    File f = temp.newFile(name);
+    FileUtils.writeByteArrayToFile(f, data);
+    return f;
+  }
+
+  private static JdkBinary binary(String md5, String sha256, long size) {
+    return JdkReleases.newBuilder() //
+        .addBinary("8u92-b14", Arch.NIX_64, "jdk.tar.gz", md5, sha256, size) //
+        .build().select(JdkVersion.parse("8u92-b14")).getBinary(Arch.NIX_64);
+  }
+
+  @Test
+  public void testDigests() throws Exception {
+    // spans several buffers
+    File f = image("image", 3 * 1024 * 1024 + 17);
+    String sha256 = Hashing.sha256().hashBytes(FileUtils.readFileToByteArray(f)).toString();
+    String md5 = Hashing.md5().hashBytes(FileUtils.readFileToByteArray(f)).toString();
+
+    ImageValidator v = new ImageValidator();
+    assertTrue(v.validate(binary(md5, sha256, f.length()), f, new NullOutput()));
+    assertTrue(v.validate(binary(null, sha256, -1), f, new NullOutput()));
+    assertTrue(v.validate(binary(md5, null, -1), f, new NullOutput()));
+    assertTrue(v.validate(binary(null, null, -1), f, new NullOutput()));
+
+    assertFalse(v.validate(binary(md5, sha256, f.length() + 1), f, new NullOutput()));
+    assertFalse(v.validate(binary(md5, sha256.replace(sha256.charAt(0), 'x'), f.length()), f, new NullOutput()));
+    assertFalse(v.validate(binary(md5.replace(md5.charAt(0), 'x'), sha256, f.length()), f, new NullOutput()));
+  }
+
+  @Test
+  public void testKnownDigests() throws Exception {
+    File f = image("image", 1000);
+    Digests known = ImageValidator.digest(f, new Digests(true, true));
+    assertEquals(1000, known.getSize());
+    assertEquals(Hashing.sha256().hashBytes(FileUtils.readFileToByteArray(f)).toString(), known.getSha256());
+
+    // known digests are trusted as is
+    f.delete();
+    f.createNewFile();
+    assertTrue(new ImageValidator().validate(binary(known.getMd5(), known.getSha256(), -1), f, known, new NullOutput()));
+  }
+
+  @Test
+  public void testStamps() throws Exception {
+    File f = image("image", 1000);
+    String sha256 = Hashing.sha256().hashBytes(FileUtils.readFileToByteArray(f)).toString();
+    JdkBinary bin = binary(null, sha256, 1000);
+
+    assertFalse(ValidationStamp.stampFile(f).exists());
+    assertTrue(new ImageValidator().validate(bin, f, new NullOutput()));
+    assertTrue(ValidationStamp.stampFile(f).exists());
+
+    // corrupt it in place without changing any of the metadata
+    FileTime mtime = Files.getLastModifiedTime(f.toPath());
+    try (RandomAccessFile raf = new RandomAccessFile(f, "rw")) {
+      raf.write(new byte[10]);
+    }
+    Files.setLastModifiedTime(f.toPath(), mtime);
+
+    assertTrue(new ImageValidator().validate(bin, f, new NullOutput()));
+    assertFalse(new ImageValidator(true).validate(bin, f, new NullOutput()));
+    assertFalse(ValidationStamp.stampFile(f).exists());
+    assertFalse(new ImageValidator().validate(bin, f, new NullOutput()));
+
+    // stamp doesn't apply to different digests
+    FileUtils.writeByteArrayToFile(f, new byte[1000]);
+    String zeroes = Hashing.sha256().hashBytes(new byte[1000]).toString();
+    assertTrue(new ImageValidator().validate(binary(null, zeroes, 1000), f, new NullOutput()));
+    assertFalse(new ImageValidator().validate(bin, f, new NullOutput()));
+  }
+
+  @Test
+  public void testValidateAll() throws Exception {
+    Map<File, JdkBinary> images = new LinkedHashMap<>();
+    for (int i = 0; i < 10; i++) {
+      File f = image("image" + i, 10000 + i);
+      String sha256 = Hashing.sha256().hashBytes(FileUtils.readFileToByteArray(f)).toString();
+      images.put(f, binary(null, i % 3 == 0 ? "0" : sha256, -1));
+    }
+    images.put(new File(temp.getRoot(), "missing"), binary(null, null, -1));
+
+    Map<File, Boolean> res = new ImageValidator().validateAll(images, 4, new NullOutput());
+    int i = 0;
+    for (Map.Entry<File, Boolean> e : res.entrySet()) {
+      assertEquals(e.getKey().getName(), i < 10 && i % 3 != 0, e.getValue());
+      i++;
+    }
+  }
+}
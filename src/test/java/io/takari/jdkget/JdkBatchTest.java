@@ -0,0 +1,87 @@
+package io.takari.jdkget;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class JdkBatchTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private static JdkReleases releases() {
+    return JdkReleases.newBuilder() //
+      .addBinary("8u92-b14", Arch.NIX_32, "jdk-8u92-linux-i586.tar.gz") //
+      .addBinary("8u91-b14", Arch.NIX_32, "jdk-8u91-linux-i586.tar.gz") //
+      .addBinary("8u77-b03", Arch.NIX_32, "jdk-8u77-linux-i586.tar.gz") //
+      .build();
+  }
+
+  @Test
+  public void testBatch() throws Exception {
+    TarTransport t = new TarTransport();
+    File work = temp.newFolder("work");
+    List<JdkBatch.Result> results = JdkGetter.batch() //
+      .releases(releases()) //
+      .transport(t) //
+      .output(new NullOutput()) //
+      .workDirectory(work) //
+      .target(new JdkBatch.Target("8u92-b14", Arch.NIX_32, new File(temp.getRoot(), "a"), true)) //
+      .target(new JdkBatch.Target("8u91-b14", Arch.NIX_32, new File(temp.getRoot(), "b"), true)) //
+      .target("8u92-b14", Arch.NIX_32, new File(temp.getRoot(), "c")) //
+      .build().get();
+
+    assertEquals(3, results.size());
+    for (JdkBatch.Result r : results) {
+      assertTrue(r.toString(), r.isSuccess());
+      assertTrue(r.getTotalTime().compareTo(r.getDownloadTime().plus(r.getExtractTime())) >= 0);
+    }
+    assertEquals("8u91-b14", results.get(1).getTarget().getVersion());
+
+    // the same jdk and the jce policy of the same major version are downloaded once
+    assertEquals(2, t.downloads);
+    assertEquals(1, t.jceDownloads);
+
+    assertEquals("JAVA_VERSION=\"1.8.0_92\"", FileUtils.readFileToString(new File(temp.getRoot(), "a/release"), StandardCharsets.UTF_8));
+    assertEquals("JAVA_VERSION=\"1.8.0_91\"", FileUtils.readFileToString(new File(temp.getRoot(), "b/release"), StandardCharsets.UTF_8));
+    assertEquals("JAVA_VERSION=\"1.8.0_92\"", FileUtils.readFileToString(new File(temp.getRoot(), "c/release"), StandardCharsets.UTF_8));
+    assertTrue(new File(temp.getRoot(), "a/jre/lib/security/local_policy.jar").isFile());
+    assertTrue(new File(temp.getRoot(), "b/jre/lib/security/local_policy.jar").isFile());
+    assertFalse(new File(temp.getRoot(), "c/jre/lib/security/local_policy.jar").exists());
+
+    // shared downloads are cleaned up
+    assertEquals(0, work.list().length);
+  }
+
+  @Test
+  public void testFailureDoesntStopOthers() throws Exception {
+    TarTransport t = new TarTransport();
+    t.delay = 0L;
+    List<JdkBatch.Result> results = JdkGetter.batch() //
+      .releases(releases()) //
+      .transport(t) //
+      .output(new NullOutput()) //
+      .workDirectory(temp.newFolder("work")) //
+      .downloads(1) //
+      .extractions(1) //
+      .target("8u92-b14", Arch.NIX_32, new File(temp.getRoot(), "a")) //
+      .target("8u11-b12", Arch.NIX_32, new File(temp.getRoot(), "b")) //
+      .target("8u77-b03", Arch.NIX_32, new File(temp.getRoot(), "c")) //
+      .build().get();
+
+    assertTrue(results.get(0).isSuccess());
+    assertFalse(results.get(1).isSuccess());
+    assertTrue(results.get(2).isSuccess());
+    assertTrue(new File(temp.getRoot(), "c/lib").isDirectory());
+  }
+
+}
@@ -1,15 +1,36 @@
 package io.takari.jdkget;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import io.takari.jdkget.PhaseEvent.Phase;
 
 public class JdkGetterTest {
 
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
   @Test
   public void testRetries() throws Exception {
 
@@ -20,7 +41,7 @@ public class JdkGetterTest {
         .retries(3)
         .transport(t)
         .arch(Arch.NIX_64)
-        .outputDirectory(new File(""))
+        .outputDirectory(new File(temp.getRoot(), "jdk"))
         .build().get();
       fail();
     } catch (IOException e) {
@@ -28,6 +49,21 @@ public class JdkGetterTest {
     }
   }
 
+  @Test
+  public void testTransportSettingsNeedOwnTransport() throws Exception {
+    try {
+      JdkGetter.builder()
+        .transport(new DumbTransport(true))
+        .segments(4)
+        .arch(Arch.NIX_64)
+        .outputDirectory(new File(temp.getRoot(), "jdk"))
+        .build();
+      fail();
+    } catch (IllegalStateException e) {
+      // expected, the caller's transport is theirs to configure
+    }
+  }
+
   @Test
   public void testInterrupts() throws Exception {
 
@@ -36,7 +72,7 @@ public class JdkGetterTest {
       .retries(3)
       .transport(new SleepingTransport())
       .arch(Arch.NIX_64)
-      .outputDirectory(new File(""))
+      .outputDirectory(new File(temp.getRoot(), "jdk"))
       .build();
 
     Thread cur = Thread.currentThread();
@@ -57,4 +93,212 @@ public class JdkGetterTest {
     } catch (InterruptedException e) {
     }
   }
+
+  private static JdkReleases releases() {
+    return JdkReleases.newBuilder() //
+      .addBinary("8u92-b14", Arch.NIX_32, "jdk-8u92-linux-i586.tar.gz") //
+      .addBinary("8u91-b14", Arch.NIX_32, "jdk-8u91-linux-i586.tar.gz") //
+      .build();
+  }
+
+  private static JdkGetter getter(JdkReleases rels, String version, File out, ITransport t) {
+    return getter(rels, version, out, t, new NullOutput());
+  }
+
+  private static JdkGetter getter(JdkReleases rels, String version, File out, ITransport t, IOutput output) {
+    return JdkGetter.builder()
+      .releases(rels)
+      .version(version)
+      .output(output)
+      .transport(t)
+      .arch(Arch.NIX_32)
+      .outputDirectory(out)
+      .retries(0)
+      .build();
+  }
+
+  @Test
+  public void testConcurrentInstall() throws Exception {
+    JdkReleases rels = releases();
+    File out = new File(temp.getRoot(), "jdk");
+    TarTransport t = new TarTransport();
+
+    ExecutorService executor = Executors.newFixedThreadPool(3);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < 3; i++) {
+        futures.add(executor.submit(() -> {
+          getter(rels, "8u92-b14", out, t).get();
+          return null;
+        }));
+      }
+      for (Future<?> f : futures) {
+        f.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    // the first one installs, the others find it there
+    assertEquals(1, t.downloads);
+    assertTrue(new File(out, "lib").isDirectory());
+    assertEquals("JAVA_VERSION=\"1.8.0_92\"", FileUtils.readFileToString(new File(out, "release"), StandardCharsets.UTF_8));
+    assertFalse(new File(temp.getRoot(), "jdk.in-process").exists());
+
+    // another version replaces it
+    getter(rels, "8u91-b14", out, t).get();
+    assertEquals(2, t.downloads);
+    assertEquals("JAVA_VERSION=\"1.8.0_91\"", FileUtils.readFileToString(new File(out, "release"), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testDamagedInstall() throws Exception {
+    JdkReleases rels = releases();
+    File out = new File(temp.getRoot(), "jdk");
+    TarTransport t = new TarTransport();
+    getter(rels, "8u92-b14", out, t).get();
+    getter(rels, "8u92-b14", out, t).get();
+    assertEquals(1, t.downloads);
+
+    // the lock still says it's there, but it isn't all there anymore
+    FileUtils.forceDelete(new File(out, "bin/java"));
+    getter(rels, "8u92-b14", out, t).get();
+    assertEquals(2, t.downloads);
+    assertTrue(new File(out, "bin/java").isFile());
+  }
+
+  @Test
+  public void testResumeDeadInstall() throws Exception {
+    JdkReleases rels = releases();
+    File out = new File(temp.getRoot(), "jdk");
+    TarTransport t = new TarTransport();
+    getter(rels, "8u92-b14", out, t).get();
+    File stale = new File(out, "stale.jar");
+    FileUtils.writeStringToFile(stale, "8u92", StandardCharsets.UTF_8);
+
+    // dies half-way through replacing it
+    t.valid = false;
+    try {
+      getter(rels, "8u91-b14", out, t).get();
+      fail();
+    } catch (IOException e) {
+      // expected
+    }
+
+    // still replaced rather than merged into what's there
+    t.valid = true;
+    getter(rels, "8u91-b14", out, t).get();
+    assertFalse(stale.exists());
+    assertEquals("JAVA_VERSION=\"1.8.0_91\"", FileUtils.readFileToString(new File(out, "release"), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testCoalescedFailure() throws Exception {
+    JdkReleases rels = releases();
+    File out = new File(temp.getRoot(), "jdk");
+    TarTransport t = new TarTransport();
+    t.valid = false;
+    // the download only goes ahead once the other two are waiting for it
+    CountDownLatch waiting = new CountDownLatch(2);
+    t.gate = waiting;
+    IOutput output = new NullOutput() {
+      @Override
+      public void info(String message) {
+        if (message.startsWith("Waiting for jdk")) {
+          waiting.countDown();
+        }
+      }
+    };
+
+    ExecutorService executor = Executors.newFixedThreadPool(3);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < 3; i++) {
+        futures.add(executor.submit(() -> {
+          getter(rels, "8u92-b14", out, t, output).get();
+          return null;
+        }));
+      }
+      for (Future<?> f : futures) {
+        try {
+          f.get();
+          fail();
+        } catch (ExecutionException e) {
+          assertTrue(e.getCause() instanceof IOException);
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    // everyone got the failure of the one that tried
+    assertEquals(1, t.downloads);
+  }
+
+  @Test
+  public void testInterruptedLeader() throws Exception {
+    JdkReleases rels = releases();
+    File out = new File(temp.getRoot(), "jdk");
+    TarTransport t = new TarTransport();
+
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      Future<?> leader = executor.submit(() -> {
+        getter(rels, "8u92-b14", out, t).get();
+        return null;
+      });
+      Thread.sleep(50L);
+      Future<?> follower = executor.submit(() -> {
+        getter(rels, "8u92-b14", out, t).get();
+        return null;
+      });
+      Thread.sleep(50L);
+      leader.cancel(true);
+
+      // the follower isn't interrupted itself and installs it instead
+      follower.get();
+      assertEquals(2, t.downloads);
+      assertTrue(new File(out, "lib").isDirectory());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testPhaseEvents() throws Exception {
+    List<PhaseEvent> events = new CopyOnWriteArrayList<>();
+    StringWriter json = new StringWriter();
+    JsonLinesPhaseListener exporter = new JsonLinesPhaseListener(json);
+    JdkGetter.builder()
+      .releases(releases())
+      .version("8u92-b14")
+      .output(new NullOutput())
+      .transport(new TarTransport())
+      .arch(Arch.NIX_32)
+      .outputDirectory(new File(temp.getRoot(), "jdk"))
+      .phaseListener(e -> {
+        events.add(e);
+        exporter.phaseCompleted(e);
+      })
+      .build().get();
+
+    List<Phase> phases = new ArrayList<>();
+    for (PhaseEvent e : events) {
+      phases.add(e.getPhase());
+      assertTrue(e.toString(), e.isSuccess());
+      assertTrue(e.getDuration() >= 0);
+    }
+    assertEquals(Arrays.asList(Phase.RESOLVE, Phase.DOWNLOAD, Phase.VALIDATE, Phase.EXTRACT), phases);
+    PhaseEvent download = events.get(1);
+    assertEquals("1.8.0_92", download.getVersion().longVersion());
+    assertEquals(Arch.NIX_32, download.getArch());
+    assertTrue(download.getBytes() > 0);
+
+    String[] lines = json.toString().split("\n");
+    assertEquals(4, lines.length);
+    assertTrue(lines[1], lines[1].startsWith("{\"start\":\""));
+    assertTrue(lines[1], lines[1].contains("\"phase\":\"download\",\"version\":\"8u92-b14\",\"arch\":\"NIX_32\",\"duration\":"));
+    assertTrue(lines[1], lines[1].contains("\"bytes\":" + download.getBytes() + ","));
+    assertTrue(lines[1], lines[1].endsWith("\"success\":true,\"thread\":\"" + Thread.currentThread().getName() + "\"}"));
+  }
 }
@@ -0,0 +1,250 @@
+package io.takari.jdkget;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.hash.Hashing;
+
+import io.takari.jdkget.JdkMirror.Target;
+import io.takari.jdkget.JdkReleases.JdkBinary;
+
+public class JdkMirrorTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private static class FlakyTransport implements ITransport {
+    final Map<String, AtomicInteger> attempts = new ConcurrentHashMap<>();
+    final AtomicInteger running = new AtomicInteger();
+    final AtomicInteger maxRunning = new AtomicInteger();
+
+    @Override
+    public void downloadJdk(JdkContext context, File jdkImage) throws IOException, InterruptedException {
+      int attempt = attempts.computeIfAbsent(jdkImage.getName(), k -> new AtomicInteger()).incrementAndGet();
+      int r = running.incrementAndGet();
+      maxRunning.accumulateAndGet(r, Math::max);
+      try {
+        Thread.sleep(50);
+        if (jdkImage.getName().startsWith("broken") || jdkImage.getName().startsWith("flaky") && attempt < 3) {
+          throw new IOException("Connection reset");
+        }
+        FileUtils.writeStringToFile(jdkImage, jdkImage.getName());
+      } finally {
+        running.decrementAndGet();
+      }
+    }
+
+    @Override
+    public boolean validate(JdkContext context, File jdkImage) throws IOException, InterruptedException {
+      return jdkImage.isFile();
+    }
+
+    @Override
+    public File getImageFile(JdkContext context, File parent) throws IOException {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  @Test
+  public void testMirror() throws Exception {
+    JdkReleases rels = JdkReleases.newBuilder() //
+        .addBinary("8u92-b14", Arch.NIX_64, "8u92/ok-nix.tar.gz", null, null, -1) //
+        .addBinary("8u92-b14", Arch.WIN_64, "8u92/flaky-win.exe", null, null, -1) //
+        .addBinary("8u91-b14", Arch.NIX_64, "8u91/ok-nix.tar.gz", null, null, -1) //
+        .addBinary("8u91-b14", Arch.WIN_64, "8u91/broken-win.exe", null, null, -1) //
+        .addBinary("8u77-b03", Arch.NIX_64, "8u77/ok-nix.tar.gz", null, null, -1) //
+        .build();
+
+    FlakyTransport transport = new FlakyTransport();
+    JdkMirror mirror = new JdkMirror(transport, new NullOutput());
+    mirror.setThreads(3);
+    mirror.setRetries(2);
+    mirror.setBackoff(1);
+
+    List<Target> targets = mirror.targets(rels, JdkVersion.parse("8u91-b14"), null, null, temp.getRoot());
+    assertEquals(4, targets.size());
+
+    JdkMirror.Summary summary = mirror.mirror(targets);
+    assertEquals(0, summary.getValid().size());
+    assertEquals(3, summary.getDownloaded().size());
+    assertEquals(1, summary.getFailed().size());
+    assertEquals("broken-win.exe", summary.getFailed().keySet().iterator().next().getFile().getName());
+    assertEquals(3, transport.attempts.get("flaky-win.exe").get());
+    assertEquals(3, transport.attempts.get("broken-win.exe").get());
+    assertTrue(transport.maxRunning.get() > 1);
+    assertTrue(transport.maxRunning.get() <= 3);
+    assertTrue(new File(temp.getRoot(), "8u92/flaky-win.exe").isFile());
+
+    // only what failed is attempted again
+    transport.attempts.clear();
+    summary = mirror.mirror(targets);
+    assertEquals(3, summary.getValid().size());
+    assertEquals(0, summary.getDownloaded().size());
+    assertEquals(1, summary.getFailed().size());
+    assertEquals(1, transport.attempts.size());
+  }
+
+  /**
+   * Serves binaries named after their current remote version, which is also their etag
+   */
+  private static class VersionedTransport implements ITransport {
+    final Map<String, String> versions = new ConcurrentHashMap<>();
+    final AtomicInteger downloads = new AtomicInteger();
+    final AtomicInteger checks = new AtomicInteger();
+
+    String content(String name) {
+      return name + " " + versions.getOrDefault(name, "v1");
+    }
+
+    @Override
+    public void downloadJdk(JdkContext context, File jdkImage) throws IOException, InterruptedException {
+      downloads.incrementAndGet();
+      FileUtils.writeStringToFile(jdkImage, content(jdkImage.getName()), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public boolean validate(JdkContext context, File jdkImage) throws IOException, InterruptedException {
+      JdkBinary bin = context.getReleases().select(context.getVersion()).getBinary(context.getArch());
+      return new ImageValidator().validate(bin, jdkImage, context.getOutput());
+    }
+
+    @Override
+    public HttpValidators getValidators(File jdkImage) {
+      return new HttpValidators(versions.getOrDefault(jdkImage.getName(), "v1"), null);
+    }
+
+    @Override
+    public boolean isModified(JdkContext context, HttpValidators validators) throws IOException, InterruptedException {
+      checks.incrementAndGet();
+      String name = new File(context.getReleases().select(context.getVersion()).getBinary(context.getArch()).getPath()).getName();
+      return !validators.getEtag().equals(versions.getOrDefault(name, "v1"));
+    }
+
+    @Override
+    public File getImageFile(JdkContext context, File parent) throws IOException {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  private static String sha256(String content) {
+    return Hashing.sha256().hashString(content, StandardCharsets.UTF_8).toString();
+  }
+
+  @Test
+  public void testIncrementalMirror() throws Exception {
+    VersionedTransport transport = new VersionedTransport();
+    JdkReleases rels = JdkReleases.newBuilder() //
+        .addBinary("8u92-b14", Arch.NIX_64, "8u92/hashed-nix.tar.gz", null, sha256(transport.content("hashed-nix.tar.gz")), -1) //
+        .addBinary("8u92-b14", Arch.WIN_64, "8u92/plain-win.exe", null, null, -1) //
+        .build();
+    File root = temp.getRoot();
+
+    JdkMirror mirror = new JdkMirror(transport, new NullOutput());
+    mirror.setManifest(MirrorManifest.load(root));
+    JdkMirror.Summary summary = mirror.mirror(mirror.targets(rels, null, null, null, root));
+    assertEquals(2, summary.getAdded().size());
+    assertTrue(new File(root, MirrorManifest.FILE_NAME).isFile());
+    // the manifest is all the bookkeeping there is, nothing else ends up next to the binaries
+    File stamp = ValidationStamp.stampFile(new File(root, "8u92/hashed-nix.tar.gz"));
+    assertFalse(stamp.exists());
+    assertFalse(ValidationStamp.stampFile(new File(root, "8u92/plain-win.exe")).exists());
+
+    // nothing new, the catalog vouches for one and the server for the other
+    Instant verified = MirrorManifest.load(root).get("8u92/hashed-nix.tar.gz").getVerified();
+    mirror.setManifest(MirrorManifest.load(root));
+    summary = mirror.mirror(mirror.targets(rels, null, null, null, root));
+    assertEquals(2, summary.getValid().size());
+    assertEquals(2, transport.downloads.get());
+    assertEquals(1, transport.checks.get());
+    // wasn't even hashed
+    assertEquals(verified, MirrorManifest.load(root).get("8u92/hashed-nix.tar.gz").getVerified());
+
+    // stamps left behind by older versions get cleaned up
+    FileUtils.writeStringToFile(stamp, "", StandardCharsets.UTF_8);
+    mirror.setManifest(MirrorManifest.load(root));
+    mirror.mirror(mirror.targets(rels, null, null, null, root));
+    assertFalse(stamp.exists());
+
+    // changed on the server only
+    transport.versions.put("plain-win.exe", "v2");
+    mirror.setManifest(MirrorManifest.load(root));
+    summary = mirror.mirror(mirror.targets(rels, null, null, null, root));
+    assertEquals(1, summary.getValid().size());
+    assertEquals(1, summary.getChanged().size());
+    assertEquals("v1", summary.getChanged().values().iterator().next().getEtag());
+    assertEquals("plain-win.exe v2", FileUtils.readFileToString(new File(root, "8u92/plain-win.exe"), StandardCharsets.UTF_8));
+    assertEquals("v2", MirrorManifest.load(root).get("8u92/plain-win.exe").getEtag());
+
+    // broken locally
+    FileUtils.writeStringToFile(new File(root, "8u92/hashed-nix.tar.gz"), "garbage", StandardCharsets.UTF_8);
+    mirror.setManifest(MirrorManifest.load(root));
+    summary = mirror.mirror(mirror.targets(rels, null, null, null, root));
+    assertEquals(1, summary.getRepaired().size());
+    assertEquals(4, transport.downloads.get());
+
+    // dropped from the catalog and deleted
+    JdkReleases fewer = JdkReleases.newBuilder() //
+        .addBinary("8u92-b14", Arch.NIX_64, "8u92/hashed-nix.tar.gz", null, sha256(transport.content("hashed-nix.tar.gz")), -1) //
+        .build();
+    new File(root, "8u92/plain-win.exe").delete();
+    mirror.setManifest(MirrorManifest.load(root));
+    summary = mirror.mirror(mirror.targets(fewer, null, null, null, root));
+    assertEquals(1, summary.getRemoved().size());
+    assertNull(MirrorManifest.load(root).get("8u92/plain-win.exe"));
+
+    StringWriter report = new StringWriter();
+    summary.writeJson(report);
+    assertTrue(report.toString(), report.toString().contains("\"removed\": [\n    {\n      \"path\": \"8u92/plain-win.exe\""));
+  }
+
+  @Test
+  public void testThrottle() throws Exception {
+    assertEquals(10L * 1024L * 1024L, Util.parseSize("10M"));
+    assertEquals(512L * 1024L, Util.parseSize("512k"));
+    assertEquals(1000L, Util.parseSize("1000"));
+
+    // 300k at 100k/s
+    Throttle t = new Throttle(100000L);
+    long start = System.nanoTime();
+    for (int i = 0; i < 30; i++) {
+      t.acquire(10000L);
+    }
+    long elapsed = (System.nanoTime() - start) / 1000000L;
+    assertTrue("Took " + elapsed + "ms", elapsed >= 2500L);
+  }
+
+  @Test
+  public void testThrottleAfterIdle() throws Exception {
+    AtomicLong clock = new AtomicLong();
+    Throttle t = new Throttle(100L * 1024L * 1024L, clock::get);
+    t.acquire(1024L);
+
+    // an hour at 100M/s is more bytes than a long holds
+    clock.addAndGet(TimeUnit.HOURS.toNanos(1));
+    long start = System.nanoTime();
+    // a second worth of burst is available right away, the rest has to wait for it as usual
+    t.acquire(100L * 1024L * 1024L);
+    t.acquire(10L * 1024L * 1024L);
+    long elapsed = (System.nanoTime() - start) / 1000000L;
+    assertTrue("Took " + elapsed + "ms", elapsed >= 90L && elapsed < 1000L);
+  }
+}
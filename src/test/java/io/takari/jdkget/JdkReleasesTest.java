@@ -0,0 +1,231 @@
+package io.takari.jdkget;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import io.takari.jdkget.JdkReleases.JdkBinary;
+import io.takari.jdkget.JdkReleases.JdkRelease;
+
+public class JdkReleasesTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Test
+  public void testSelectMatchesScan() throws Exception {
+    JdkReleases rels = JdkReleases.readFromClasspath();
+
+    // every release in all its spellings, plus versions and builds that aren't in the list
+    Set<String> queries = new LinkedHashSet<>();
+    for (JdkRelease r : rels.getReleases()) {
+      JdkVersion v = r.getVersion();
+      queries.add(v.shortBuild());
+      queries.add(v.longBuild());
+      queries.add(v.shortVersion());
+      queries.add(Integer.toString(v.major));
+      if (v.major < 9) {
+        queries.add(v.major + "u" + (v.minor + 1));
+        queries.add(v.shortVersion() + "-b99");
+      }
+    }
+    queries.add("9.0");
+    queries.add("9.0.2");
+    queries.add("11");
+    queries.add("5");
+
+    int found = 0;
+    for (String q : queries) {
+      JdkVersion v;
+      try {
+        v = JdkVersion.parse(q);
+      } catch (NumberFormatException e) {
+        continue; // long form of ancient builds like 6u5b
+      }
+      JdkRelease expected;
+      try {
+        expected = scan(rels, v);
+      } catch (IllegalStateException e) {
+        expected = null;
+      }
+      JdkRelease actual;
+      try {
+        actual = rels.select(v);
+      } catch (IllegalStateException e) {
+        actual = null;
+      }
+      assertSame(q, expected, actual);
+      if (actual != null) {
+        found++;
+      }
+    }
+    assertTrue(found > rels.getReleases().size());
+  }
+
+  @Test
+  public void testStreamingParserMatchesDom() throws Exception {
+    JdkReleases expected;
+    try (InputStream in = getClass().getClassLoader().getResourceAsStream("jdkreleases.xml")) {
+      expected = new DomJdkReleasesParser().parse(in);
+    }
+    try (InputStream in = getClass().getClassLoader().getResourceAsStream("jdkreleases.xml")) {
+      assertSameReleases(expected, JdkReleases.read(in));
+    }
+  }
+
+  @Test
+  public void testPrecompiled() throws Exception {
+    JdkReleases expected;
+    try (InputStream in = getClass().getClassLoader().getResourceAsStream("jdkreleases.xml")) {
+      expected = JdkReleases.read(in);
+    }
+    // whether or not the build precompiled it
+    assertSameReleases(expected, JdkReleases.readFromClasspath());
+
+    File xml = temp.newFile("jdkreleases.xml");
+    try (InputStream in = getClass().getClassLoader().getResourceAsStream("jdkreleases.xml")) {
+      FileUtils.copyInputStreamToFile(in, xml);
+    }
+    File compiled = new File(temp.getRoot(), "jdkreleases.bin");
+    ReleaseListCompiler.compile(xml, compiled);
+    try (InputStream in = new FileInputStream(compiled)) {
+      assertSameReleases(expected, ReleaseCatalog.readSnapshot(in));
+    }
+  }
+
+  private static void assertSameReleases(JdkReleases expected, JdkReleases actual) {
+    assertEquals(expected.getReleases().size(), actual.getReleases().size());
+    for (int i = 0; i < expected.getReleases().size(); i++) {
+      JdkRelease e = expected.getReleases().get(i);
+      JdkRelease a = actual.getReleases().get(i);
+      assertEquals(e.getVersion().longBuild(), a.getVersion().longBuild());
+      assertEquals(e.isPsu(), a.isPsu());
+      assertEquals(new ArrayList<>(e.getArchs()), new ArrayList<>(a.getArchs()));
+      for (Arch arch : e.getArchs()) {
+        JdkBinary eb = e.getBinary(arch);
+        JdkBinary ab = a.getBinary(arch);
+        assertEquals(eb.getPath(), ab.getPath());
+        assertEquals(eb.getMd5(), ab.getMd5());
+        assertEquals(eb.getSha256(), ab.getSha256());
+        assertEquals(eb.getSize(), ab.getSize());
+      }
+    }
+    assertEquals(expected.getJCEs().size(), actual.getJCEs().size());
+    for (int i = 0; i < expected.getJCEs().size(); i++) {
+      assertEquals(expected.getJCEs().get(i).getMajorVersion(), actual.getJCEs().get(i).getMajorVersion());
+      assertEquals(expected.getJCEs().get(i).getPath(), actual.getJCEs().get(i).getPath());
+    }
+  }
+
+  @Test
+  public void testLatest() throws Exception {
+    JdkReleases rels = JdkReleases.newBuilder() //
+      .addBinary("8u92-b14", Arch.NIX_64, "a") //
+      .addBinary("8u91-b14", Arch.NIX_64, "b") //
+      .addBinary("7u80-b15", Arch.NIX_64, "c") //
+      .addBinary("7u79-b15", Arch.NIX_64, "d") //
+      .setPSU("8u92-b14") //
+      .setPSU("7u80-b15") //
+      .build();
+
+    assertEquals("8u92-b14", rels.latestInclPSU().getVersion().shortBuild());
+    assertEquals("8u91-b14", rels.latest().getVersion().shortBuild());
+    assertEquals("7u79-b15", rels.latest(7).getVersion().shortBuild());
+    assertEquals("7u80-b15", rels.select(JdkVersion.parse("7u80")).getVersion().shortBuild());
+  }
+
+  @Test
+  public void testRanges() throws Exception {
+    JdkReleases rels = JdkReleases.newBuilder() //
+      .addBinary("8u92-b14", Arch.NIX_64, "a") //
+      .addBinary("8u91-b14", Arch.NIX_64, "b") //
+      .addBinary("8u91-b15", Arch.NIX_64, "c") //
+      .addBinary("8u77-b03", Arch.NIX_64, "d") //
+      .addBinary("8u77-b03", Arch.OSX_64, "e") //
+      .addBinary("7u80-b15", Arch.OSX_64, "f") //
+      .build();
+
+    assertEquals(list("8u91-b15", "8u91-b14", "8u77-b03"), versions(rels.getReleases(JdkVersion.parse("8u77-b03"), JdkVersion.parse("8u91-b15"))));
+    assertEquals(list("8u92-b14", "8u91-b15", "8u91-b14"), versions(rels.getReleases(JdkVersion.parse("8u91-b14"), null)));
+    assertEquals(list("8u77-b03", "7u80-b15"), versions(rels.getReleases(null, JdkVersion.parse("8u77-b03"))));
+    assertEquals(5, rels.getReleases(null, null).size());
+    assertEquals(0, rels.getReleases(JdkVersion.parse("8u92-b14"), JdkVersion.parse("8u77-b03")).size());
+
+    assertEquals(list("8u77-b03", "7u80-b15"), versions(rels.getReleases(Arch.OSX_64)));
+    assertEquals(0, rels.getReleases(Arch.WIN_64).size());
+  }
+
+  private static List<String> list(String... versions) {
+    List<String> l = new ArrayList<>();
+    for (String v : versions) {
+      l.add(v);
+    }
+    return l;
+  }
+
+  private static List<String> versions(List<JdkRelease> rels) {
+    List<String> l = new ArrayList<>();
+    for (JdkRelease r : rels) {
+      l.add(r.getVersion().shortBuild());
+    }
+    return l;
+  }
+
+  // the linear lookup select used to do
+  private static JdkRelease scan(JdkReleases rels, JdkVersion ver) {
+    for (JdkRelease rel : rels.getReleases()) {
+      JdkVersion o = rel.getVersion();
+      if (o.major > ver.major) {
+        continue;
+      }
+      if (o.major < ver.major) {
+        break;
+      }
+      if (ver.minor == -1) {
+        if (rel.isPsu()) {
+          continue;
+        }
+        return rel;
+      }
+      if (o.minor > ver.minor) {
+        continue;
+      }
+      if (o.minor < ver.minor) {
+        break;
+      }
+      if (ver.security == -1 && o.security != -1) {
+        if (rel.isPsu()) {
+          continue;
+        }
+        return rel;
+      }
+      if (o.security > ver.security) {
+        continue;
+      }
+      if (o.security < ver.security) {
+        break;
+      }
+      if (ver.buildNumber == null || ver.buildNumber.isEmpty()) {
+        return rel;
+      }
+      if (o.buildNumber.equals(ver.buildNumber)) {
+        return rel;
+      }
+    }
+    throw new IllegalStateException("Unable to find jdk release for version " + ver);
+  }
+
+}
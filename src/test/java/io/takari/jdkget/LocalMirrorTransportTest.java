@@ -0,0 +1,107 @@
+package io.takari.jdkget;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.hash.Hashing;
+
+public class LocalMirrorTransportTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private static final String CONTENT = "jdk " + new String(new char[1000]).replace('\0', 'x');
+
+  private static JdkContext context(String content) {
+    JdkReleases rels = JdkReleases.newBuilder() //
+        .addBinary("8u92-b14", Arch.NIX_64, "otn-pub/java/jdk/8u92-b14/jdk-8u92-linux-x64.tar.gz", null, //
+            Hashing.sha256().hashString(content, StandardCharsets.UTF_8).toString(), content.length()) //
+        .build();
+    return new JdkContext(rels, JdkVersion.parse("8u92-b14"), Arch.NIX_64, new NullOutput());
+  }
+
+  @Test
+  public void testInstallFromMirror() throws Exception {
+    File root = temp.newFolder("mirror");
+    File mirrored = new File(root, "otn-pub/java/jdk/8u92-b14/jdk-8u92-linux-x64.tar.gz");
+    FileUtils.writeStringToFile(mirrored, CONTENT, StandardCharsets.UTF_8);
+
+    JdkContext ctx = context(CONTENT);
+    LocalMirrorTransport t = new LocalMirrorTransport(root);
+    File image = t.getImageFile(ctx, temp.newFolder("out"));
+    assertEquals("jdk-8u92-linux-x64.tar.gz", image.getName());
+
+    t.downloadJdk(ctx, image);
+    assertEquals(CONTENT, FileUtils.readFileToString(image, StandardCharsets.UTF_8));
+    // same file system, so it's the very same file
+    assertEquals(Files.readAttributes(mirrored.toPath(), BasicFileAttributes.class).fileKey(), Files.readAttributes(image.toPath(), BasicFileAttributes.class).fileKey());
+    // the installed image is stamped so it doesn't get hashed again, the mirror is left alone
+    assertFalse(ValidationStamp.stampFile(mirrored).exists());
+    assertTrue(ValidationStamp.isValid(image, ctx.getReleases().select(ctx.getVersion()).getBinary(Arch.NIX_64)));
+    assertTrue(t.validate(ctx, image));
+  }
+
+  @Test
+  public void testManifestVouches() throws Exception {
+    File root = temp.newFolder("mirror");
+    String path = "otn-pub/java/jdk/8u92-b14/jdk-8u92-linux-x64.tar.gz";
+    File mirrored = new File(root, path);
+    FileUtils.writeStringToFile(mirrored, CONTENT, StandardCharsets.UTF_8);
+
+    // the mirror run verified it, so it's taken as it is even though the content doesn't match
+    JdkContext ctx = context(CONTENT.replace('x', 'y'));
+    MirrorManifest manifest = MirrorManifest.load(root);
+    manifest.verified(path, mirrored, ctx.getReleases().select(ctx.getVersion()).getBinary(Arch.NIX_64), null);
+    manifest.save();
+
+    LocalMirrorTransport t = new LocalMirrorTransport(root);
+    t.downloadJdk(ctx, new File(temp.newFolder("out"), "jdk.tar.gz"));
+
+    t.setParanoid(true);
+    try {
+      t.downloadJdk(ctx, new File(temp.newFolder("paranoid"), "jdk.tar.gz"));
+      fail();
+    } catch (IOException e) {
+      // hashed after all
+    }
+    assertFalse(ValidationStamp.stampFile(mirrored).exists());
+  }
+
+  @Test
+  public void testInvalidMirror() throws Exception {
+    File root = temp.newFolder("mirror");
+    FileUtils.writeStringToFile(new File(root, "otn-pub/java/jdk/8u92-b14/jdk-8u92-linux-x64.tar.gz"), CONTENT, StandardCharsets.UTF_8);
+
+    JdkContext ctx = context(CONTENT.replace('x', 'y'));
+    File image = new File(temp.newFolder("out"), "jdk.tar.gz");
+    try {
+      new LocalMirrorTransport(root).downloadJdk(ctx, image);
+      fail();
+    } catch (IOException e) {
+      assertFalse(image.exists());
+    }
+  }
+
+  @Test
+  public void testLocalMirrorUrl() throws Exception {
+    File root = temp.newFolder("mirror");
+    assertEquals(root, JdkGetter.localMirror(root.toURI().toString()));
+    assertEquals(root, JdkGetter.localMirror(root.getPath()));
+    assertNull(JdkGetter.localMirror("http://example.com/otn-pub"));
+    assertNull(JdkGetter.localMirror(new File(root, "missing").getPath()));
+  }
+}
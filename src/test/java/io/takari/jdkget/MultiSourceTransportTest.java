@@ -0,0 +1,146 @@
+package io.takari.jdkget;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MultiSourceTransportTest {
+
+  private static final String PATH = "java/jdk/8u92-b14/jdk-8u92-linux-x64.tar.gz";
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private OracleSiteSimulator first;
+  private OracleSiteSimulator second;
+
+  @Before
+  public void startSites() throws IOException {
+    first = new OracleSiteSimulator();
+    second = new OracleSiteSimulator();
+  }
+
+  @After
+  public void stopSites() {
+    first.close();
+    second.close();
+  }
+
+  private static JdkContext context(byte[] data) {
+    JdkReleases rels = JdkReleases.newBuilder() //
+      .addBinary("8u92-b14", Arch.NIX_64, PATH, null, OracleSiteSimulator.sha256(data), data.length) //
+      .build();
+    return new JdkContext(rels, JdkVersion.parse("8u92-b14"), Arch.NIX_64, new NullOutput());
+  }
+
+  private static MultiSourceTransport transport(String... urls) {
+    List<String> sources = new ArrayList<>();
+    for (String url : urls) {
+      sources.add(url);
+    }
+    MultiSourceTransport t = new MultiSourceTransport(sources);
+    t.setChunkSize(16 * 1024);
+    return t;
+  }
+
+  private byte[] addBinary(int size) {
+    byte[] data = first.addBinary(PATH, size);
+    second.addBinary(PATH, data, false);
+    return data;
+  }
+
+  @Test
+  public void testStriped() throws Exception {
+    byte[] data = addBinary(300000);
+    File image = new File(temp.getRoot(), "jdk.tar.gz");
+    try (MultiSourceTransport t = transport(first.getMirrorUrl(), second.getMirrorUrl())) {
+      t.downloadJdk(context(data), image);
+      assertTrue(t.validate(context(data), image));
+    }
+    assertTrue(FileUtils.contentEquals(image, write(data)));
+    assertFalse(new File(image.getPath() + ".part").exists());
+    assertTrue(first.getRangeRequests() > 1);
+    assertTrue(second.getRangeRequests() > 1);
+  }
+
+  @Test
+  public void testCorruptSource() throws Exception {
+    byte[] data = addBinary(300000);
+    second.setCorrupt(true);
+    File image = new File(temp.getRoot(), "jdk.tar.gz");
+    try (MultiSourceTransport t = transport(first.getMirrorUrl(), second.getMirrorUrl())) {
+      t.downloadJdk(context(data), image);
+      assertTrue(t.validate(context(data), image));
+      assertTrue(FileUtils.contentEquals(image, write(data)));
+
+      // not asked for anything anymore
+      int requests = second.getRequests();
+      File again = new File(temp.getRoot(), "again.tar.gz");
+      t.downloadJdk(context(data), again);
+      assertTrue(FileUtils.contentEquals(again, write(data)));
+      assertEquals(requests, second.getRequests());
+    }
+  }
+
+  @Test
+  public void testFailover() throws Exception {
+    byte[] data = addBinary(300000);
+    OracleSiteSimulator gone = new OracleSiteSimulator();
+    String goneUrl = gone.getMirrorUrl();
+    gone.close();
+    // every range from the first source breaks off, so the second one ends up serving all of them
+    first.failDownloads(1000, 1000);
+    File image = new File(temp.getRoot(), "jdk.tar.gz");
+    try (MultiSourceTransport t = transport(goneUrl, first.getMirrorUrl(), second.getMirrorUrl())) {
+      t.downloadJdk(context(data), image);
+      assertTrue(t.validate(context(data), image));
+    }
+    assertTrue(FileUtils.contentEquals(image, write(data)));
+    assertTrue(second.getRangeRequests() > 1);
+  }
+
+  @Test
+  public void testWithoutRanges() throws Exception {
+    byte[] data = addBinary(300000);
+    first.setRanges(false);
+    second.setRanges(false);
+    // the probe and the download itself
+    first.failDownloads(2, 50000);
+    File image = new File(temp.getRoot(), "jdk.tar.gz");
+    try (MultiSourceTransport t = transport(first.getMirrorUrl(), second.getMirrorUrl())) {
+      try {
+        t.downloadJdk(context(data), image);
+        fail("Download should have broken off");
+      } catch (IOException e) {
+        // the broken download doesn't pass for the image
+        assertFalse(image.exists());
+      }
+
+      t.downloadJdk(context(data), image);
+      assertTrue(t.validate(context(data), image));
+    }
+    assertTrue(FileUtils.contentEquals(image, write(data)));
+    assertFalse(new File(image.getPath() + ".part").exists());
+    assertEquals(0, first.getRangeRequests() + second.getRangeRequests());
+  }
+
+  private File write(byte[] data) throws IOException {
+    File f = temp.newFile();
+    FileUtils.writeByteArrayToFile(f, data);
+    return f;
+  }
+
+}
@@ -0,0 +1,556 @@
+package io.takari.jdkget;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.io.IOUtils;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Local stand-in for download.oracle.com and login.oracle.com, for testing transports without going online.
+ * <p>
+ * Binaries are served under {@link #getUrl()} the way the real site does: the public url redirects a couple of times
+ * before landing on a download url with an expiring {@code AuthParam}, binaries only available to OTN accounts 404
+ * under {@code /otn-pub/} and send you through a login form or basic auth under {@code /otn/}. Downloads support
+ * ranges, {@code If-Range} and conditional requests, and can be throttled, stalled or made to fail.
+ * <p>
+ * The same binaries are also served directly under {@link #getMirrorUrl()}, the way a mirror of the site would.
+ * <p>
+ * The login pages are served under the {@code localhost} host name and everything else under {@code 127.0.0.1}, so
+ * the transport can tell them apart ({@link OracleWebsiteTransport#setLoginHost(String)}).
+ */
+public class OracleSiteSimulator implements Closeable {
+
+  public enum Login {
+    FORM, BASIC
+  }
+
+  private static class Binary {
+    final byte[] data;
+    final String etag;
+    final boolean otnOnly;
+
+    Binary(byte[] data, boolean otnOnly) {
+      this.data = data;
+      this.etag = "\"" + sha256(data).substring(0, 16) + "\"";
+      this.otnOnly = otnOnly;
+    }
+  }
+
+  public static final String LAST_MODIFIED = "Tue, 18 Apr 2017 12:00:00 GMT";
+
+  private final HttpServer server;
+  private final ExecutorService executor;
+  private final Map<String, Binary> binaries = new ConcurrentHashMap<>();
+
+  private volatile int redirects = 2;
+  private volatile Login login = Login.FORM;
+  private volatile String username = "user";
+  private volatile String password = "secret";
+  private volatile String contentType = "application/x-gzip";
+  private volatile boolean ranges = true;
+  private volatile long bytesPerSecond;
+  private volatile long stall;
+  private final AtomicInteger stalls = new AtomicInteger();
+  private volatile long stallNext;
+  private final AtomicInteger throttled = new AtomicInteger();
+  private volatile long throttleNext;
+  private final AtomicInteger failures = new AtomicInteger();
+  private volatile long failAfter;
+  private volatile Runnable afterFailures;
+  private final AtomicInteger errors = new AtomicInteger();
+  private final AtomicInteger linkGeneration = new AtomicInteger();
+  private volatile boolean expiredPage;
+  private volatile int errorStatus = 503;
+  private volatile boolean corrupt;
+
+  private final AtomicInteger requests = new AtomicInteger();
+  private final AtomicInteger redirectsServed = new AtomicInteger();
+  private final AtomicInteger logins = new AtomicInteger();
+  private final AtomicInteger downloads = new AtomicInteger();
+  private final AtomicInteger rangeRequests = new AtomicInteger();
+  private final List<String> rangesServed = new CopyOnWriteArrayList<>();
+  private final AtomicInteger notModified = new AtomicInteger();
+  private final AtomicLong bytesServed = new AtomicLong();
+
+  public OracleSiteSimulator() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    executor = Executors.newCachedThreadPool(r -> {
+      Thread t = new Thread(r, "oracle-site-simulator");
+      t.setDaemon(true);
+      return t;
+    });
+    server.setExecutor(executor);
+    server.createContext("/", this::handle);
+    server.start();
+  }
+
+  /**
+   * What to pass to the transport instead of {@link OracleWebsiteTransport#ORACLE_WEBSITE}
+   */
+  public String getUrl() {
+    return base() + "/otn-pub";
+  }
+
+  /**
+   * Where the binaries are served without any redirects or logins, like a mirror populated with {@code -mirror}
+   */
+  public String getMirrorUrl() {
+    return base() + "/mirror";
+  }
+
+  public String getLoginHost() {
+    return "localhost";
+  }
+
+  private String base() {
+    return "http://127.0.0.1:" + server.getAddress().getPort();
+  }
+
+  private String loginBase() {
+    return "http://" + getLoginHost() + ":" + server.getAddress().getPort();
+  }
+
+  /**
+   * Serves {@code size} random bytes as {@code path}, relative to {@link #getUrl()}
+   *
+   * @return the content
+   */
+  public byte[] addBinary(String path, int size) {
+    byte[] data = new byte[size];
+    new Random(path.hashCode()).nextBytes(data);
+    addBinary(path, data, false);
+    return data;
+  }
+
+  /**
+   * @param otnOnly only available after logging in with an OTN account
+   */
+  public void addBinary(String path, byte[] data, boolean otnOnly) {
+    binaries.put(path, new Binary(data, otnOnly));
+  }
+
+  /**
+   * Digest of {@code data} the way the catalog has it
+   */
+  public static String sha256(byte[] data) {
+    try {
+      return Digests.hex(MessageDigest.getInstance("SHA-256").digest(data));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  public void setRedirects(int redirects) {
+    this.redirects = redirects;
+  }
+
+  public void setLogin(Login login) {
+    this.login = login;
+  }
+
+  public void setCredentials(String username, String password) {
+    this.username = username;
+    this.password = password;
+  }
+
+  /**
+   * Content type of downloads, the transport should refuse anything that doesn't look like a binary
+   */
+  public void setContentType(String contentType) {
+    this.contentType = contentType;
+  }
+
+  public void setRanges(boolean ranges) {
+    this.ranges = ranges;
+  }
+
+  /**
+   * Limits every download connection to this rate, 0 for no limit
+   */
+  public void setBandwidth(long bytesPerSecond) {
+    this.bytesPerSecond = bytesPerSecond;
+  }
+
+  /**
+   * Delays every download response by this many milliseconds before sending anything
+   */
+  public void setStall(long stall) {
+    this.stall = stall;
+  }
+
+  /**
+   * Delays the next {@code count} download responses by {@code stall} milliseconds
+   */
+  public void stallDownloads(int count, long stall) {
+    this.stallNext = stall;
+    this.stalls.set(count);
+  }
+
+  /**
+   * Limits the next {@code count} download connections to {@code bytesPerSecond}
+   */
+  public void throttleDownloads(int count, long bytesPerSecond) {
+    this.throttleNext = bytesPerSecond;
+    this.throttled.set(count);
+  }
+
+  /**
+   * Drops the connection of the next {@code count} downloads after sending {@code afterBytes} of the body
+   */
+  public void failDownloads(int count, long afterBytes) {
+    failDownloads(count, afterBytes, null);
+  }
+
+  /**
+   * Like {@link #failDownloads(int, long)}, running {@code afterwards} once the last of them has been dropped, e.g. to
+   * publish changed content
+   */
+  public void failDownloads(int count, long afterBytes, Runnable afterwards) {
+    this.failAfter = afterBytes;
+    this.afterFailures = afterwards;
+    this.failures.set(count);
+  }
+
+  /**
+   * Answers the next {@code count} download requests with {@code status}
+   */
+  public void failWithStatus(int count, int status) {
+    this.errorStatus = status;
+    this.errors.set(count);
+  }
+
+  /**
+   * Flips every byte of the binaries served from now on, while still claiming the original content
+   */
+  public void setCorrupt(boolean corrupt) {
+    this.corrupt = corrupt;
+  }
+
+  /**
+   * Makes every download url handed out so far expire, whatever their {@code AuthParam} says
+   *
+   * @param page answer them with a login page, the way the real site does once a session is gone, rather than a 403
+   */
+  public void expireLinks(boolean page) {
+    this.expiredPage = page;
+    linkGeneration.incrementAndGet();
+  }
+
+  public int getRequests() {
+    return requests.get();
+  }
+
+  public int getRedirectsServed() {
+    return redirectsServed.get();
+  }
+
+  public int getLogins() {
+    return logins.get();
+  }
+
+  /**
+   * Download responses with a body, full or partial
+   */
+  public int getDownloads() {
+    return downloads.get();
+  }
+
+  public int getRangeRequests() {
+    return rangeRequests.get();
+  }
+
+  /**
+   * {@code Range} headers of the requests answered with partial content, in the order they came in
+   */
+  public List<String> getRangesServed() {
+    return rangesServed;
+  }
+
+  public int getNotModified() {
+    return notModified.get();
+  }
+
+  public long getBytesServed() {
+    return bytesServed.get();
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+    executor.shutdownNow();
+  }
+
+  private void handle(HttpExchange ex) throws IOException {
+    requests.incrementAndGet();
+    try {
+      // the server resets the connection now and then if a request isn't read to the end before responding
+      byte[] body;
+      try (InputStream in = ex.getRequestBody()) {
+        body = IOUtils.toByteArray(in);
+      }
+      String path = ex.getRequestURI().getPath();
+      if (path.startsWith("/otn-pub/")) {
+        publicUrl(ex, path.substring("/otn-pub/".length()));
+      } else if (path.startsWith("/otn/")) {
+        otnUrl(ex, path.substring("/otn/".length()));
+      } else if (path.startsWith("/redirect/")) {
+        redirect(ex, path.substring("/redirect/".length()));
+      } else if (path.equals("/login")) {
+        loginPage(ex);
+      } else if (path.equals("/login/submit")) {
+        loginSubmit(ex, body);
+      } else if (path.equals("/login/basic")) {
+        loginBasic(ex);
+      } else if (path.startsWith("/download/")) {
+        download(ex, path.substring("/download/".length()));
+      } else if (path.startsWith("/mirror/")) {
+        serve(ex, binaries.get(path.substring("/mirror/".length())));
+      } else {
+        respond(ex, 404);
+      }
+    } catch (IOException | RuntimeException e) {
+      // gone or dropped on purpose
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      ex.close();
+    }
+  }
+
+  private void publicUrl(HttpExchange ex, String path) throws IOException {
+    Binary bin = binaries.get(path);
+    if (bin == null || bin.otnOnly) {
+      respond(ex, 404);
+      return;
+    }
+    redirect(ex, redirects + "/" + path);
+  }
+
+  private void otnUrl(HttpExchange ex, String path) throws IOException {
+    if (binaries.get(path) == null) {
+      respond(ex, 404);
+      return;
+    }
+    redirectTo(ex, loginBase() + "/login?redirect=" + URLEncoder.encode(path, "UTF-8"));
+  }
+
+  /**
+   * {@code <hops left>/<path>}
+   */
+  private void redirect(HttpExchange ex, String hopsAndPath) throws IOException {
+    int slash = hopsAndPath.indexOf('/');
+    int hops = Integer.parseInt(hopsAndPath.substring(0, slash));
+    String path = hopsAndPath.substring(slash + 1);
+    redirectsServed.incrementAndGet();
+    if (hops > 1) {
+      redirectTo(ex, base() + "/redirect/" + (hops - 1) + "/" + path);
+    } else {
+      redirectTo(ex, downloadUrl(path));
+    }
+  }
+
+  private String downloadUrl(String path) {
+    // like the real thing, good for a while
+    return base() + "/download/" + path + "?AuthParam=" + (System.currentTimeMillis() / 1000 + 600) + "_" + Integer.toHexString(path.hashCode()) + "." + linkGeneration.get();
+  }
+
+  private void loginPage(HttpExchange ex) throws IOException {
+    String redirect = query(ex.getRequestURI()).get("redirect");
+    logins.incrementAndGet();
+    if (login == Login.BASIC) {
+      ex.getResponseHeaders().add("Location", loginBase() + "/login/basic?redirect=" + URLEncoder.encode(redirect, "UTF-8"));
+      respond(ex, 401);
+      return;
+    }
+    String page = "<html><body><form action=\"/login/submit\" method=\"post\">" //
+        + "<input type=\"hidden\" name=\"redirect\" value=\"" + redirect + "\">" //
+        + "<input type=\"text\" name=\"ssousername\" value=\"\">" //
+        + "<input type=\"password\" name=\"password\" value=\"\">" //
+        + "</form></body></html>";
+    html(ex, page);
+  }
+
+  private void loginSubmit(HttpExchange ex, byte[] body) throws IOException {
+    Map<String, String> form = parse(new String(body, StandardCharsets.UTF_8));
+    if (!username.equals(form.get("ssousername")) || !password.equals(form.get("password"))) {
+      respond(ex, 403);
+      return;
+    }
+    redirectTo(ex, downloadUrl(form.get("redirect")));
+  }
+
+  private void loginBasic(HttpExchange ex) throws IOException {
+    String auth = ex.getRequestHeaders().getFirst("Authorization");
+    String expected = "Basic " + Base64.getEncoder().encodeToString((username + ":" + password).getBytes(StandardCharsets.UTF_8));
+    if (!expected.equals(auth)) {
+      respond(ex, 403);
+      return;
+    }
+    redirectTo(ex, downloadUrl(query(ex.getRequestURI()).get("redirect")));
+  }
+
+  private void download(HttpExchange ex, String path) throws IOException, InterruptedException {
+    Binary bin = binaries.get(path);
+    String authParam = query(ex.getRequestURI()).get("AuthParam");
+    if (bin == null || authParam == null) {
+      respond(ex, 404);
+      return;
+    }
+    long expires = Long.parseLong(authParam.substring(0, authParam.indexOf('_')));
+    if (expires < System.currentTimeMillis() / 1000 || !authParam.endsWith("." + linkGeneration.get())) {
+      if (expiredPage) {
+        html(ex, "<html><body>Please sign in</body></html>");
+      } else {
+        respond(ex, 403);
+      }
+      return;
+    }
+    serve(ex, bin);
+  }
+
+  private void serve(HttpExchange ex, Binary bin) throws IOException, InterruptedException {
+    if (bin == null) {
+      respond(ex, 404);
+      return;
+    }
+    long delay = stalls.getAndUpdate(n -> Math.max(0, n - 1)) > 0 ? stallNext : stall;
+    if (delay > 0) {
+      Thread.sleep(delay);
+    }
+    if (errors.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+      respond(ex, errorStatus);
+      return;
+    }
+
+    Headers req = ex.getRequestHeaders();
+    Headers res = ex.getResponseHeaders();
+    res.add("Content-Type", contentType);
+    res.add("ETag", bin.etag);
+    res.add("Last-Modified", LAST_MODIFIED);
+    if (bin.etag.equals(req.getFirst("If-None-Match"))) {
+      notModified.incrementAndGet();
+      respond(ex, 304);
+      return;
+    }
+
+    long start = 0;
+    long end = bin.data.length;
+    int status = 200;
+    String range = req.getFirst("Range");
+    String ifRange = req.getFirst("If-Range");
+    if (ranges) {
+      res.add("Accept-Ranges", "bytes");
+      if (range != null && range.startsWith("bytes=") && (ifRange == null || ifRange.equals(bin.etag) || ifRange.equals(LAST_MODIFIED))) {
+        String[] r = range.substring("bytes=".length()).split("-", -1);
+        start = Long.parseLong(r[0]);
+        if (!r[1].isEmpty()) {
+          end = Math.min(end, Long.parseLong(r[1]) + 1);
+        }
+        if (start >= end) {
+          res.add("Content-Range", "bytes */" + bin.data.length);
+          respond(ex, 416);
+          return;
+        }
+        status = 206;
+        res.add("Content-Range", "bytes " + start + "-" + (end - 1) + "/" + bin.data.length);
+        rangeRequests.incrementAndGet();
+        rangesServed.add(range);
+      }
+    }
+
+    downloads.incrementAndGet();
+    int failuresLeft = failures.getAndUpdate(n -> Math.max(0, n - 1));
+    boolean fail = failuresLeft > 0;
+    long rate = throttled.getAndUpdate(n -> Math.max(0, n - 1)) > 0 ? throttleNext : bytesPerSecond;
+    ex.sendResponseHeaders(status, end - start);
+    OutputStream out = ex.getResponseBody();
+    long limit = fail ? Math.min(end, start + failAfter) : end;
+    byte[] data = bin.data;
+    if (corrupt) {
+      data = data.clone();
+      for (int i = 0; i < data.length; i++) {
+        data[i] ^= 0xff;
+      }
+    }
+    long pos = start;
+    while (pos < limit) {
+      int n = (int) Math.min(16 * 1024, limit - pos);
+      out.write(data, (int) pos, n);
+      pos += n;
+      bytesServed.addAndGet(n);
+      if (rate > 0) {
+        Thread.sleep(Math.max(1L, n * 1000L / rate));
+      }
+    }
+    if (fail) {
+      out.flush();
+      Runnable afterwards = afterFailures;
+      if (failuresLeft == 1 && afterwards != null) {
+        afterwards.run();
+      }
+      // closing the exchange short of the announced length drops the connection
+      throw new IOException("Dropping connection at " + pos);
+    }
+    out.close();
+  }
+
+  private static void html(HttpExchange ex, String page) throws IOException {
+    byte[] body = page.getBytes(StandardCharsets.UTF_8);
+    ex.getResponseHeaders().add("Content-Type", "text/html");
+    ex.sendResponseHeaders(200, body.length);
+    try (OutputStream out = ex.getResponseBody()) {
+      out.write(body);
+    }
+  }
+
+  private static void redirectTo(HttpExchange ex, String location) throws IOException {
+    ex.getResponseHeaders().add("Location", location);
+    respond(ex, 302);
+  }
+
+  private static void respond(HttpExchange ex, int status) throws IOException {
+    ex.sendResponseHeaders(status, -1);
+  }
+
+  private static Map<String, String> query(URI uri) throws IOException {
+    return parse(uri.getRawQuery());
+  }
+
+  private static Map<String, String> parse(String encoded) throws IOException {
+    Map<String, String> params = new HashMap<>();
+    if (encoded != null) {
+      for (String p : encoded.split("&")) {
+        int eq = p.indexOf('=');
+        if (eq != -1) {
+          params.put(URLDecoder.decode(p.substring(0, eq), "UTF-8"), URLDecoder.decode(p.substring(eq + 1), "UTF-8"));
+        }
+      }
+    }
+    return params;
+  }
+
+}
@@ -0,0 +1,333 @@
+package io.takari.jdkget;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class OracleWebsiteTransportTest {
+
+  private static final String PATH = "java/jdk/8u92-b14/jdk-8u92-linux-x64.tar.gz";
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private OracleSiteSimulator site;
+
+  @Before
+  public void startSite() throws IOException {
+    site = new OracleSiteSimulator();
+  }
+
+  @After
+  public void stopSite() {
+    site.close();
+  }
+
+  private static JdkContext context(byte[] data) {
+    JdkReleases rels = JdkReleases.newBuilder() //
+      .addBinary("8u92-b14", Arch.NIX_64, PATH, null, OracleSiteSimulator.sha256(data), data.length) //
+      .build();
+    return new JdkContext(rels, JdkVersion.parse("8u92-b14"), Arch.NIX_64, new NullOutput());
+  }
+
+  private OracleWebsiteTransport transport(String username, String password) {
+    OracleWebsiteTransport t = new OracleWebsiteTransport(site.getUrl(), username, password);
+    t.setLoginHost(site.getLoginHost());
+    return t;
+  }
+
+  @Test
+  public void testRedirects() throws Exception {
+    byte[] data = site.addBinary(PATH, 100000);
+    site.setRedirects(3);
+    File image = new File(temp.getRoot(), "jdk.tar.gz");
+    try (OracleWebsiteTransport t = transport(null, null)) {
+      t.downloadJdk(context(data), image);
+      assertTrue(t.validate(context(data), image));
+    }
+    assertTrue(FileUtils.contentEquals(image, write(data)));
+    assertEquals(3, site.getRedirectsServed());
+    assertEquals(1, site.getDownloads());
+  }
+
+  @Test
+  public void testResolvedUrlReused() throws Exception {
+    byte[] data = site.addBinary(PATH, 100000);
+    site.setRedirects(3);
+    File image = new File(temp.getRoot(), "jdk.tar.gz");
+    try (OracleWebsiteTransport t = transport(null, null)) {
+      t.downloadJdk(context(data), new File(temp.getRoot(), "first.tar.gz"));
+      int requests = site.getRequests();
+      t.downloadJdk(context(data), image);
+      assertTrue(t.validate(context(data), image));
+      // straight to where the redirects led the first time
+      assertEquals(requests + 1, site.getRequests());
+    }
+    assertTrue(FileUtils.contentEquals(image, write(data)));
+    assertEquals(3, site.getRedirectsServed());
+    assertEquals(2, site.getDownloads());
+  }
+
+  @Test
+  public void testExpiredResolvedUrl() throws Exception {
+    byte[] data = site.addBinary(PATH, 100000);
+    File image = new File(temp.getRoot(), "jdk.tar.gz");
+    try (OracleWebsiteTransport t = transport(null, null)) {
+      t.downloadJdk(context(data), new File(temp.getRoot(), "first.tar.gz"));
+      site.expireLinks(true);
+      t.downloadJdk(context(data), image);
+      assertTrue(t.validate(context(data), image));
+      // resolved again this time, and from then on the new url is the one to use
+      t.downloadJdk(context(data), new File(temp.getRoot(), "third.tar.gz"));
+    }
+    assertEquals(4, site.getRedirectsServed());
+    assertEquals(3, site.getDownloads());
+  }
+
+  @Test
+  public void testFormLogin() throws Exception {
+    byte[] data = site.addBinary(PATH, 100000);
+    site.addBinary(PATH, data, true);
+    File image = new File(temp.getRoot(), "jdk.tar.gz");
+    try (OracleWebsiteTransport t = transport("user", "secret")) {
+      t.downloadJdk(context(data), image);
+      assertTrue(t.validate(context(data), image));
+    }
+    assertEquals(1, site.getLogins());
+  }
+
+  @Test
+  public void testBasicLogin() throws Exception {
+    byte[] data = site.addBinary(PATH, 100000);
+    site.addBinary(PATH, data, true);
+    site.setLogin(OracleSiteSimulator.Login.BASIC);
+    File image = new File(temp.getRoot(), "jdk.tar.gz");
+    try (OracleWebsiteTransport t = transport("user", "secret")) {
+      t.downloadJdk(context(data), image);
+      assertTrue(t.validate(context(data), image));
+    }
+    assertEquals(1, site.getLogins());
+  }
+
+  @Test
+  public void testOtnOnlyWithoutCredentials() throws Exception {
+    byte[] data = site.addBinary(PATH, 100000);
+    site.addBinary(PATH, data, true);
+    try (OracleWebsiteTransport t = transport(null, null)) {
+      t.downloadJdk(context(data), new File(temp.getRoot(), "jdk.tar.gz"));
+      fail();
+    } catch (IOException e) {
+      assertEquals("Could not download jdk", e.getMessage());
+    }
+    assertEquals(0, site.getLogins());
+  }
+
+  @Test
+  public void testContentType() throws Exception {
+    byte[] data = site.addBinary(PATH, 100000);
+    site.setContentType("text/html");
+    try (OracleWebsiteTransport t = transport(null, null)) {
+      t.downloadJdk(context(data), new File(temp.getRoot(), "jdk.tar.gz"));
+      fail();
+    } catch (IOException e) {
+      assertTrue(e.getMessage(), e.getMessage().startsWith("Unsupported content type"));
+    }
+  }
+
+  @Test
+  public void testResume() throws Exception {
+    byte[] data = site.addBinary(PATH, 3 * 1024 * 1024);
+    site.failDownloads(1, 2 * 1024 * 1024);
+    File image = new File(temp.getRoot(), "jdk.tar.gz");
+    try (OracleWebsiteTransport t = transport(null, null)) {
+      try {
+        t.downloadJdk(context(data), image);
+        fail();
+      } catch (IOException e) {
+        // dropped
+      }
+      t.downloadJdk(context(data), image);
+      assertTrue(t.validate(context(data), image));
+    }
+    assertEquals(1, site.getRangeRequests());
+    // picked up somewhere after the first megabyte, instead of starting over
+    assertTrue(site.getBytesServed() < 2 * data.length);
+  }
+
+  @Test
+  public void testResumeRoundTrip() throws Exception {
+    byte[] data = site.addBinary(PATH, 3 * 1024 * 1024);
+    site.setRedirects(2);
+    site.failDownloads(1, 1024 * 1024 + 12345);
+    File image = new File(temp.getRoot(), "jdk.tar.gz");
+    try (OracleWebsiteTransport t = transport(null, null)) {
+      try {
+        t.downloadJdk(context(data), image);
+        fail();
+      } catch (IOException e) {
+        // dropped
+      }
+      // what we have so far is kept aside along with where it ends
+      assertFalse(image.exists());
+      DownloadState state = DownloadState.load(image);
+      assertNotNull(state);
+      long committed = state.committed();
+      assertTrue(committed > 0 && committed <= 1024 * 1024 + 12345);
+      assertEquals(OracleSiteSimulator.LAST_MODIFIED, state.getLastModified());
+
+      t.downloadJdk(context(data), image);
+      assertTrue(t.validate(context(data), image));
+      // asked for exactly the rest at the url the redirects led to
+      assertEquals(Arrays.asList("bytes=" + committed + "-"), site.getRangesServed());
+      assertEquals(2, site.getRedirectsServed());
+    }
+    assertTrue(FileUtils.contentEquals(image, write(data)));
+    assertFalse(new File(image.getPath() + ".part").exists());
+    assertFalse(new File(image.getPath() + ".part.state").exists());
+  }
+
+  @Test
+  public void testResumeCorruptPart() throws Exception {
+    byte[] data = site.addBinary(PATH, 3 * 1024 * 1024);
+    site.failDownloads(1, 1024 * 1024);
+    File image = new File(temp.getRoot(), "jdk.tar.gz");
+    try (OracleWebsiteTransport t = transport(null, null)) {
+      try {
+        t.downloadJdk(context(data), image);
+        fail();
+      } catch (IOException e) {
+        // dropped
+      }
+      // damaged on disk in between, the resumed download only fetches what comes after it
+      try (RandomAccessFile part = new RandomAccessFile(image.getPath() + ".part", "rw")) {
+        part.seek(1000);
+        part.write(~data[1000]);
+      }
+      t.downloadJdk(context(data), image);
+      assertEquals(1, site.getRangeRequests());
+
+      // the part read back from disk is hashed along with the rest, rather than assumed good
+      Digests known = t.knownDigests(image);
+      assertNotNull(known);
+      assertFalse(OracleSiteSimulator.sha256(data).equals(known.getSha256()));
+      assertFalse(t.validate(context(data), image));
+    }
+  }
+
+  @Test
+  public void testResumeDropped() throws Exception {
+    byte[] data = site.addBinary(PATH, 3 * 1024 * 1024);
+    byte[] changed = data.clone();
+    changed[0]++;
+    // the resumed download drops as well, and by the time it's requested again the binary has been republished
+    site.failDownloads(2, 1024 * 1024, () -> site.addBinary(PATH, changed, false));
+    File image = new File(temp.getRoot(), "jdk.tar.gz");
+    try (OracleWebsiteTransport t = transport(null, null)) {
+      try {
+        t.downloadJdk(context(data), image);
+        fail();
+      } catch (IOException e) {
+        // dropped
+      }
+      t.downloadJdk(context(changed), image);
+      // hashed while downloading, without the bytes of the dropped attempts
+      Digests known = t.knownDigests(image);
+      assertNotNull(known);
+      assertEquals(OracleSiteSimulator.sha256(changed), known.getSha256());
+      assertTrue(t.validate(context(changed), image));
+      // used up by the validation
+      assertNull(t.knownDigests(image));
+    }
+    assertEquals(1, site.getRangeRequests());
+    assertTrue(FileUtils.contentEquals(image, write(changed)));
+  }
+
+  @Test
+  public void testSegments() throws Exception {
+    byte[] data = site.addBinary(PATH, 4 * 1024 * 1024);
+    File image = new File(temp.getRoot(), "jdk.tar.gz");
+    try (OracleWebsiteTransport t = transport(null, null)) {
+      t.setSegments(4);
+      t.downloadJdk(context(data), image);
+      assertTrue(t.validate(context(data), image));
+    }
+    assertEquals(4, site.getRangeRequests());
+  }
+
+  @Test
+  public void testSegmentRetry() throws Exception {
+    int segment = 1024 * 1024;
+    byte[] data = site.addBinary(PATH, 4 * segment);
+    // the first response is dropped anyway to go for ranges, the second one is a segment
+    site.failDownloads(2, 100000);
+    File image = new File(temp.getRoot(), "jdk.tar.gz");
+    try (OracleWebsiteTransport t = transport(null, null)) {
+      t.setSegments(4);
+      t.downloadJdk(context(data), image);
+      assertTrue(t.validate(context(data), image));
+    }
+    assertTrue(FileUtils.contentEquals(image, write(data)));
+
+    // every segment asked for once, and the dropped one continued where it broke off
+    List<String> ranges = new ArrayList<>(site.getRangesServed());
+    assertEquals(5, ranges.size());
+    for (int i = 0; i < 4; i++) {
+      assertTrue(ranges.remove("bytes=" + i * segment + "-" + ((i + 1) * segment - 1)));
+    }
+    String retry = ranges.get(0);
+    long start = Long.parseLong(retry.substring("bytes=".length(), retry.indexOf('-')));
+    assertTrue(retry, start % segment > 0 && start % segment <= 100000);
+    assertTrue(retry, retry.endsWith("-" + ((start / segment + 1) * segment - 1)));
+  }
+
+  @Test
+  public void testNotModified() throws Exception {
+    byte[] data = site.addBinary(PATH, 100000);
+    File image = new File(temp.getRoot(), "jdk.tar.gz");
+    try (OracleWebsiteTransport t = transport(null, null)) {
+      t.downloadJdk(context(data), image);
+      HttpValidators v = t.getValidators(image);
+      assertNotNull(v);
+      assertFalse(t.isModified(context(data), v));
+      assertTrue(t.isModified(context(data), new HttpValidators("\"other\"", null)));
+    }
+    assertEquals(1, site.getNotModified());
+  }
+
+  @Test
+  public void testRedirectWithoutLocation() throws Exception {
+    byte[] data = site.addBinary(PATH, 100000);
+    File image = new File(temp.getRoot(), "jdk.tar.gz");
+    try (OracleWebsiteTransport t = transport(null, null)) {
+      t.downloadJdk(context(data), image);
+      HttpValidators v = t.getValidators(image);
+      site.failWithStatus(1, 302);
+      assertTrue(t.isModified(context(data), v));
+    }
+    assertEquals(0, site.getNotModified());
+  }
+
+  private File write(byte[] data) throws IOException {
+    File f = temp.newFile();
+    FileUtils.writeByteArrayToFile(f, data);
+    return f;
+  }
+
+}
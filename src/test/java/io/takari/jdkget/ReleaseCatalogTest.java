@@ -0,0 +1,192 @@
+package io.takari.jdkget;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.sun.net.httpserver.HttpServer;
+
+import io.takari.jdkget.JdkReleases.JdkRelease;
+
+public class ReleaseCatalogTest {
+
+  private static final String XML = "<jdks>\n" //
+      + "  <jce version=\"8\"><url>java/jce/8/jce_policy-8.zip</url></jce>\n" //
+      + "  <defaults><url>java/jdk/${version}${build}/jdk-${version}-${arch}.${ext}</url></defaults>\n" //
+      + "  <jdk version=\"%s\" psu=\"true\">\n" //
+      + "    <bin cls=\"nix_64\" arch=\"linux-x64\" ext=\"tar.gz\"><sha256>abc</sha256><size>42</size></bin>\n" //
+      + "    <bin cls=\"osx_64\" arch=\"macosx-x64\" ext=\"dmg\"><md5>def</md5></bin>\n" //
+      + "  </jdk>\n" //
+      + "</jdks>\n";
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private HttpServer server;
+  private final AtomicInteger requests = new AtomicInteger();
+  private final AtomicInteger notModified = new AtomicInteger();
+  private volatile String version = "8u999-b01";
+  private volatile long delay;
+
+  @Before
+  public void startServer() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/jdkreleases.xml", ex -> {
+      requests.incrementAndGet();
+      try {
+        Thread.sleep(delay);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      String etag = "\"" + version + "\"";
+      ex.getResponseHeaders().add("ETag", etag);
+      if (etag.equals(ex.getRequestHeaders().getFirst("If-None-Match"))) {
+        notModified.incrementAndGet();
+        ex.sendResponseHeaders(304, -1);
+      } else {
+        byte[] body = String.format(XML, version).getBytes(StandardCharsets.UTF_8);
+        ex.sendResponseHeaders(200, body.length);
+        try (OutputStream out = ex.getResponseBody()) {
+          out.write(body);
+        }
+      }
+      ex.close();
+    });
+    server.start();
+  }
+
+  @After
+  public void stopServer() {
+    server.stop(0);
+  }
+
+  private String url() {
+    return "http://127.0.0.1:" + server.getAddress().getPort() + "/jdkreleases.xml";
+  }
+
+  @Test
+  public void testServesBuiltinWhileFetching() throws Exception {
+    delay = 2000L;
+    File snapshot = new File(temp.getRoot(), "jdkreleases.bin");
+    ReleaseCatalog catalog = new ReleaseCatalog(url(), snapshot, 60000L);
+
+    long start = System.currentTimeMillis();
+    JdkReleases builtin = catalog.get(new NullOutput());
+    assertTrue(System.currentTimeMillis() - start < delay);
+    assertEquals(JdkReleases.readFromClasspath().getReleases().size(), builtin.getReleases().size());
+
+    JdkReleases fetched = catalog.refresh(new NullOutput());
+    assertEquals(1, requests.get());
+    assertEquals("8u999-b01", fetched.latestInclPSU().getVersion().shortBuild());
+    assertSame(fetched, catalog.get(new NullOutput()));
+    assertTrue(snapshot.isFile());
+  }
+
+  @Test
+  public void testSnapshot() throws Exception {
+    File snapshot = new File(temp.getRoot(), "jdkreleases.bin");
+    JdkReleases fetched = new ReleaseCatalog(url(), snapshot, 60000L).refresh(new NullOutput());
+
+    // a fresh snapshot is used as is
+    JdkReleases read = new ReleaseCatalog(url(), snapshot, 60000L).get(new NullOutput());
+    assertEquals(1, requests.get());
+    assertNotSame(fetched, read);
+
+    assertEquals(1, read.getReleases().size());
+    JdkRelease rel = read.getReleases().get(0);
+    assertEquals("8u999-b01", rel.getVersion().shortBuild());
+    assertTrue(rel.isPsu());
+    assertEquals(fetched.latestInclPSU().getArchs(), rel.getArchs());
+    assertEquals("java/jdk/8u999-b01/jdk-8u999-linux-x64.tar.gz", rel.getBinary(Arch.NIX_64).getPath());
+    assertEquals("abc", rel.getBinary(Arch.NIX_64).getSha256());
+    assertNull(rel.getBinary(Arch.NIX_64).getMd5());
+    assertEquals(42L, rel.getBinary(Arch.NIX_64).getSize());
+    assertEquals("def", rel.getBinary(Arch.OSX_64).getMd5());
+    assertEquals(-1L, rel.getBinary(Arch.OSX_64).getSize());
+    assertEquals("java/jce/8/jce_policy-8.zip", read.getJCE(JdkVersion.parse("8")).getPath());
+  }
+
+  @Test
+  public void testConditionalRefresh() throws Exception {
+    File snapshot = new File(temp.getRoot(), "jdkreleases.bin");
+    JdkReleases first = new ReleaseCatalog(url(), snapshot, 60000L).refresh(new NullOutput());
+    long saved = snapshot.lastModified();
+
+    // doesn't expire during the test, so nothing is fetched but what's asked for
+    ReleaseCatalog catalog = new ReleaseCatalog(url(), snapshot, 60000L);
+    JdkReleases read = catalog.get(new NullOutput());
+    assertSame(read, catalog.refresh(new NullOutput()));
+    assertEquals(1, notModified.get());
+    assertEquals("8u999-b01", read.latestInclPSU().getVersion().shortBuild());
+    assertNotSame(first, read);
+
+    version = "8u1000-b01";
+    JdkReleases changed = catalog.refresh(new NullOutput());
+    assertEquals("8u1000-b01", changed.latestInclPSU().getVersion().shortBuild());
+    assertEquals(3, requests.get());
+    assertTrue(snapshot.lastModified() >= saved);
+  }
+
+  @Test
+  public void testGetFresh() throws Exception {
+    File snapshot = new File(temp.getRoot(), "jdkreleases.bin");
+
+    // nothing at hand, so waits for the remote rather than serving the built-in list
+    JdkReleases fetched = new ReleaseCatalog(url(), snapshot, 60000L).getFresh(new NullOutput());
+    assertEquals("8u999-b01", fetched.latestInclPSU().getVersion().shortBuild());
+    assertEquals(1, requests.get());
+
+    // a fresh snapshot is used as is
+    new ReleaseCatalog(url(), snapshot, 60000L).getFresh(new NullOutput());
+    assertEquals(1, requests.get());
+
+    // an expired one is checked before anything is served
+    version = "8u1000-b01";
+    JdkReleases changed = new ReleaseCatalog(url(), snapshot, 0L).getFresh(new NullOutput());
+    assertEquals("8u1000-b01", changed.latestInclPSU().getVersion().shortBuild());
+    assertEquals(2, requests.get());
+  }
+
+  @Test
+  public void testRemoteDown() throws Exception {
+    File snapshot = new File(temp.getRoot(), "jdkreleases.bin");
+    new ReleaseCatalog(url(), snapshot, 60000L).refresh(new NullOutput());
+    server.stop(0);
+
+    ReleaseCatalog catalog = new ReleaseCatalog(url(), snapshot, 0L);
+    JdkReleases rels = catalog.get(new NullOutput());
+    assertSame(rels, catalog.refresh(new NullOutput()));
+    assertEquals("8u999-b01", rels.latestInclPSU().getVersion().shortBuild());
+  }
+
+  @Test
+  public void testBrokenSnapshot() throws Exception {
+    File snapshot = new File(temp.getRoot(), "jdkreleases.bin");
+    FileUtils.writeStringToFile(snapshot, "garbage", StandardCharsets.UTF_8);
+    ReleaseCatalog catalog = new ReleaseCatalog(url(), snapshot, 60000L);
+    assertFalse(catalog.get(new NullOutput()).getReleases().isEmpty());
+    catalog.refresh(new NullOutput());
+
+    // replaced by the fetched one
+    JdkReleases read = new ReleaseCatalog(url(), snapshot, 60000L).get(new NullOutput());
+    assertEquals("8u999-b01", read.latestInclPSU().getVersion().shortBuild());
+  }
+
+}
@@ -0,0 +1,77 @@
+package io.takari.jdkget;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+
+/**
+ * Serves a tiny jdk image, slowly enough for concurrent installs to overlap
+ */
+class TarTransport implements ITransport {
+  int downloads;
+  int jceDownloads;
+  boolean valid = true;
+  long delay = 200L;
+  // when set, jdk downloads don't start before it opens
+  CountDownLatch gate;
+
+  @Override
+  public void downloadJdk(JdkContext context, File jdkImage) throws IOException, InterruptedException {
+    synchronized (this) {
+      downloads++;
+    }
+    if (gate != null) {
+      gate.await(10, TimeUnit.SECONDS);
+    }
+    Thread.sleep(delay);
+    String prefix = "jdk" + context.getVersion().longVersion() + "/";
+    try (TarArchiveOutputStream tar = new TarArchiveOutputStream(new GzipCompressorOutputStream(new FileOutputStream(jdkImage)))) {
+      byte[] release = ("JAVA_VERSION=\"" + context.getVersion().longVersion() + "\"").getBytes(StandardCharsets.UTF_8);
+      TarArchiveEntry e = new TarArchiveEntry(prefix + "release");
+      e.setSize(release.length);
+      tar.putArchiveEntry(e);
+      tar.write(release);
+      tar.closeArchiveEntry();
+      tar.putArchiveEntry(new TarArchiveEntry(prefix + "lib/"));
+      tar.closeArchiveEntry();
+      TarArchiveEntry java = new TarArchiveEntry(prefix + "bin/java");
+      java.setSize(0);
+      tar.putArchiveEntry(java);
+      tar.closeArchiveEntry();
+      tar.putArchiveEntry(new TarArchiveEntry(prefix + "jre/lib/security/"));
+      tar.closeArchiveEntry();
+    }
+  }
+
+  @Override
+  public void downloadJce(JdkContext context, File jceImage) throws IOException, InterruptedException {
+    synchronized (this) {
+      jceDownloads++;
+    }
+    Thread.sleep(delay);
+    try (ZipArchiveOutputStream zip = new ZipArchiveOutputStream(jceImage)) {
+      zip.putArchiveEntry(new ZipArchiveEntry("UnlimitedJCEPolicyJDK" + context.getVersion().major + "/local_policy.jar"));
+      zip.write(new byte[] {1, 2, 3});
+      zip.closeArchiveEntry();
+    }
+  }
+
+  @Override
+  public boolean validate(JdkContext context, File jdkImage) throws IOException, InterruptedException {
+    return valid && jdkImage.length() > 0;
+  }
+
+  @Override
+  public File getImageFile(JdkContext context, File parent) throws IOException {
+    return new File(parent, "jdk.tar.gz");
+  }
+}
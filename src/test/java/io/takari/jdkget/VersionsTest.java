@@ -1,8 +1,19 @@
 package io.takari.jdkget;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
 import org.junit.Test;
 
+import io.takari.jdkget.JdkReleases.JdkRelease;
+
 public class VersionsTest {
 
   @Test
@@ -93,4 +104,94 @@ public class VersionsTest {
     assertEquals(null, v6.buildNumber);
 
   }
+
+  @Test
+  public void testInterned() {
+    JdkVersion v = JdkVersion.parse("8u92-b14");
+    assertSame(v, JdkVersion.parse("8u92-b14"));
+    assertSame(v, JdkVersion.parse("1.8.0_92-b14"));
+    assertSame(v.shortBuild(), v.shortBuild());
+    assertSame(v.longVersion(), JdkVersion.parse("1.8.0_92-b14").longVersion());
+    assertSame(JdkVersion.parse("10+46"), JdkVersion.parse("10+46"));
+  }
+
+  @Test
+  public void testCompare() throws Exception {
+    List<JdkVersion> versions = new ArrayList<>();
+    for (JdkRelease r : JdkReleases.readFromClasspath().getReleases()) {
+      versions.add(r.getVersion());
+    }
+    versions.add(JdkVersion.parse("8"));
+    versions.add(JdkVersion.parse("8u92"));
+    versions.add(JdkVersion.parse("9"));
+    versions.add(JdkVersion.parse("9.0.1"));
+    versions.add(JdkVersion.parse("2000u1-b1")); // too large to pack
+
+    for (JdkVersion a : versions) {
+      for (JdkVersion b : versions) {
+        assertEquals(a + " " + b, Integer.signum(compareFields(a, b)), Integer.signum(a.compareTo(b)));
+      }
+    }
+  }
+
+  private static int compareFields(JdkVersion a, JdkVersion b) {
+    int c = Integer.compare(a.major, b.major);
+    if (c == 0) {
+      c = Integer.compare(a.minor, b.minor);
+    }
+    if (c == 0) {
+      c = Integer.compare(a.security, b.security);
+    }
+    if (c == 0) {
+      c = Integer.compare(a.buildNum(), b.buildNum());
+    }
+    return c;
+  }
+
+  @Test
+  public void testSerialized() throws Exception {
+    JdkVersion v = JdkVersion.parse("8u92-b14");
+    ByteArrayOutputStream buf = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(buf)) {
+      out.writeObject(v);
+    }
+    JdkVersion read;
+    try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(buf.toByteArray()))) {
+      read = (JdkVersion) in.readObject();
+    }
+    assertEquals("8u92-b14", read.shortBuild());
+    assertEquals(0, read.compareTo(v));
+    assertEquals(-1, read.compareTo(JdkVersion.parse("8u92-b15")));
+  }
+
+  @Test
+  public void testOwnAccessors() {
+    // subclasses written against the abstract accessors keep working
+    JdkVersion v = new JdkVersion(11, 0, 2, "+9") {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      public String shortBuild() {
+        return "11.0.2+9";
+      }
+
+      @Override
+      public String shortVersion() {
+        return "11.0.2";
+      }
+
+      @Override
+      public String longBuild() {
+        return "jdk-11.0.2+9";
+      }
+
+      @Override
+      public String longVersion() {
+        return "jdk-11.0.2";
+      }
+    };
+    assertEquals("jdk-11.0.2+9", v.toString());
+    assertEquals("11.0.2", v.shortVersion());
+    assertEquals(0, v.compareTo(JdkVersion.parse("11.0.2+9")));
+  }
 }
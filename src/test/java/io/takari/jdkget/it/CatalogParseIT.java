@@ -0,0 +1,115 @@
+package io.takari.jdkget.it;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import io.takari.jdkget.DomJdkReleasesParser;
+import io.takari.jdkget.JdkReleases;
+import io.takari.jdkget.JdkReleasesParser;
+
+/**
+ * Compares the time and memory it takes to read release lists with the streaming parser and the document based one it
+ * replaced, for the built-in list and a generated one with thousands of releases. Tunable with system properties:
+ * <ul>
+ * <li>{@code io.takari.jdkget.parse.releases} releases in the generated list (default 5000)</li>
+ * <li>{@code io.takari.jdkget.parse.iterations} measured parses of each list (default 10)</li>
+ * </ul>
+ */
+public class CatalogParseIT {
+
+  private static final String[][] BINS = { //
+      {"nix_32", "linux-i586", "tar.gz"}, //
+      {"nix_64", "linux-x64", "tar.gz"}, //
+      {"osx_64", "macosx-x64", "dmg"}, //
+      {"win_32", "windows-i586", "exe"}, //
+      {"win_64", "windows-x64", "exe"}, //
+      {"sol_64", "solaris-x64", "tar.gz"}, //
+      {"sol_sparc", "solaris-sparcv9", "tar.gz"}};
+
+  private interface Parser {
+    JdkReleases parse(InputStream in) throws IOException;
+  }
+
+  @Test
+  public void testParse() throws Exception {
+    int releases = Integer.getInteger("io.takari.jdkget.parse.releases", 5000);
+    int iterations = Integer.getInteger("io.takari.jdkget.parse.iterations", 10);
+
+    byte[] builtin;
+    try (InputStream in = getClass().getClassLoader().getResourceAsStream("jdkreleases.xml")) {
+      builtin = IOUtils.toByteArray(in);
+    }
+    compare("built-in", builtin, iterations * 10);
+    compare(releases + " releases", generate(releases), iterations);
+  }
+
+  private static void compare(String name, byte[] xml, int iterations) throws IOException {
+    Parser dom = in -> new DomJdkReleasesParser().parse(in);
+    Parser stax = in -> new JdkReleasesParser().parse(in);
+
+    int n = dom.parse(new ByteArrayInputStream(xml)).getReleases().size();
+    assertEquals(n, stax.parse(new ByteArrayInputStream(xml)).getReleases().size());
+
+    // warm up both before measuring either
+    measure(dom, xml, iterations);
+    measure(stax, xml, iterations);
+    long[] d = measure(dom, xml, iterations);
+    long[] s = measure(stax, xml, iterations);
+
+    System.out.println(String.format("%s (%d kB, %d releases): document %.2f ms %,d kB, streaming %.2f ms %,d kB per parse", //
+        name, xml.length / 1024, n, d[0] / 1e6, d[1] / 1024, s[0] / 1e6, s[1] / 1024));
+    assertTrue(s[1] < d[1]);
+  }
+
+  // average time and allocated bytes of a parse
+  private static long[] measure(Parser parser, byte[] xml, int iterations) throws IOException {
+    com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long id = Thread.currentThread().getId();
+    long allocated = threads.getThreadAllocatedBytes(id);
+    long start = System.nanoTime();
+    for (int i = 0; i < iterations; i++) {
+      parser.parse(new ByteArrayInputStream(xml));
+    }
+    long time = System.nanoTime() - start;
+    allocated = threads.getThreadAllocatedBytes(id) - allocated;
+    return new long[] {time / iterations, allocated / iterations};
+  }
+
+  private static byte[] generate(int releases) {
+    StringBuilder sb = new StringBuilder();
+    sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<jdks>\n");
+    sb.append("  <jce version=\"8\">\n    <url>java/jce/8/jce_policy-8.zip</url>\n  </jce>\n");
+    sb.append("  <defaults>\n    <url>java/jdk/${version}${build}/jdk-${version}-${arch}.${ext}</url>\n  </defaults>\n");
+    for (int r = 0; r < releases; r++) {
+      int major = 8 - r % 3;
+      int update = releases - r;
+      sb.append("  <jdk version=\"").append(major).append('u').append(update).append("-b").append(r % 40).append('"');
+      if (r % 7 == 0) {
+        sb.append(" psu=\"true\"");
+      }
+      sb.append(">\n");
+      if (r % 5 == 0) {
+        sb.append("    <url>vendor").append(r % 10).append("/${version}${build}/jdk-${version}_${arch}_bin.${ext}</url>\n");
+      }
+      for (String[] bin : BINS) {
+        sb.append("    <bin cls=\"").append(bin[0]).append("\" arch=\"").append(bin[1]).append("\" ext=\"").append(bin[2]).append("\">\n");
+        sb.append("      <sha256>").append(String.format("%064x", (long) r * BINS.length + bin[1].hashCode())).append("</sha256>\n");
+        sb.append("      <size>").append(150000000L + r * 13L).append("</size>\n");
+        sb.append("    </bin>\n");
+      }
+      sb.append("  </jdk>\n");
+    }
+    sb.append("</jdks>\n");
+    return sb.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+}
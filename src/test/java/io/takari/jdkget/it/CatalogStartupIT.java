@@ -0,0 +1,75 @@
+package io.takari.jdkget.it;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import io.takari.jdkget.JdkReleases;
+
+/**
+ * Compares how long a fresh JVM takes to get at the built-in release list when it's parsed from the xml and when it's
+ * read as precompiled by the build, which is what every short lived CLI run pays. Needs the build to have precompiled
+ * it. Tunable with the system property {@code io.takari.jdkget.startup.runs}, JVMs started for each (default 10).
+ */
+public class CatalogStartupIT {
+
+  @Test
+  public void testStartup() throws Exception {
+    assertNotNull("release list not precompiled", getClass().getClassLoader().getResource("jdkreleases.bin"));
+    int runs = Integer.getInteger("io.takari.jdkget.startup.runs", 10);
+
+    long[] xml = run("xml", runs);
+    long[] compiled = run("compiled", runs);
+
+    System.out.println(String.format("built-in release list in a fresh jvm: xml %.1f ms (jvm %.0f ms), precompiled %.1f ms (jvm %.0f ms), median of %d", //
+        xml[0] / 1e6, xml[1] / 1e6, compiled[0] / 1e6, compiled[1] / 1e6, runs));
+    assertTrue(compiled[0] < xml[0]);
+  }
+
+  // median time to load the list and of the whole jvm
+  private static long[] run(String mode, int runs) throws IOException, InterruptedException {
+    String java = new File(System.getProperty("java.home"), "bin/java").getPath();
+    List<Long> load = new ArrayList<>();
+    List<Long> total = new ArrayList<>();
+    for (int i = 0; i < runs; i++) {
+      long start = System.nanoTime();
+      Process p = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), Load.class.getName(), mode) //
+          .redirectErrorStream(true).start();
+      String out = IOUtils.toString(p.getInputStream(), StandardCharsets.UTF_8).trim();
+      assertEquals(out, 0, p.waitFor());
+      total.add(System.nanoTime() - start);
+      load.add(Long.parseLong(out));
+    }
+    Collections.sort(load);
+    Collections.sort(total);
+    return new long[] {load.get(runs / 2), total.get(runs / 2)};
+  }
+
+  public static class Load {
+    public static void main(String[] args) throws IOException {
+      long start = System.nanoTime();
+      JdkReleases rels;
+      if ("xml".equals(args[0])) {
+        try (InputStream in = Load.class.getClassLoader().getResourceAsStream("jdkreleases.xml")) {
+          rels = JdkReleases.read(in);
+        }
+      } else {
+        rels = JdkReleases.readFromClasspath();
+      }
+      rels.latest();
+      System.out.println(System.nanoTime() - start);
+    }
+  }
+
+}
@@ -0,0 +1,102 @@
+package io.takari.jdkget.it;
+
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+import io.takari.jdkget.JdkReleases;
+import io.takari.jdkget.JdkReleases.JdkRelease;
+import io.takari.jdkget.JdkVersion;
+
+/**
+ * Measures parsing, comparing and selecting versions over the whole built-in release list, with the time and memory
+ * each takes. Parsing a spelling seen before, and comparing, shouldn't allocate at all. Tunable with the system
+ * property {@code io.takari.jdkget.version.iterations}, passes over the list for each (default 2000).
+ */
+public class JdkVersionIT {
+
+  private interface Op {
+    void run(int i);
+  }
+
+  @Test
+  public void testVersions() throws Exception {
+    int iterations = Integer.getInteger("io.takari.jdkget.version.iterations", 2000);
+    JdkReleases rels = JdkReleases.readFromClasspath();
+
+    Set<String> spellings = new LinkedHashSet<>();
+    List<JdkVersion> versions = new ArrayList<>();
+    for (JdkRelease r : rels.getReleases()) {
+      JdkVersion v = r.getVersion();
+      versions.add(v);
+      spellings.add(v.shortBuild());
+      spellings.add(v.longBuild());
+      spellings.add(v.shortVersion());
+      spellings.add(v.longVersion());
+    }
+    for (Iterator<String> it = spellings.iterator(); it.hasNext();) {
+      try {
+        JdkVersion.parse(it.next());
+      } catch (NumberFormatException e) {
+        it.remove(); // long form of ancient builds like 6u5b
+      }
+    }
+    String[] s = spellings.toArray(new String[0]);
+    JdkVersion[] v = versions.toArray(new JdkVersion[0]);
+    List<JdkVersion> shuffled = new ArrayList<>(versions);
+
+    long[] parse = measure(s.length, iterations, i -> JdkVersion.parse(s[i]));
+    long[] compare = measure(v.length, iterations, i -> v[i].compareTo(v[v.length - 1 - i]));
+    long[] strings = measure(v.length, iterations, i -> v[i].longVersion());
+    long[] select = measure(v.length, iterations, i -> rels.select(v[i]));
+    long[] sort = measure(1, iterations, i -> {
+      Collections.shuffle(shuffled);
+      Collections.sort(shuffled);
+    });
+
+    System.out.println(String.format("%d versions, %d spellings, per operation:", v.length, s.length));
+    print("parse", parse);
+    print("compare", compare);
+    print("longVersion", strings);
+    print("select", select);
+    print("sort list", sort);
+    assertTrue("parse allocates", parse[1] < 1);
+    assertTrue("compare allocates", compare[1] < 1);
+    assertTrue("longVersion allocates", strings[1] < 1);
+  }
+
+  private static void print(String name, long[] m) {
+    System.out.println(String.format("  %-12s %,10.1f ns %,8d bytes", name, m[0] / 1000d, m[1]));
+  }
+
+  // time (in thousandths of a ns) and allocated bytes per operation, after a warm up pass
+  private static long[] measure(int n, int iterations, Op op) {
+    com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long id = Thread.currentThread().getId();
+    for (int it = 0; it < iterations; it++) {
+      for (int i = 0; i < n; i++) {
+        op.run(i);
+      }
+    }
+    long allocated = threads.getThreadAllocatedBytes(id);
+    long start = System.nanoTime();
+    for (int it = 0; it < iterations; it++) {
+      for (int i = 0; i < n; i++) {
+        op.run(i);
+      }
+    }
+    long time = System.nanoTime() - start;
+    allocated = threads.getThreadAllocatedBytes(id) - allocated;
+    long ops = (long) n * iterations;
+    return new long[] {time * 1000 / ops, allocated / ops};
+  }
+
+}
@@ -0,0 +1,133 @@
+package io.takari.jdkget.it;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import io.takari.jdkget.Arch;
+import io.takari.jdkget.IOutput;
+import io.takari.jdkget.JdkContext;
+import io.takari.jdkget.JdkReleases;
+import io.takari.jdkget.JdkVersion;
+import io.takari.jdkget.OracleSiteSimulator;
+import io.takari.jdkget.OracleWebsiteTransport;
+
+/**
+ * Downloads from a local stand-in for the Oracle site with lots of clients at once, to benchmark the transport without
+ * going online. Tunable with system properties:
+ * <ul>
+ * <li>{@code io.takari.jdkget.load.clients} concurrent downloads (default 32)</li>
+ * <li>{@code io.takari.jdkget.load.rounds} downloads per client (default 4)</li>
+ * <li>{@code io.takari.jdkget.load.size} binary size in bytes (default 8M)</li>
+ * <li>{@code io.takari.jdkget.load.segments} connections per download (default 1)</li>
+ * <li>{@code io.takari.jdkget.load.bandwidth} limit per connection in bytes per second (default unlimited)</li>
+ * <li>{@code io.takari.jdkget.load.failEvery} drop every nth download halfway through (default never)</li>
+ * </ul>
+ */
+public class TransportLoadIT {
+
+  private static final String[] VERSIONS = {"8u92-b14", "8u91-b14", "8u77-b03", "8u73-b02"};
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Test
+  public void testConcurrentDownloads() throws Exception {
+    int clients = Integer.getInteger("io.takari.jdkget.load.clients", 32);
+    int rounds = Integer.getInteger("io.takari.jdkget.load.rounds", 4);
+    int size = Integer.getInteger("io.takari.jdkget.load.size", 8 * 1024 * 1024);
+    int segments = Integer.getInteger("io.takari.jdkget.load.segments", 1);
+    long bandwidth = Long.getLong("io.takari.jdkget.load.bandwidth", 0L);
+    int failEvery = Integer.getInteger("io.takari.jdkget.load.failEvery", 0);
+
+    try (OracleSiteSimulator site = new OracleSiteSimulator()) {
+      site.setBandwidth(bandwidth);
+      JdkReleases.Builder b = JdkReleases.newBuilder();
+      for (String v : VERSIONS) {
+        String path = "java/jdk/" + v + "/jdk-" + v.substring(0, v.indexOf('-')) + "-linux-x64.tar.gz";
+        byte[] data = site.addBinary(path, size);
+        b.addBinary(v, Arch.NIX_64, path, null, OracleSiteSimulator.sha256(data), data.length);
+      }
+      JdkReleases rels = b.build();
+
+      OracleWebsiteTransport transport = new OracleWebsiteTransport(site.getUrl());
+      transport.setSegments(segments);
+      transport.setMaxConnectionsPerHost(clients * segments);
+
+      List<Long> times = Collections.synchronizedList(new ArrayList<>());
+      int[] failures = {0};
+      ExecutorService executor = Executors.newFixedThreadPool(clients);
+      long start = System.nanoTime();
+      try {
+        List<Future<?>> futures = new ArrayList<>();
+        for (int c = 0; c < clients; c++) {
+          int client = c;
+          futures.add(executor.submit(() -> {
+            for (int r = 0; r < rounds; r++) {
+              String v = VERSIONS[(client + r) % VERSIONS.length];
+              JdkContext ctx = new JdkContext(rels, JdkVersion.parse(v), Arch.NIX_64, new QuietOutput());
+              File image = new File(temp.getRoot(), client + "-" + r + ".tar.gz");
+              int n = client * rounds + r + 1;
+              if (failEvery > 0 && n % failEvery == 0) {
+                site.failDownloads(1, size / 2);
+              }
+              long t = System.nanoTime();
+              try {
+                transport.downloadJdk(ctx, image);
+              } catch (IOException e) {
+                synchronized (failures) {
+                  failures[0]++;
+                }
+                // resumes where the dropped one left off
+                transport.downloadJdk(ctx, image);
+              }
+              times.add(System.nanoTime() - t);
+              assertTrue(image.getName(), transport.validate(ctx, image));
+              FileUtils.forceDelete(image);
+            }
+            return null;
+          }));
+        }
+        for (Future<?> f : futures) {
+          f.get();
+        }
+      } finally {
+        executor.shutdownNow();
+        transport.close();
+      }
+      long elapsed = System.nanoTime() - start;
+
+      Collections.sort(times);
+      long bytes = (long) clients * rounds * size;
+      System.out.println(String.format("%d clients x %d downloads of %d bytes, %d segments: %.1f MB/s, p50 %d ms, p95 %d ms, max %d ms", //
+          clients, rounds, size, segments, bytes / 1048576.0 / (elapsed / 1e9), //
+          times.get(times.size() / 2) / 1000000, times.get(times.size() * 95 / 100) / 1000000, times.get(times.size() - 1) / 1000000));
+      System.out.println(String.format("%d requests, %d range requests, %d dropped downloads, %d bytes served", //
+          site.getRequests(), site.getRangeRequests(), failures[0], site.getBytesServed()));
+    }
+  }
+
+  private static class QuietOutput implements IOutput {
+    @Override
+    public void info(String message) {}
+
+    @Override
+    public void error(String message) {}
+
+    @Override
+    public void error(String message, Throwable t) {}
+  }
+
+}